@@ -0,0 +1,85 @@
+package com.github.rbuck.retry.benchmarks;
+
+import com.github.rbuck.retry.CircuitBreaker;
+import com.github.rbuck.retry.ExponentialBackoff;
+import com.github.rbuck.retry.FixedInterval;
+import com.github.rbuck.retry.RetryBudget;
+import com.github.rbuck.retry.RetryPolicy;
+import com.github.rbuck.retry.RetryState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures components shared between threads; run at increasing thread
+ * counts with the -t option, e.g. -t 1, -t 4, -t 16, to expose contention.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(Threads.MAX)
+@Fork(1)
+public class ContentionBenchmark {
+
+    private final Callable<Integer> callable = new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+            return 5;
+        }
+    };
+
+    private final RetryPolicy<Integer> sharedPolicy = new RetryPolicy<>(new FixedInterval(3, 0), Stubs.DETECTOR);
+    private final Random sharedRandom = new Random(1);
+    private final ExponentialBackoff exponentialBackoff = new ExponentialBackoff();
+    private final RetryBudget retryBudget = new RetryBudget(100, 0, 1000000);
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    @Benchmark
+    public Integer sharedPolicy() throws Exception {
+        return sharedPolicy.action(callable);
+    }
+
+    /**
+     * Reference: a java.util.Random shared by all threads, as the jitter
+     * source of ExponentialBackoff once was.
+     */
+    @Benchmark
+    public int sharedRandomJitter() {
+        return sharedRandom.nextInt(1024);
+    }
+
+    @Benchmark
+    public long exponentialBackoffJitter() {
+        RetryState state = exponentialBackoff.getRetryState();
+        state.hasRetries();
+        return state.getRetryDelay();
+    }
+
+    @Benchmark
+    public boolean retryBudget() {
+        retryBudget.deposit();
+        return retryBudget.tryWithdraw();
+    }
+
+    @Benchmark
+    public boolean circuitBreaker() {
+        boolean permitted = circuitBreaker.tryAcquirePermission();
+        circuitBreaker.onSuccess();
+        return permitted;
+    }
+}
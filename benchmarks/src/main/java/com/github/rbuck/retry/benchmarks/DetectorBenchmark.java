@@ -0,0 +1,75 @@
+package com.github.rbuck.retry.benchmarks;
+
+import com.github.rbuck.retry.SqlTransientExceptionDetector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of classifying typical failures as transient or not.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DetectorBenchmark {
+
+    @Param({"rollback", "legacyRollback", "connection", "duplicate", "syntax", "unknownState", "runtime"})
+    public String failure;
+
+    private final SqlTransientExceptionDetector detector = new SqlTransientExceptionDetector();
+    private Exception exception;
+
+    @Setup
+    public void setUp() {
+        char[] padding = new char[512];
+        Arrays.fill(padding, 'x');
+        String message = "failure " + new String(padding);
+        switch (failure) {
+            case "rollback":
+                exception = new SQLTransactionRollbackException(message, "40001");
+                break;
+            case "legacyRollback":
+                exception = new SQLException(message, "40001");
+                break;
+            case "connection":
+                exception = new SQLException(message, "08006");
+                break;
+            case "duplicate":
+                exception = new SQLException(message, "23505");
+                break;
+            case "syntax":
+                exception = new SQLSyntaxErrorException(message, "42000");
+                break;
+            case "unknownState":
+                exception = new SQLException(message, "HY000");
+                break;
+            default:
+                exception = new IllegalStateException(message);
+                break;
+        }
+    }
+
+    @Benchmark
+    public boolean isTransient() {
+        return detector.isTransient(exception);
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.rbuck.retry.benchmarks;
+
+import com.github.rbuck.retry.FixedInterval;
+import com.github.rbuck.retry.RetryEvent;
+import com.github.rbuck.retry.RetryEventListener;
+import com.github.rbuck.retry.RetryState;
+import com.github.rbuck.retry.RingBufferRetryEventDispatcher;
+import com.github.rbuck.retry.SynchronousRetryEventDispatcher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the throughput of handing retry events to a dispatcher from
+ * several threads, i.e. the cost a failing thread pays to raise an event.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ListenerDispatchBenchmark {
+
+    @Param({"DROP_NEWEST", "DROP_OLDEST", "SAMPLE", "BLOCK"})
+    public RingBufferRetryEventDispatcher.OverflowPolicy overflowPolicy;
+
+    private final LongAdder delivered = new LongAdder();
+    private final RetryEventListener listener = new RetryEventListener() {
+        @Override
+        public void onRetry(RetryEvent evt) {
+            delivered.increment();
+        }
+    };
+
+    private RetryEvent event;
+    private RingBufferRetryEventDispatcher ringBuffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RetryState state = new FixedInterval(1, 0).getRetryState();
+        event = new RetryEvent(this, state, Stubs.TRANSIENT);
+        ringBuffer = new RingBufferRetryEventDispatcher(RingBufferRetryEventDispatcher.DEFAULT_CAPACITY, overflowPolicy);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        ringBuffer.shutdown();
+        ringBuffer.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public void ringBuffer() {
+        ringBuffer.dispatch(event, listener);
+    }
+
+    @Benchmark
+    public void synchronous() {
+        SynchronousRetryEventDispatcher.INSTANCE.dispatch(event, listener);
+    }
+}
@@ -0,0 +1,72 @@
+package com.github.rbuck.retry.benchmarks;
+
+import com.github.rbuck.retry.SqlTransactionContext;
+import com.github.rbuck.retry.TransientExceptionDetector;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Test doubles shared by the benchmarks.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+final class Stubs {
+
+    /**
+     * A detector treating IllegalStateException as transient.
+     */
+    static final TransientExceptionDetector DETECTOR = new TransientExceptionDetector() {
+        @Override
+        public boolean isTransient(Exception e) {
+            return e instanceof IllegalStateException;
+        }
+    };
+
+    /**
+     * A preallocated transient failure without a stack trace, so that the
+     * failure path benchmarks measure the library rather than fillInStackTrace.
+     */
+    static final IllegalStateException TRANSIENT = new IllegalStateException("transient", null) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    };
+
+    /**
+     * A connection whose methods all do nothing.
+     */
+    static final Connection CONNECTION = (Connection) Proxy.newProxyInstance(
+            Stubs.class.getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) {
+                    Class<?> type = method.getReturnType();
+                    if (type == boolean.class) {
+                        return Boolean.FALSE;
+                    }
+                    if (type == int.class) {
+                        return 0;
+                    }
+                    return null;
+                }
+            });
+
+    /**
+     * A transaction context always handing out the same no-op connection.
+     */
+    static final SqlTransactionContext CONTEXT = new SqlTransactionContext() {
+        @Override
+        public Connection getConnection() throws SQLException {
+            return CONNECTION;
+        }
+    };
+
+    private Stubs() {
+    }
+}
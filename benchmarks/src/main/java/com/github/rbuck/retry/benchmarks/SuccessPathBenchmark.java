@@ -0,0 +1,124 @@
+package com.github.rbuck.retry.benchmarks;
+
+import com.github.rbuck.retry.ExponentialBackoff;
+import com.github.rbuck.retry.FixedInterval;
+import com.github.rbuck.retry.Incremental;
+import com.github.rbuck.retry.RetryPolicy;
+import com.github.rbuck.retry.SqlCallable;
+import com.github.rbuck.retry.SqlRetryPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead added to an action that succeeds on its first attempt,
+ * the path taken by nearly all calls; compare against the baseline.
+ * <p/>
+ * Before measuring, every policy is exercised with failing actions so that,
+ * as in production, the JIT has seen the failure path and cannot prune it;
+ * otherwise escape analysis could hide allocations that real callers pay for.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SuccessPathBenchmark {
+
+    private final Callable<Integer> callable = new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+            return 5;
+        }
+    };
+
+    private final SqlCallable<Integer> sqlCallable = new SqlCallable<Integer>() {
+        @Override
+        public Integer call(Connection connection) throws SQLException {
+            return 5;
+        }
+    };
+
+    private final RetryPolicy<Integer> exponential = new RetryPolicy<>(new ExponentialBackoff(3, 0, 0, 0), Stubs.DETECTOR);
+    private final RetryPolicy<Integer> fixed = new RetryPolicy<>(new FixedInterval(3, 0), Stubs.DETECTOR);
+    private final RetryPolicy<Integer> incremental = new RetryPolicy<>(new Incremental(3, 0, 0), Stubs.DETECTOR);
+    private final SqlRetryPolicy<Integer> sql = new SqlRetryPolicy<>(new FixedInterval(3, 0), Stubs.CONTEXT);
+
+    @Setup
+    public void polluteProfiles() throws Exception {
+        final int[] attempts = new int[1];
+        Callable<Integer> failOnce = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                if ((attempts[0]++ & 1) == 0) {
+                    throw Stubs.TRANSIENT;
+                }
+                return 5;
+            }
+        };
+        SqlCallable<Integer> sqlFailOnce = new SqlCallable<Integer>() {
+            @Override
+            public Integer call(Connection connection) throws SQLException {
+                if ((attempts[0]++ & 1) == 0) {
+                    throw new SQLException("rollback", "40001");
+                }
+                return 5;
+            }
+        };
+        for (int i = 0; i < 20000; i++) {
+            exponential.action(failOnce);
+            fixed.action(failOnce);
+            incremental.action(failOnce);
+            sql.action(sqlFailOnce);
+        }
+    }
+
+    @Benchmark
+    public Integer baseline() throws Exception {
+        return callable.call();
+    }
+
+    @Benchmark
+    public Integer sqlBaseline() throws Exception {
+        try (Connection connection = Stubs.CONTEXT.getConnection()) {
+            Integer value = sqlCallable.call(connection);
+            connection.commit();
+            return value;
+        }
+    }
+
+    @Benchmark
+    public Integer exponentialBackoff() throws Exception {
+        return exponential.action(callable);
+    }
+
+    @Benchmark
+    public Integer fixedInterval() throws Exception {
+        return fixed.action(callable);
+    }
+
+    @Benchmark
+    public Integer incremental() throws Exception {
+        return incremental.action(callable);
+    }
+
+    @Benchmark
+    public Integer sqlRetryPolicy() throws Exception {
+        return sql.action(sqlCallable);
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.rbuck.retry.benchmarks;
+
+import com.github.rbuck.retry.FixedInterval;
+import com.github.rbuck.retry.RetryPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures actions failing transiently before succeeding, and actions failing
+ * non-transiently, with zero retry delays so that only the cost of the
+ * failure handling itself is measured.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransientFailureBenchmark {
+
+    private static final IllegalArgumentException NON_TRANSIENT = new IllegalArgumentException("non-transient", null) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    };
+
+    private int attempts;
+
+    private final Callable<Integer> failOnce = new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+            if ((attempts++ & 1) == 0) {
+                throw Stubs.TRANSIENT;
+            }
+            return 5;
+        }
+    };
+
+    private final Callable<Integer> failThrice = new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+            if ((attempts++ & 3) != 3) {
+                throw Stubs.TRANSIENT;
+            }
+            return 5;
+        }
+    };
+
+    private final Callable<Integer> failNonTransient = new Callable<Integer>() {
+        @Override
+        public Integer call() throws Exception {
+            throw NON_TRANSIENT;
+        }
+    };
+
+    private final RetryPolicy<Integer> policy = new RetryPolicy<>(new FixedInterval(5, 0), Stubs.DETECTOR);
+
+    @Benchmark
+    public Integer oneTransientFailure() throws Exception {
+        return policy.action(failOnce);
+    }
+
+    @Benchmark
+    public Integer threeTransientFailures() throws Exception {
+        return policy.action(failThrice);
+    }
+
+    @Benchmark
+    public Exception nonTransientFailure() {
+        try {
+            policy.action(failNonTransient);
+            return null;
+        } catch (Exception e) {
+            return e;
+        }
+    }
+}
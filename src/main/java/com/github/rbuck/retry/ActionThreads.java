@@ -0,0 +1,36 @@
+package com.github.rbuck.retry;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Supplies the threads actions run on when performed on a thread of their
+ * own. This is the baseline implementation, using a shared pool of daemon
+ * platform threads; the multi-release jar replaces it on Java 21 and later
+ * with one starting a virtual thread per action.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+final class ActionThreads {
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "retry-action-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private ActionThreads() {
+    }
+
+    static Executor executor() {
+        return EXECUTOR;
+    }
+}
@@ -0,0 +1,214 @@
+package com.github.rbuck.retry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.rbuck.retry.RetryState.RetryStateCommon.addDelay;
+import static com.github.rbuck.retry.RetryState.RetryStateCommon.exponentialDelay;
+import static com.github.rbuck.retry.RetryState.RetryStateCommon.randomDelay;
+
+/**
+ * Implements a self-tuning backoff; rather than fixed at construction, delays
+ * are derived from statistics of the actions recently performed under this
+ * strategy, so a strategy is meant to be shared by all policies accessing the
+ * same resource.
+ * <p/>
+ * Three exponentially weighted moving averages are kept: the failure rate,
+ * the share of actions whose first attempt failed; the recovery time, from the
+ * first failure after a success to the next success; and the latency of the
+ * attempts retried. The first delay of an action is the minimum delay plus the
+ * recovery time weighted by the failure rate, but no less than the attempt
+ * latency: isolated failures are retried almost at once, while during an
+ * outage retries wait for the resource to come back instead of being wasted.
+ * Every further retry of the same action doubles the delay, up to the maximum
+ * delay, and equal jitter spreads the retries of concurrent actions.
+ * <p/>
+ * Statistics are updated lock-free. An action succeeding at once while no
+ * failures are being observed reads the statistics without writing them, so
+ * sharing the strategy costs nothing on the success path of a healthy resource.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class AdaptiveBackoff implements RetryStrategy {
+
+    public static final int DEFAULT_RETRY_COUNT = 10;
+    public static final long DEFAULT_MIN_DELAY = 10;
+    public static final long DEFAULT_MAX_DELAY = TimeUnit.MILLISECONDS.convert(30, TimeUnit.SECONDS);
+    public static final long DEFAULT_RECOVERY_TIME = 1000;
+    public static final double DEFAULT_SMOOTHING = 0.05;
+
+    /**
+     * A failure rate below which successes no longer lower it.
+     */
+    private static final double NEGLIGIBLE_FAILURE_RATE = 1e-4;
+
+    private static final long NO_OUTAGE = Long.MIN_VALUE;
+
+    private final int maxRetries;
+    private final long minDelay;
+    private final long maxDelay;
+    private final double smoothing;
+
+    private final Average failureRate = new Average(0);
+    private final Average recoveryTime;
+    private final Average attemptLatency = new Average(0);
+    private final AtomicLong outageStart = new AtomicLong(NO_OUTAGE);
+
+    public AdaptiveBackoff() {
+        this(DEFAULT_RETRY_COUNT, DEFAULT_MIN_DELAY, DEFAULT_MAX_DELAY, DEFAULT_RECOVERY_TIME, DEFAULT_SMOOTHING);
+    }
+
+    /**
+     * Constructs an adaptive backoff strategy.
+     *
+     * @param maxRetries   the maximum number of retries
+     * @param minDelay     the minimum delay in milliseconds
+     * @param maxDelay     the maximum delay in milliseconds
+     * @param recoveryTime the recovery time assumed until one is observed, in milliseconds
+     * @param smoothing    the weight, between 0 and 1, of each new observation in the averages
+     */
+    public AdaptiveBackoff(int maxRetries, long minDelay, long maxDelay, long recoveryTime, double smoothing) {
+        if (maxRetries < 0 || minDelay < 0 || maxDelay < minDelay || recoveryTime < 0) {
+            throw new IllegalArgumentException("retries and delays must not be negative, max delay not below min delay");
+        }
+        if (smoothing <= 0 || smoothing > 1) {
+            throw new IllegalArgumentException("smoothing must be between 0 and 1");
+        }
+        this.maxRetries = maxRetries;
+        this.minDelay = minDelay;
+        this.maxDelay = maxDelay;
+        this.smoothing = smoothing;
+        this.recoveryTime = new Average(recoveryTime);
+    }
+
+    /**
+     * Creates the retry state of an action whose first attempt failed.
+     */
+    @Override
+    public RetryState getRetryState() {
+        failureRate.update(1, smoothing);
+        if (outageStart.get() == NO_OUTAGE) {
+            outageStart.compareAndSet(NO_OUTAGE, System.nanoTime());
+        }
+        return new RetryState() {
+
+            private int retryCount;
+            private long retryDelay = -1;
+            private long readyAt;
+            private boolean waited;
+
+            @Override
+            public void delayRetry() {
+                addDelay(getRetryDelay());
+            }
+
+            @Override
+            public boolean hasRetries() {
+                if (retryCount < maxRetries) {
+                    retryCount++;
+                    retryDelay = -1;
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public int getRetryCount() {
+                return retryCount;
+            }
+
+            /**
+             * Draws the delay once per retry, when the attempt before it has
+             * failed; the time since the previous delay ended is the latency of
+             * that attempt.
+             */
+            @Override
+            public long getRetryDelay() {
+                if (retryDelay < 0) {
+                    long now = System.nanoTime();
+                    if (waited) {
+                        attemptLatency.update(Math.max(0, now - readyAt) / 1e6, smoothing);
+                    }
+                    retryDelay = nextDelay(retryCount);
+                    readyAt = now + TimeUnit.MILLISECONDS.toNanos(retryDelay);
+                    waited = true;
+                }
+                return retryDelay;
+            }
+        };
+    }
+
+    @Override
+    public void onSuccess(int retryCount) {
+        // a retried action counted as a failure when its retry state was created;
+        // while healthy, first attempt successes leave the shared statistics untouched
+        if (retryCount == 0 && failureRate.get() >= NEGLIGIBLE_FAILURE_RATE) {
+            failureRate.update(0, smoothing);
+        }
+        long start = outageStart.get();
+        if (start != NO_OUTAGE && outageStart.compareAndSet(start, NO_OUTAGE)) {
+            recoveryTime.update((System.nanoTime() - start) / 1e6, smoothing);
+        }
+    }
+
+    private long nextDelay(int retryCount) {
+        double target = Math.max(minDelay + failureRate.get() * recoveryTime.get(), attemptLatency.get());
+        // rounded up, so that delays are never below half the target
+        long base = (long) Math.ceil(Math.min(maxDelay, target));
+        long ceiling = exponentialDelay(base, retryCount, maxDelay);
+        return randomDelay(Math.max(minDelay, (ceiling + 1) / 2), ceiling);
+    }
+
+    /**
+     * Gets the share of recent actions whose first attempt failed.
+     *
+     * @return the failure rate, between 0 and 1
+     */
+    public double getFailureRate() {
+        return failureRate.get();
+    }
+
+    /**
+     * Gets the average time the resource took to recover from failures.
+     *
+     * @return the recovery time in milliseconds
+     */
+    public double getRecoveryTime() {
+        return recoveryTime.get();
+    }
+
+    /**
+     * Gets the average latency of retried attempts that failed.
+     *
+     * @return the attempt latency in milliseconds
+     */
+    public double getAttemptLatency() {
+        return attemptLatency.get();
+    }
+
+    /**
+     * An exponentially weighted moving average, updated lock-free; the value
+     * is kept as the bits of a double.
+     */
+    private static final class Average {
+
+        private final AtomicLong bits;
+
+        Average(double initial) {
+            this.bits = new AtomicLong(Double.doubleToLongBits(initial));
+        }
+
+        double get() {
+            return Double.longBitsToDouble(bits.get());
+        }
+
+        void update(double sample, double weight) {
+            long current;
+            double average;
+            do {
+                current = bits.get();
+                average = Double.longBitsToDouble(current);
+            } while (!bits.compareAndSet(current, Double.doubleToLongBits(average + weight * (sample - average))));
+        }
+    }
+}
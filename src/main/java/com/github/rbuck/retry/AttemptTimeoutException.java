@@ -0,0 +1,20 @@
+package com.github.rbuck.retry;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Raised by a retry policy when an attempt overran the per-attempt timeout and
+ * was interrupted. Timed out attempts are always retried; this is what the
+ * caller sees when the last attempt timed out. The failure the interrupted
+ * action raised, if any, is attached as a suppressed exception.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class AttemptTimeoutException extends TimeoutException {
+
+    private static final long serialVersionUID = 1L;
+
+    public AttemptTimeoutException(String message) {
+        super(message);
+    }
+}
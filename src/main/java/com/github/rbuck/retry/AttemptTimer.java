@@ -0,0 +1,97 @@
+package com.github.rbuck.retry;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Enforces per-attempt timeouts by interrupting the attempting thread from a
+ * shared daemon timer thread.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+final class AttemptTimer {
+
+    private static final ScheduledThreadPoolExecutor TIMER;
+
+    static {
+        TIMER = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "retry-attempt-timer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private AttemptTimer() {
+    }
+
+    /**
+     * Starts watching the current thread; it is interrupted unless the watch
+     * is stopped within the timeout.
+     *
+     * @param timeout the timeout in nanoseconds
+     * @return the watch, to be stopped by the current thread
+     */
+    static Watch start(long timeout) {
+        Watch watch = new Watch(Thread.currentThread());
+        watch.timeout = TIMER.schedule(watch, timeout, TimeUnit.NANOSECONDS);
+        return watch;
+    }
+
+    /**
+     * Guards against the race between the timer and the end of the attempt:
+     * whichever moves the state first wins, and a stopping thread waits until
+     * a timer that won has delivered its interrupt before clearing it.
+     */
+    static final class Watch implements Runnable {
+
+        private static final int RUNNING = 0;
+        private static final int STOPPED = 1;
+        private static final int INTERRUPTING = 2;
+        private static final int INTERRUPTED = 3;
+        private static final int CLEARED = 4;
+
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+        private final Thread thread;
+        private Future<?> timeout;
+
+        Watch(Thread thread) {
+            this.thread = thread;
+        }
+
+        @Override
+        public void run() {
+            if (state.compareAndSet(RUNNING, INTERRUPTING)) {
+                thread.interrupt();
+                state.set(INTERRUPTED);
+            }
+        }
+
+        /**
+         * Stops the watch; if it timed out, clears the interrupt it caused.
+         * May be called more than once.
+         *
+         * @return true if the attempt timed out
+         */
+        boolean stop() {
+            if (state.compareAndSet(RUNNING, STOPPED)) {
+                timeout.cancel(false);
+                return false;
+            }
+            int current;
+            while ((current = state.get()) == INTERRUPTING) {
+                Thread.yield();
+            }
+            if (current == INTERRUPTED && state.compareAndSet(INTERRUPTED, CLEARED)) {
+                Thread.interrupted();
+            }
+            return current != STOPPED;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.rbuck.retry;
+
+/**
+ * Decorates any retry strategy so that, in addition to its own limits, each
+ * retry must be paid for from a shared retry budget.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class BudgetedRetryStrategy implements RetryStrategy {
+
+    private final RetryStrategy retryStrategy;
+    private final RetryBudget retryBudget;
+
+    /**
+     * Constructs a budgeted retry strategy.
+     *
+     * @param retryStrategy the strategy governing retry count and delays
+     * @param retryBudget   the budget retries are withdrawn from, usually shared
+     */
+    public BudgetedRetryStrategy(RetryStrategy retryStrategy, RetryBudget retryBudget) {
+        if (retryStrategy == null || retryBudget == null) {
+            throw new IllegalArgumentException("retry strategy and budget must not be null");
+        }
+        this.retryStrategy = retryStrategy;
+        this.retryBudget = retryBudget;
+    }
+
+    @Override
+    public RetryState getRetryState() {
+        final RetryState retryState = retryStrategy.getRetryState();
+        return new RetryState() {
+
+            @Override
+            public void delayRetry() {
+                retryState.delayRetry();
+            }
+
+            @Override
+            public void delayRetry(long delay) {
+                retryState.delayRetry(delay);
+            }
+
+            @Override
+            public boolean hasRetries() {
+                return retryState.hasRetries() && retryBudget.tryWithdraw();
+            }
+
+            @Override
+            public int getRetryCount() {
+                return retryState.getRetryCount();
+            }
+
+            @Override
+            public long getRetryDelay() {
+                return retryState.getRetryDelay();
+            }
+        };
+    }
+
+    @Override
+    public void onSuccess(int retryCount) {
+        retryBudget.deposit();
+        retryStrategy.onSuccess(retryCount);
+    }
+}
@@ -0,0 +1,133 @@
+package com.github.rbuck.retry;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A semaphore bulkhead limiting the number of actions a retry policy performs
+ * at once, retry delays included, so that a slow or failing resource cannot
+ * tie up every thread of the application.
+ * <p/>
+ * Actions exceeding the limit wait in a bounded queue, in order of arrival,
+ * for at most the maximum wait; actions finding the queue full, or waiting
+ * longer, are rejected. A bulkhead is usually attached to the policies of one
+ * resource only.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ * @see ThreadPoolBulkhead
+ */
+public class Bulkhead {
+
+    public static final int DEFAULT_MAX_CONCURRENT_CALLS = 25;
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 100;
+    public static final long DEFAULT_MAX_WAIT = 0;
+
+    private final int maxConcurrentCalls;
+    private final int maxQueueSize;
+    private final long maxWait;
+    private final Semaphore permits;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public Bulkhead() {
+        this(DEFAULT_MAX_CONCURRENT_CALLS, DEFAULT_MAX_QUEUE_SIZE, DEFAULT_MAX_WAIT);
+    }
+
+    /**
+     * Constructs a bulkhead.
+     *
+     * @param maxConcurrentCalls the number of actions permitted at once
+     * @param maxQueueSize       the number of actions permitted to wait for a turn
+     * @param maxWait            the time in milliseconds an action waits for a turn, or zero not to wait
+     */
+    public Bulkhead(int maxConcurrentCalls, int maxQueueSize, long maxWait) {
+        if (maxConcurrentCalls < 1 || maxQueueSize < 0 || maxWait < 0) {
+            throw new IllegalArgumentException("concurrent calls must be positive, queue size and wait not negative");
+        }
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxQueueSize = maxQueueSize;
+        this.maxWait = maxWait;
+        this.permits = new Semaphore(maxConcurrentCalls, true);
+    }
+
+    /**
+     * Acquires a permission to perform an action, waiting for a turn if need be.
+     *
+     * @return true if the action may proceed, false if it must be rejected
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean acquirePermission() throws InterruptedException {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        if (maxWait > 0) {
+            if (waiting.incrementAndGet() <= maxQueueSize) {
+                queued.increment();
+                try {
+                    if (permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                } finally {
+                    waiting.decrementAndGet();
+                }
+            } else {
+                waiting.decrementAndGet();
+            }
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Acquires a permission to perform an action if one is available right away.
+     *
+     * @return true if the action may proceed, false if it must be rejected
+     */
+    public boolean tryAcquirePermission() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Releases the permission of a completed action.
+     */
+    public void releasePermission() {
+        permits.release();
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public int getAvailableConcurrentCalls() {
+        return permits.availablePermits();
+    }
+
+    /**
+     * Gets the number of actions currently waiting for a turn.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return waiting.get();
+    }
+
+    /**
+     * Gets the number of actions that found the bulkhead saturated and had to wait.
+     *
+     * @return the number of queued actions
+     */
+    public long getQueuedCount() {
+        return queued.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+}
@@ -0,0 +1,16 @@
+package com.github.rbuck.retry;
+
+/**
+ * Raised by a retry policy when its bulkhead does not admit an action, either
+ * because it is saturated or because the action waited too long for a turn.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class BulkheadFullException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public BulkheadFullException(String message) {
+        super(message);
+    }
+}
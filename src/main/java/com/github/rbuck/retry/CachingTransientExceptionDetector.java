@@ -0,0 +1,222 @@
+package com.github.rbuck.retry;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Decorates a transient exception detector, remembering how it classified
+ * each shape of failure so that, when the same failure recurs, as it does by
+ * the thousands during an outage, classifying it takes a single lookup.
+ * <p/>
+ * The shape of a failure is the class of every exception in its cause chain,
+ * along with the SQLSTATE and vendor code of those that are SQL exceptions.
+ * Caching is therefore only correct for detectors deciding on these alone;
+ * rules that also look at messages, or at anything else, must be opted out of
+ * by exception type or SQLSTATE. Failures matching such a rule, and SQL
+ * exceptions chaining next exceptions, are classified by the detector every
+ * time. For the SQL detectors of this package, SQLSTATE class 23, whose
+ * duplicate values they detect by message, is opted out from the start, and
+ * a dialect detector is not cached until its dialect is detected.
+ * <p/>
+ * Shapes are kept in a fixed number of slots picked by hash, a new shape
+ * evicting the one in its slot; class names are hashed rather than classes,
+ * so that shapes land in the same slots in every run. Lookups and updates are lock-free, and a hit
+ * allocates nothing.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class CachingTransientExceptionDetector implements TransientExceptionDetector {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private static final int MAX_DEPTH = 16;
+    private static final int MAX_CAPACITY = 1 << 20;
+
+    private final TransientExceptionDetector detector;
+    private final SqlDialectDetector dialectDetector;
+    private final AtomicReferenceArray<Shape> shapes;
+    private final int mask;
+
+    private volatile Class<?>[] uncachedTypes = new Class<?>[0];
+    private volatile String[] uncachedSqlStates = new String[0];
+
+    public CachingTransientExceptionDetector(TransientExceptionDetector detector) {
+        this(detector, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a caching detector.
+     *
+     * @param detector the detector whose classifications to cache
+     * @param capacity the number of shapes cached, rounded up to a power of two
+     */
+    public CachingTransientExceptionDetector(TransientExceptionDetector detector, int capacity) {
+        if (detector == null) {
+            throw new IllegalArgumentException("detector must not be null");
+        }
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity must be between 1 and " + MAX_CAPACITY);
+        }
+        int size = Integer.highestOneBit(capacity * 2 - 1);
+        this.detector = detector;
+        this.dialectDetector = detector instanceof SqlDialectDetector ? (SqlDialectDetector) detector : null;
+        this.shapes = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        if (detector instanceof SqlTransientExceptionDetector || dialectDetector != null) {
+            addUncachedSqlState("23");
+        }
+    }
+
+    @Override
+    public boolean isTransient(Exception e) {
+        if (e == null || (dialectDetector != null && !dialectDetector.isDetected())) {
+            return detector.isTransient(e);
+        }
+        Class<?>[] types = uncachedTypes;
+        String[] sqlStates = uncachedSqlStates;
+        int hash = 0;
+        int depth = 0;
+        for (Throwable t = e; t != null && depth < MAX_DEPTH; t = t.getCause(), depth++) {
+            Class<?> type = t.getClass();
+            for (Class<?> uncached : types) {
+                if (uncached.isAssignableFrom(type)) {
+                    return detector.isTransient(e);
+                }
+            }
+            hash = 31 * hash + type.getName().hashCode();
+            if (t instanceof SQLException) {
+                SQLException se = (SQLException) t;
+                String sqlState = se.getSQLState();
+                if (se.getNextException() != null || isUncached(sqlState, sqlStates)) {
+                    return detector.isTransient(e);
+                }
+                hash = 31 * (31 * hash + (sqlState == null ? 0 : sqlState.hashCode())) + se.getErrorCode();
+            }
+        }
+        hash ^= hash >>> 16;
+        int index = hash & mask;
+        Shape shape = shapes.get(index);
+        if (shape != null && shape.hash == hash && shape.matches(e, depth)) {
+            return shape.isTransient;
+        }
+        boolean isTransient = detector.isTransient(e);
+        shapes.set(index, new Shape(hash, e, depth, isTransient));
+        return isTransient;
+    }
+
+    /**
+     * Opts exceptions of a type out of caching; failures with an exception of
+     * the type anywhere in their cause chain are always classified anew.
+     *
+     * @param type the exception type
+     */
+    public synchronized void addUncachedType(Class<? extends Throwable> type) {
+        if (type == null) {
+            throw new IllegalArgumentException("type must not be null");
+        }
+        Class<?>[] old = uncachedTypes;
+        Class<?>[] types = new Class<?>[old.length + 1];
+        System.arraycopy(old, 0, types, 0, old.length);
+        types[old.length] = type;
+        uncachedTypes = types;
+        clear();
+    }
+
+    /**
+     * Opts a SQLSTATE class or code out of caching; failures with a SQL
+     * exception of the class or code anywhere in their cause chain are always
+     * classified anew.
+     *
+     * @param sqlState the two character class or five character code
+     */
+    public synchronized void addUncachedSqlState(String sqlState) {
+        if (sqlState == null || (sqlState.length() != 2 && sqlState.length() != 5)) {
+            throw new IllegalArgumentException("expected a SQLSTATE class or code: " + sqlState);
+        }
+        String[] old = uncachedSqlStates;
+        String[] sqlStates = new String[old.length + 1];
+        System.arraycopy(old, 0, sqlStates, 0, old.length);
+        sqlStates[old.length] = sqlState;
+        uncachedSqlStates = sqlStates;
+        clear();
+    }
+
+    /**
+     * Forgets all cached classifications, as needed when the rules of the
+     * detector change.
+     */
+    public void clear() {
+        for (int i = 0; i <= mask; i++) {
+            shapes.set(i, null);
+        }
+    }
+
+    /**
+     * Gets the detector whose classifications are cached.
+     *
+     * @return the detector
+     */
+    public TransientExceptionDetector getDetector() {
+        return detector;
+    }
+
+    private static boolean isUncached(String sqlState, String[] sqlStates) {
+        if (sqlState != null) {
+            for (String uncached : sqlStates) {
+                if (sqlState.startsWith(uncached)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * The shape of a failure and its classification.
+     */
+    private static final class Shape {
+
+        private final int hash;
+        private final Class<?>[] types;
+        private final String[] sqlStates;
+        private final int[] errorCodes;
+        private final boolean isTransient;
+
+        Shape(int hash, Throwable e, int depth, boolean isTransient) {
+            this.hash = hash;
+            this.types = new Class<?>[depth];
+            this.sqlStates = new String[depth];
+            this.errorCodes = new int[depth];
+            this.isTransient = isTransient;
+            Throwable t = e;
+            for (int i = 0; i < depth; i++, t = t.getCause()) {
+                types[i] = t.getClass();
+                if (t instanceof SQLException) {
+                    sqlStates[i] = ((SQLException) t).getSQLState();
+                    errorCodes[i] = ((SQLException) t).getErrorCode();
+                }
+            }
+        }
+
+        boolean matches(Throwable e, int depth) {
+            if (depth != types.length) {
+                return false;
+            }
+            Throwable t = e;
+            for (int i = 0; i < depth; i++, t = t.getCause()) {
+                if (t.getClass() != types[i]) {
+                    return false;
+                }
+                if (t instanceof SQLException) {
+                    SQLException se = (SQLException) t;
+                    String sqlState = se.getSQLState();
+                    if (se.getErrorCode() != errorCodes[i]
+                            || (sqlState == null ? sqlStates[i] != null : !sqlState.equals(sqlStates[i]))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.github.rbuck.retry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A circuit breaker consulted by retry policies before each attempt, so that
+ * callers fail fast while a resource is down rather than spending their whole
+ * retry budget against it.
+ * <p/>
+ * While closed, the outcomes of attempts are recorded in a sliding window of
+ * the most recent calls; once the window holds a minimum number of calls and
+ * the failure rate reaches the threshold, the breaker opens. While open, no
+ * attempts are permitted. After the wait duration the breaker becomes half
+ * open and permits a limited number of probe attempts; if they all succeed
+ * the breaker closes, if any fails it opens again.
+ * <p/>
+ * All state transitions are lock-free; a breaker may be shared by any number
+ * of policies and threads.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+    public static final int DEFAULT_SLIDING_WINDOW_SIZE = 100;
+    public static final int DEFAULT_MINIMUM_NUMBER_OF_CALLS = 20;
+    public static final long DEFAULT_WAIT_DURATION_IN_OPEN_STATE = TimeUnit.MILLISECONDS.convert(30, TimeUnit.SECONDS);
+    public static final int DEFAULT_PERMITTED_CALLS_IN_HALF_OPEN_STATE = 5;
+
+    private final int failureRateThreshold;
+    private final int slidingWindowSize;
+    private final int minimumNumberOfCalls;
+    private final long waitDurationInOpenState;
+    private final int permittedCallsInHalfOpenState;
+
+    private final AtomicReference<Snapshot> snapshot;
+    private volatile CircuitBreakerEventListener[] listeners = new CircuitBreakerEventListener[0];
+
+    public CircuitBreaker() {
+        this(DEFAULT_FAILURE_RATE_THRESHOLD, DEFAULT_SLIDING_WINDOW_SIZE, DEFAULT_MINIMUM_NUMBER_OF_CALLS,
+                DEFAULT_WAIT_DURATION_IN_OPEN_STATE, DEFAULT_PERMITTED_CALLS_IN_HALF_OPEN_STATE);
+    }
+
+    /**
+     * Constructs a circuit breaker.
+     *
+     * @param failureRateThreshold          the failure rate, in percent, at which the breaker opens
+     * @param slidingWindowSize             the number of most recent calls the failure rate is computed over
+     * @param minimumNumberOfCalls          the number of calls required before the failure rate is evaluated
+     * @param waitDurationInOpenState       the time in milliseconds the breaker stays open
+     * @param permittedCallsInHalfOpenState the number of probe calls permitted while half open
+     */
+    public CircuitBreaker(int failureRateThreshold, int slidingWindowSize, int minimumNumberOfCalls,
+                          long waitDurationInOpenState, int permittedCallsInHalfOpenState) {
+        if (failureRateThreshold < 1 || failureRateThreshold > 100) {
+            throw new IllegalArgumentException("failure rate threshold must be between 1 and 100");
+        }
+        if (slidingWindowSize < 1 || minimumNumberOfCalls < 1 || permittedCallsInHalfOpenState < 1) {
+            throw new IllegalArgumentException("window size, minimum calls and permitted calls must be positive");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.slidingWindowSize = slidingWindowSize;
+        this.minimumNumberOfCalls = Math.min(minimumNumberOfCalls, slidingWindowSize);
+        this.waitDurationInOpenState = TimeUnit.NANOSECONDS.convert(waitDurationInOpenState, TimeUnit.MILLISECONDS);
+        this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+        this.snapshot = new AtomicReference<>(closed());
+    }
+
+    /**
+     * Gets the current state.
+     *
+     * @return the current state
+     */
+    public State getState() {
+        return snapshot.get().state;
+    }
+
+    /**
+     * Gets the failure rate over the sliding window while closed.
+     *
+     * @return the failure rate in percent, or -1 if too few calls were recorded or the breaker is not closed
+     */
+    public int getFailureRate() {
+        Snapshot current = snapshot.get();
+        return current.state == State.CLOSED ? current.window.failureRate() : -1;
+    }
+
+    /**
+     * Acquires permission to make an attempt. Every acquired permission must
+     * be followed by exactly one call to onSuccess, onFailure or onIgnored.
+     *
+     * @return true if an attempt is permitted, false if the caller must fail fast
+     */
+    public boolean tryAcquirePermission() {
+        while (true) {
+            Snapshot current = snapshot.get();
+            switch (current.state) {
+                case CLOSED:
+                    return true;
+                case OPEN:
+                    if (System.nanoTime() - current.openedAt < waitDurationInOpenState) {
+                        return false;
+                    }
+                    transition(current, halfOpen());
+                    break;
+                case HALF_OPEN:
+                    int permits;
+                    while ((permits = current.permits.get()) > 0) {
+                        if (current.permits.compareAndSet(permits, permits - 1)) {
+                            return true;
+                        }
+                    }
+                    return false;
+            }
+        }
+    }
+
+    /**
+     * Records a successful attempt.
+     */
+    public void onSuccess() {
+        Snapshot current = snapshot.get();
+        switch (current.state) {
+            case CLOSED:
+                current.window.record(false);
+                break;
+            case HALF_OPEN:
+                if (current.successes.incrementAndGet() >= permittedCallsInHalfOpenState) {
+                    transition(current, closed());
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Records a failed attempt.
+     */
+    public void onFailure() {
+        Snapshot current = snapshot.get();
+        switch (current.state) {
+            case CLOSED:
+                if (current.window.record(true) >= failureRateThreshold) {
+                    transition(current, open());
+                }
+                break;
+            case HALF_OPEN:
+                transition(current, open());
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Releases a permission without recording an outcome, e.g. when the
+     * attempt was interrupted.
+     */
+    public void onIgnored() {
+        Snapshot current = snapshot.get();
+        if (current.state == State.HALF_OPEN) {
+            current.permits.incrementAndGet();
+        }
+    }
+
+    public synchronized void addCircuitBreakerEventListener(CircuitBreakerEventListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Attempt to set null circuit breaker event listener");
+        }
+        CircuitBreakerEventListener[] old = listeners;
+        CircuitBreakerEventListener[] updated = new CircuitBreakerEventListener[old.length + 1];
+        System.arraycopy(old, 0, updated, 0, old.length);
+        updated[old.length] = listener;
+        listeners = updated;
+    }
+
+    private void transition(Snapshot from, Snapshot to) {
+        if (snapshot.compareAndSet(from, to)) {
+            CircuitBreakerEventListener[] current = listeners;
+            if (current.length != 0) {
+                CircuitBreakerEvent evt = new CircuitBreakerEvent(this, from.state, to.state);
+                for (CircuitBreakerEventListener listener : current) {
+                    listener.onStateChange(evt);
+                }
+            }
+        }
+    }
+
+    private Snapshot closed() {
+        return new Snapshot(State.CLOSED, 0, new Window(slidingWindowSize, minimumNumberOfCalls), null);
+    }
+
+    private Snapshot open() {
+        return new Snapshot(State.OPEN, System.nanoTime(), null, null);
+    }
+
+    private Snapshot halfOpen() {
+        return new Snapshot(State.HALF_OPEN, 0, null, new AtomicInteger(permittedCallsInHalfOpenState));
+    }
+
+    /**
+     * An immutable state, replaced as a whole upon each transition so that the
+     * state and its data always change together.
+     */
+    private static final class Snapshot {
+        final State state;
+        final long openedAt;
+        final Window window;
+        final AtomicInteger permits;
+        final AtomicInteger successes = new AtomicInteger();
+
+        Snapshot(State state, long openedAt, Window window, AtomicInteger permits) {
+            this.state = state;
+            this.openedAt = openedAt;
+            this.window = window;
+            this.permits = permits;
+        }
+    }
+
+    /**
+     * A count based sliding window over the outcomes of the most recent calls.
+     */
+    private static final class Window {
+        private static final int SUCCESS = 1;
+        private static final int FAILURE = 2;
+
+        private final AtomicIntegerArray outcomes;
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicInteger failures = new AtomicInteger();
+        private final int minimumNumberOfCalls;
+
+        Window(int size, int minimumNumberOfCalls) {
+            this.outcomes = new AtomicIntegerArray(size);
+            this.minimumNumberOfCalls = minimumNumberOfCalls;
+        }
+
+        /**
+         * Records an outcome, evicting the oldest.
+         *
+         * @return the failure rate after recording, or -1 if too few calls were recorded
+         */
+        int record(boolean failure) {
+            long call = calls.getAndIncrement();
+            int evicted = outcomes.getAndSet((int) (call % outcomes.length()), failure ? FAILURE : SUCCESS);
+            int failed;
+            if (evicted == FAILURE && !failure) {
+                failed = failures.decrementAndGet();
+            } else if (evicted != FAILURE && failure) {
+                failed = failures.incrementAndGet();
+            } else {
+                failed = failures.get();
+            }
+            return rate(call + 1, failed);
+        }
+
+        int failureRate() {
+            return rate(calls.get(), failures.get());
+        }
+
+        private int rate(long calls, int failed) {
+            if (calls < minimumNumberOfCalls) {
+                return -1;
+            }
+            long total = Math.min(calls, outcomes.length());
+            return (int) (failed * 100L / total);
+        }
+    }
+}
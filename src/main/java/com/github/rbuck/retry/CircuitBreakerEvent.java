@@ -0,0 +1,39 @@
+package com.github.rbuck.retry;
+
+/**
+ * Represents a circuit breaker state transition.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class CircuitBreakerEvent extends java.util.EventObject {
+
+    private final CircuitBreaker.State fromState;
+    private final CircuitBreaker.State toState;
+
+    /**
+     * Constructs a state transition event.
+     *
+     * @param source    the circuit breaker whose state changed
+     * @param fromState the state before the transition
+     * @param toState   the state after the transition
+     * @throws IllegalArgumentException if source is null.
+     */
+    public CircuitBreakerEvent(CircuitBreaker source, CircuitBreaker.State fromState, CircuitBreaker.State toState) {
+        super(source);
+        this.fromState = fromState;
+        this.toState = toState;
+    }
+
+    @Override
+    public CircuitBreaker getSource() {
+        return (CircuitBreaker) super.getSource();
+    }
+
+    public CircuitBreaker.State getFromState() {
+        return fromState;
+    }
+
+    public CircuitBreaker.State getToState() {
+        return toState;
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.rbuck.retry;
+
+/**
+ * Interface for receiving circuit breaker state transitions.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public interface CircuitBreakerEventListener {
+
+    /**
+     * This method gets called, in the thread causing it, when the circuit
+     * breaker changes state.
+     *
+     * @param evt The CircuitBreakerEvent raised
+     */
+    void onStateChange(CircuitBreakerEvent evt);
+
+}
@@ -0,0 +1,16 @@
+package com.github.rbuck.retry;
+
+/**
+ * Raised by a retry policy when its circuit breaker does not permit an attempt.
+ * The cause, if any, is the failure of the preceding attempt.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class CircuitBreakerOpenException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitBreakerOpenException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
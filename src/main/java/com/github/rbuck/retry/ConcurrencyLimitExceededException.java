@@ -0,0 +1,16 @@
+package com.github.rbuck.retry;
+
+/**
+ * Raised by a retry policy when its concurrency limiter does not permit an
+ * attempt. The cause, if any, is the failure of the preceding attempt.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class ConcurrencyLimitExceededException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    public ConcurrencyLimitExceededException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
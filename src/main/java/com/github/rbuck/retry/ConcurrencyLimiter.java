@@ -0,0 +1,272 @@
+package com.github.rbuck.retry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An adaptive limit on the number of attempts in flight, consulted by retry
+ * policies before each attempt, so that when a resource slows down the load
+ * put on it shrinks rather than piling up in retries.
+ * <p/>
+ * The limit follows an additive increase, multiplicative decrease scheme.
+ * Each successful attempt whose round trip time stays within a tolerance of
+ * the baseline round trip time grows the limit by the reciprocal of the
+ * limit, i.e. by about one per round of calls, provided the limit is
+ * actually being used. Each transient failure and timed out attempt, and
+ * each successful attempt slower than the tolerance permits, shrinks the
+ * limit by the backoff ratio.
+ * <p/>
+ * The baseline is a moving average of round trip times that follows faster
+ * round trips quickly and slower ones over about a thousand attempts, each
+ * counting for no more than the tolerance permits; it thus tracks the
+ * unloaded round trip time, follows a permanent change of the resource,
+ * and is not thrown off by single outliers.
+ * <p/>
+ * Attempts exceeding the limit are rejected, or, with a maximum wait set,
+ * wait for an attempt in flight to complete. Acquiring and releasing are
+ * lock-free unless attempts are waiting; a limiter may be shared by any
+ * number of policies and threads.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class ConcurrencyLimiter {
+
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+    public static final int DEFAULT_MIN_LIMIT = 1;
+    public static final int DEFAULT_MAX_LIMIT = 200;
+    public static final double DEFAULT_BACKOFF_RATIO = 0.9;
+    public static final double DEFAULT_RTT_TOLERANCE = 2.0;
+
+    /**
+     * The weights of round trip times below and above the baseline.
+     */
+    private static final double RTT_BASELINE_FALL = 0.1;
+    private static final double RTT_BASELINE_RISE = 0.001;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double rttTolerance;
+
+    private final AtomicLong limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rttBaseline = new AtomicLong(Double.doubleToLongBits(Double.NaN));
+    private final LongAdder rejected = new LongAdder();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final AtomicInteger waiters = new AtomicInteger();
+    private volatile long maxWait;
+
+    public ConcurrencyLimiter() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_BACKOFF_RATIO, DEFAULT_RTT_TOLERANCE);
+    }
+
+    /**
+     * Constructs a concurrency limiter.
+     *
+     * @param initialLimit the initial limit
+     * @param minLimit     the limit never shrinks below
+     * @param maxLimit     the limit never grows above
+     * @param backoffRatio the factor, between 0 and 1, the limit shrinks by upon congestion
+     * @param rttTolerance the multiple of the baseline round trip time above which an attempt signals congestion
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio, double rttTolerance) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("limits must be positive and the initial limit between min and max");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1 || rttTolerance < 1) {
+            throw new IllegalArgumentException("backoff ratio must be between 0 and 1 and rtt tolerance at least 1");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.rttTolerance = rttTolerance;
+        this.limit = new AtomicLong(Double.doubleToLongBits(initialLimit));
+    }
+
+    /**
+     * Acquires a permit for an attempt, waiting up to the maximum wait if the
+     * limit is reached.
+     *
+     * @return true if the attempt may proceed, false if it must be rejected
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean acquire() throws InterruptedException {
+        if (tryAcquire()) {
+            return true;
+        }
+        long nanos = TimeUnit.MILLISECONDS.toNanos(maxWait);
+        if (nanos > 0) {
+            lock.lockInterruptibly();
+            try {
+                // registered before trying again, so that no release goes unsignalled
+                waiters.incrementAndGet();
+                try {
+                    while (nanos > 0) {
+                        if (tryAcquire()) {
+                            return true;
+                        }
+                        nanos = released.awaitNanos(nanos);
+                    }
+                } finally {
+                    waiters.decrementAndGet();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Acquires a permit for an attempt if the limit has not been reached.
+     *
+     * @return true if the attempt may proceed
+     */
+    public boolean tryAcquire() {
+        int current;
+        while ((current = inFlight.get()) < getLimit()) {
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Releases the permit of a successful attempt and adapts the limit.
+     *
+     * @param rtt the round trip time of the attempt in nanoseconds
+     */
+    public void onSuccess(long rtt) {
+        int utilized = inFlight.get();
+        release();
+        if (rtt > rttTolerance * updateBaseline(rtt)) {
+            decrease();
+        } else if (utilized * 2 >= getLimit()) {
+            // only grow a limit that is being used
+            increase();
+        }
+    }
+
+    /**
+     * Releases the permit of an attempt that failed in a way signalling
+     * congestion, e.g. transiently, and shrinks the limit.
+     */
+    public void onDropped() {
+        release();
+        decrease();
+    }
+
+    /**
+     * Releases the permit of an attempt whose outcome says nothing about the
+     * load of the resource, e.g. one that failed non-transiently.
+     */
+    public void onIgnored() {
+        release();
+    }
+
+    /**
+     * Gets the current limit.
+     *
+     * @return the current limit
+     */
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limit.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Gets the baseline round trip time successful attempts are compared with.
+     *
+     * @return the baseline in nanoseconds, or zero before any attempt succeeded
+     */
+    public long getRttBaseline() {
+        double baseline = Double.longBitsToDouble(rttBaseline.get());
+        return Double.isNaN(baseline) ? 0 : (long) baseline;
+    }
+
+    /**
+     * Sets the time an attempt waits for a permit before it is rejected.
+     *
+     * @param maxWait the maximum wait in milliseconds, or zero to reject right away
+     */
+    public void setMaxWait(long maxWait) {
+        if (maxWait < 0) {
+            throw new IllegalArgumentException("max wait must not be negative");
+        }
+        this.maxWait = maxWait;
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        if (waiters.get() > 0) {
+            lock.lock();
+            try {
+                released.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Moves the baseline towards a round trip time.
+     *
+     * @return the baseline before the move, or the round trip time if it is the first
+     */
+    private double updateBaseline(long rtt) {
+        long bits;
+        double baseline;
+        double next;
+        do {
+            bits = rttBaseline.get();
+            baseline = Double.longBitsToDouble(bits);
+            if (Double.isNaN(baseline)) {
+                baseline = next = rtt;
+            } else if (rtt < baseline) {
+                next = baseline + (rtt - baseline) * RTT_BASELINE_FALL;
+            } else {
+                next = baseline + (Math.min(rtt, rttTolerance * baseline) - baseline) * RTT_BASELINE_RISE;
+            }
+        } while (!rttBaseline.compareAndSet(bits, Double.doubleToLongBits(next)));
+        return baseline;
+    }
+
+    private void increase() {
+        long bits;
+        double current;
+        do {
+            bits = limit.get();
+            current = Double.longBitsToDouble(bits);
+            if (current >= maxLimit) {
+                return;
+            }
+        } while (!limit.compareAndSet(bits, Double.doubleToLongBits(Math.min(maxLimit, current + 1 / current))));
+    }
+
+    private void decrease() {
+        long bits;
+        double current;
+        do {
+            bits = limit.get();
+            current = Double.longBitsToDouble(bits);
+            if (current <= minLimit) {
+                return;
+            }
+        } while (!limit.compareAndSet(bits, Double.doubleToLongBits(Math.max(minLimit, current * backoffRatio))));
+    }
+}
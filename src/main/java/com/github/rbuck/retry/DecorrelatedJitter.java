@@ -0,0 +1,82 @@
+package com.github.rbuck.retry;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.rbuck.retry.RetryState.RetryStateCommon.addDelay;
+import static com.github.rbuck.retry.RetryState.RetryStateCommon.randomDelay;
+
+/**
+ * Implements decorrelated jitter; each delay is drawn uniformly between the
+ * base delay and three times the previous delay, truncated to the maximum
+ * delay. Delays grow on average like exponential backoff, but each retry
+ * depends on the previous delay rather than on the retry count, which keeps
+ * clients that failed together from staying aligned.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class DecorrelatedJitter implements RetryStrategy {
+
+    public static final int DEFAULT_RETRY_COUNT = 10;
+    public static final long DEFAULT_BASE_DELAY = 100;
+    public static final long DEFAULT_MAX_DELAY = TimeUnit.MILLISECONDS.convert(30, TimeUnit.SECONDS);
+
+    private final int maxRetries;
+    private final long baseDelay;
+    private final long maxDelay;
+
+    public DecorrelatedJitter() {
+        this(DEFAULT_RETRY_COUNT, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY);
+    }
+
+    /**
+     * Constructs a decorrelated jitter strategy.
+     *
+     * @param maxRetries the maximum number of retries
+     * @param baseDelay  the minimum delay, and the delay the sequence starts from, in milliseconds
+     * @param maxDelay   the maximum delay in milliseconds
+     */
+    public DecorrelatedJitter(int maxRetries, long baseDelay, long maxDelay) {
+        this.maxRetries = maxRetries;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    @Override
+    public RetryState getRetryState() {
+        return new RetryState() {
+
+            private int retryCount;
+            private long retryDelay = nextDelay(baseDelay);
+
+            @Override
+            public void delayRetry() {
+                addDelay(getRetryDelay());
+            }
+
+            @Override
+            public boolean hasRetries() {
+                if (retryCount < maxRetries) {
+                    retryCount++;
+                    retryDelay = nextDelay(retryDelay);
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public int getRetryCount() {
+                return retryCount;
+            }
+
+            @Override
+            public long getRetryDelay() {
+                return retryDelay;
+            }
+        };
+    }
+
+    private long nextDelay(long previousDelay) {
+        long ceiling = previousDelay > maxDelay / 3 ? maxDelay : previousDelay * 3;
+        return Math.min(maxDelay, randomDelay(baseDelay, ceiling));
+    }
+}
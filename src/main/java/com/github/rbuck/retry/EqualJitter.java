@@ -0,0 +1,81 @@
+package com.github.rbuck.retry;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.github.rbuck.retry.RetryState.RetryStateCommon.addDelay;
+import static com.github.rbuck.retry.RetryState.RetryStateCommon.exponentialDelay;
+import static com.github.rbuck.retry.RetryState.RetryStateCommon.randomDelay;
+
+/**
+ * Implements exponential backoff with equal jitter; each delay keeps half of
+ * the exponentially growing delay, base * 2^retry truncated to the maximum
+ * delay, and draws the other half uniformly at random. Guarantees some backoff
+ * for every retry while still spreading the retries of many clients.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class EqualJitter implements RetryStrategy {
+
+    public static final int DEFAULT_RETRY_COUNT = 10;
+    public static final long DEFAULT_BASE_DELAY = 100;
+    public static final long DEFAULT_MAX_DELAY = TimeUnit.MILLISECONDS.convert(30, TimeUnit.SECONDS);
+
+    private final int maxRetries;
+    private final long minDelay;
+    private final long baseDelay;
+    private final long maxDelay;
+
+    public EqualJitter() {
+        this(DEFAULT_RETRY_COUNT, DEFAULT_BASE_DELAY, DEFAULT_MAX_DELAY);
+    }
+
+    public EqualJitter(int maxRetries, long baseDelay, long maxDelay) {
+        this(maxRetries, 0, baseDelay, maxDelay);
+    }
+
+    public EqualJitter(int maxRetries, long minDelay, long baseDelay, long maxDelay) {
+        this.maxRetries = maxRetries;
+        this.minDelay = minDelay;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+    }
+
+    @Override
+    public RetryState getRetryState() {
+        return new RetryState() {
+
+            private int retryCount;
+            private long retryDelay = nextDelay(0);
+
+            @Override
+            public void delayRetry() {
+                addDelay(getRetryDelay());
+            }
+
+            @Override
+            public boolean hasRetries() {
+                if (retryCount < maxRetries) {
+                    retryCount++;
+                    retryDelay = nextDelay(retryCount);
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public int getRetryCount() {
+                return retryCount;
+            }
+
+            @Override
+            public long getRetryDelay() {
+                return retryDelay;
+            }
+        };
+    }
+
+    private long nextDelay(int retryCount) {
+        long half = exponentialDelay(baseDelay, retryCount, maxDelay) / 2;
+        return Math.max(minDelay, half + randomDelay(0, half));
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.rbuck.retry;
 
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import static com.github.rbuck.retry.RetryState.RetryStateCommon.addDelay;
@@ -9,6 +10,12 @@ import static com.github.rbuck.retry.RetryState.RetryStateCommon.addDelay;
  * Implements truncated binary exponential backoff to calculate retry delay per
  * IEEE 802.3-2008 Section 1. There will be at most ten (10) contention periods
  * of backoff, each contention period whose amount is equal to the delta backoff.
+ * <p/>
+ * Jitter is drawn from the calling thread's ThreadLocalRandom, so concurrent
+ * retries do not contend on a shared seed and separate processes do not
+ * produce identical delay sequences. For reproducible delays, e.g. in tests,
+ * construct the strategy with a seed; each retry state then draws from its
+ * own SplittableRandom split off a generator seeded with that value.
  *
  * @author Robert Buck (buck.robert.j@gmail.com)
  */
@@ -19,7 +26,7 @@ public class ExponentialBackoff implements RetryStrategy {
     public static final long DEFAULT_MAX_BACKOFF = TimeUnit.MILLISECONDS.convert(30, TimeUnit.SECONDS);
     public static final long DEFAULT_SLOT_TIME = TimeUnit.MILLISECONDS.convert(2, TimeUnit.SECONDS);
 
-    private final Random random = new Random(1);
+    private final SplittableRandom seededRandom;
     private final int maxRetries;
     private final long minBackoff;
     private final long maxBackoff;
@@ -31,10 +38,28 @@ public class ExponentialBackoff implements RetryStrategy {
     }
 
     public ExponentialBackoff(int maxRetries, long minBackoff, long maxBackoff, long slotTime) {
+        this(maxRetries, minBackoff, maxBackoff, slotTime, null);
+    }
+
+    /**
+     * Constructs a strategy producing a reproducible sequence of delays.
+     *
+     * @param maxRetries the maximum number of retries
+     * @param minBackoff the minimum backoff in milliseconds
+     * @param maxBackoff the maximum backoff in milliseconds
+     * @param slotTime   the contention period in milliseconds
+     * @param seed       the seed for the jitter source
+     */
+    public ExponentialBackoff(int maxRetries, long minBackoff, long maxBackoff, long slotTime, long seed) {
+        this(maxRetries, minBackoff, maxBackoff, slotTime, new SplittableRandom(seed));
+    }
+
+    private ExponentialBackoff(int maxRetries, long minBackoff, long maxBackoff, long slotTime, SplittableRandom seededRandom) {
         this.maxRetries = maxRetries;
         this.minBackoff = minBackoff;
         this.maxBackoff = maxBackoff;
         this.slotTime = slotTime;
+        this.seededRandom = seededRandom;
     }
 
     public ExponentialBackoff(int maxRetries) {
@@ -43,6 +68,7 @@ public class ExponentialBackoff implements RetryStrategy {
 
     @Override
     public RetryState getRetryState() {
+        final SplittableRandom random = split();
         return new RetryState() {
 
             private int retryCount;
@@ -69,8 +95,27 @@ public class ExponentialBackoff implements RetryStrategy {
             @Override
             public long getRetryDelay() {
                 final int MAX_CONTENTION_PERIODS = 10;
-                return retryCount == 0 ? 0 : Math.min(minBackoff + random.nextInt(2 << Math.min(retryCount, MAX_CONTENTION_PERIODS - 1)) * slotTime, maxBackoff);
+                if (retryCount == 0) {
+                    return 0;
+                }
+                int bound = 2 << Math.min(retryCount, MAX_CONTENTION_PERIODS - 1);
+                int slots = random == null ? ThreadLocalRandom.current().nextInt(bound) : random.nextInt(bound);
+                return Math.min(minBackoff + slots * slotTime, maxBackoff);
             }
         };
     }
+
+    /**
+     * Splits off a jitter source for a new retry state when seeded.
+     *
+     * @return a new seeded source, or null to use ThreadLocalRandom
+     */
+    private SplittableRandom split() {
+        if (seededRandom == null) {
+            return null;
+        }
+        synchronized (seededRandom) {
+            return seededRandom.split();
+        }
+    }
 }
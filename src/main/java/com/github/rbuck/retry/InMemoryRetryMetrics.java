@@ -0,0 +1,98 @@
+package com.github.rbuck.retry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps retry measurements in memory using contention-free counters; may be
+ * shared by any number of policies.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class InMemoryRetryMetrics implements RetryMetrics {
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder firstTrySuccesses = new LongAdder();
+    private final LongAdder retriesExhausted = new LongAdder();
+    private final LongAdder nonTransientFailures = new LongAdder();
+    private final LongAdder backoffNanos = new LongAdder();
+    private final LatencyHistogram attemptLatency = new LatencyHistogram();
+
+    @Override
+    public void onAttempt(long latencyNanos) {
+        attempts.increment();
+        attemptLatency.record(latencyNanos);
+    }
+
+    @Override
+    public void onSuccess(int retryCount) {
+        successes.increment();
+        if (retryCount == 0) {
+            firstTrySuccesses.increment();
+        }
+    }
+
+    @Override
+    public void onRetriesExhausted(int retryCount) {
+        retriesExhausted.increment();
+    }
+
+    @Override
+    public void onNonTransientFailure(int retryCount) {
+        nonTransientFailures.increment();
+    }
+
+    @Override
+    public void onBackoff(long delayNanos) {
+        backoffNanos.add(delayNanos);
+    }
+
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    public long getSuccesses() {
+        return successes.sum();
+    }
+
+    public long getFirstTrySuccesses() {
+        return firstTrySuccesses.sum();
+    }
+
+    /**
+     * Gets the number of actions that succeeded only after retrying.
+     *
+     * @return the number of actions succeeding after one or more retries
+     */
+    public long getRetriedSuccesses() {
+        return successes.sum() - firstTrySuccesses.sum();
+    }
+
+    public long getRetriesExhausted() {
+        return retriesExhausted.sum();
+    }
+
+    public long getNonTransientFailures() {
+        return nonTransientFailures.sum();
+    }
+
+    /**
+     * Gets the total time spent in backoff between attempts.
+     *
+     * @param unit the unit to return the time in
+     * @return the total backoff time
+     */
+    public long getBackoffTime(TimeUnit unit) {
+        return unit.convert(backoffNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the histogram of attempt latencies, in nanoseconds.
+     *
+     * @return the attempt latency histogram
+     */
+    public LatencyHistogram getAttemptLatency() {
+        return attemptLatency;
+    }
+}
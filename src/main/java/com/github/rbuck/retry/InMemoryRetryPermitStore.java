@@ -0,0 +1,24 @@
+package com.github.rbuck.retry;
+
+/**
+ * Keeps retry permits in memory, throttling the retries of all strategies in
+ * one process that share the store.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class InMemoryRetryPermitStore implements RetryPermitStore {
+
+    private long window = Long.MIN_VALUE;
+    private long used;
+
+    @Override
+    public synchronized int acquire(long window, int requested, int limit) {
+        if (window > this.window) {
+            this.window = window;
+            this.used = 0;
+        }
+        int granted = (int) Math.max(0, Math.min(requested, limit - used));
+        used += granted;
+        return granted;
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.rbuck.retry;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+
+/**
+ * Keeps retry permits in a memory-mapped file, throttling the retries of all
+ * processes on one host that open a store on the same file; meant for
+ * exercising fleet-wide throttling with several JVMs on a single machine.
+ * <p/>
+ * The file holds the current window and the permits handed out for it. Every
+ * acquisition reads and updates them under an exclusive lock on the file, so
+ * processes are serialized by the operating system; within a process, stores
+ * are serialized by a shared monitor, as file locks are held per process.
+ * <p/>
+ * Like any interruptible channel, the channel of the file is closed when a
+ * thread waiting for the lock is interrupted. That acquisition grants no
+ * permits and leaves the interrupt status set; the file is then opened again,
+ * so later acquisitions are unaffected. The mapping outlives the channel.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class MappedFileRetryPermitStore implements RetryPermitStore, Closeable {
+
+    private static final int WINDOW = 0;
+    private static final int USED = 8;
+    private static final int SIZE = 16;
+
+    private static final Object PROCESS_LOCK = new Object();
+
+    private final File path;
+    private final MappedByteBuffer buffer;
+    // guarded by PROCESS_LOCK, replaced once an interrupt closed the channel
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private boolean closed;
+
+    /**
+     * Opens a store on the file, creating the file if it does not exist.
+     *
+     * @param path the file shared by the processes to throttle
+     * @throws IOException if the file cannot be opened or mapped
+     */
+    public MappedFileRetryPermitStore(File path) throws IOException {
+        this.path = path;
+        this.file = new RandomAccessFile(path, "rw");
+        try {
+            this.channel = file.getChannel();
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, SIZE);
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Takes permits from the file; grants none if the file cannot be locked.
+     */
+    @Override
+    public int acquire(long window, int requested, int limit) {
+        synchronized (PROCESS_LOCK) {
+            try {
+                FileLock lock = channel.lock(0, SIZE, false);
+                try {
+                    long used = buffer.getLong(USED);
+                    if (window > buffer.getLong(WINDOW)) {
+                        buffer.putLong(WINDOW, window);
+                        used = 0;
+                    }
+                    int granted = (int) Math.max(0, Math.min(requested, limit - used));
+                    buffer.putLong(USED, used + granted);
+                    return granted;
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                // an interrupt closes the channel, FileLockInterruptionException
+                // or ClosedByInterruptException depending on where it struck
+                if (!channel.isOpen()) {
+                    reopen();
+                }
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Opens the file again after an interrupt closed its channel, unless the
+     * store was closed; should that fail, the store grants nothing.
+     */
+    private void reopen() {
+        if (closed) {
+            return;
+        }
+        try {
+            RandomAccessFile reopened = new RandomAccessFile(path, "rw");
+            try {
+                file.close();
+            } catch (IOException ignored) {
+            }
+            file = reopened;
+            channel = reopened.getChannel();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (PROCESS_LOCK) {
+            closed = true;
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.rbuck.retry;
+
+/**
+ * Discards all measurements; the default for retry policies, which skip
+ * taking timestamps altogether when it is in use.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public final class NoOpRetryMetrics implements RetryMetrics {
+
+    public static final NoOpRetryMetrics INSTANCE = new NoOpRetryMetrics();
+
+    private NoOpRetryMetrics() {
+    }
+
+    @Override
+    public void onAttempt(long latencyNanos) {
+    }
+
+    @Override
+    public void onSuccess(int retryCount) {
+    }
+
+    @Override
+    public void onRetriesExhausted(int retryCount) {
+    }
+
+    @Override
+    public void onNonTransientFailure(int retryCount) {
+    }
+
+    @Override
+    public void onBackoff(long delayNanos) {
+    }
+}
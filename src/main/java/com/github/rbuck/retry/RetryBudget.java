@@ -0,0 +1,117 @@
+package com.github.rbuck.retry;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A token bucket limiting retries to a percentage of successful calls, meant
+ * to be shared by all strategies in a process so that, during a partial
+ * outage, retries do not multiply the load on the failing resource.
+ * <p/>
+ * Every successful call deposits a fraction of a token, every retry withdraws
+ * a whole token; a retry is refused when no token is available. The bucket is
+ * capped so that a long period of success does not build up a reserve large
+ * enough to cause a retry storm, and it starts with a small reserve so that
+ * retries are possible right after startup.
+ * <p/>
+ * Tokens are kept in fixed point in several striped counters, each on its own
+ * cache line; threads deposit into and withdraw from the stripe their thread
+ * hashes to, and only fall back to other stripes when theirs is full or empty.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ * @see BudgetedRetryStrategy
+ */
+public class RetryBudget {
+
+    public static final int DEFAULT_RETRY_PERCENT = 10;
+    public static final int DEFAULT_INITIAL_TOKENS = 10;
+    public static final int DEFAULT_MAX_TOKENS = 100;
+
+    private static final long UNIT = 100;
+    private static final int PAD = 8;
+
+    private final long deposit;
+    private final long stripeCapacity;
+    private final int mask;
+    private final AtomicLongArray stripes;
+
+    public RetryBudget() {
+        this(DEFAULT_RETRY_PERCENT, DEFAULT_INITIAL_TOKENS, DEFAULT_MAX_TOKENS);
+    }
+
+    /**
+     * Constructs a retry budget.
+     *
+     * @param retryPercent  the permitted retries as a percentage of successful calls
+     * @param initialTokens the number of retries permitted before any call succeeded
+     * @param maxTokens     the maximum number of retries that may be saved up
+     */
+    public RetryBudget(int retryPercent, int initialTokens, int maxTokens) {
+        if (retryPercent < 0 || initialTokens < 0 || maxTokens < 1) {
+            throw new IllegalArgumentException("retry percent and tokens must not be negative");
+        }
+        // every stripe must be able to hold at least one whole token
+        int count = Integer.highestOneBit(Math.min(Math.min(Runtime.getRuntime().availableProcessors(), maxTokens), 64));
+        this.mask = count - 1;
+        this.deposit = retryPercent;
+        this.stripeCapacity = (maxTokens * UNIT + count - 1) / count;
+        this.stripes = new AtomicLongArray(count * PAD);
+        int initial = Math.min(initialTokens, maxTokens);
+        for (int i = 0; i < count; i++) {
+            stripes.set(i * PAD, Math.min(stripeCapacity, (initial / count + (i < initial % count ? 1 : 0)) * UNIT));
+        }
+    }
+
+    /**
+     * Deposits the share of a token earned by a successful call.
+     */
+    public void deposit() {
+        int start = stripe();
+        for (int i = 0; i <= mask; i++) {
+            int index = ((start + i) & mask) * PAD;
+            long tokens;
+            while ((tokens = stripes.get(index)) < stripeCapacity) {
+                if (stripes.compareAndSet(index, tokens, Math.min(stripeCapacity, tokens + deposit))) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Withdraws a token for a retry.
+     *
+     * @return true if the retry is within budget, false if it must be refused
+     */
+    public boolean tryWithdraw() {
+        int start = stripe();
+        for (int i = 0; i <= mask; i++) {
+            int index = ((start + i) & mask) * PAD;
+            long tokens;
+            while ((tokens = stripes.get(index)) >= UNIT) {
+                if (stripes.compareAndSet(index, tokens, tokens - UNIT)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the approximate number of retries currently permitted.
+     *
+     * @return the number of whole tokens in the bucket
+     */
+    public long getAvailableRetries() {
+        long tokens = 0;
+        for (int i = 0; i <= mask; i++) {
+            tokens += stripes.get(i * PAD);
+        }
+        return tokens / UNIT;
+    }
+
+    private int stripe() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.rbuck.retry;
+
+/**
+ * Delivers retry events to listeners on behalf of a retry policy.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public interface RetryEventDispatcher {
+
+    /**
+     * Dispatches the event to the listener; depending upon the implementation
+     * delivery may happen in the calling thread or later in another thread.
+     *
+     * @param evt      the retry event raised
+     * @param listener the listener to deliver the event to
+     */
+    void dispatch(RetryEvent evt, RetryEventListener listener);
+
+    /**
+     * Stops the dispatcher; events already accepted are still delivered,
+     * events dispatched afterwards are discarded.
+     */
+    void shutdown();
+}
@@ -0,0 +1,46 @@
+package com.github.rbuck.retry;
+
+/**
+ * Receives measurements from retry policies. Implementations are called on
+ * the hot path from many threads at once and must be fast and thread safe.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ * @see InMemoryRetryMetrics
+ */
+public interface RetryMetrics {
+
+    /**
+     * Called after every attempt, successful or not.
+     *
+     * @param latencyNanos the duration of the attempt in nanoseconds
+     */
+    void onAttempt(long latencyNanos);
+
+    /**
+     * Called when an action succeeds.
+     *
+     * @param retryCount the number of retries needed, zero if the first attempt succeeded
+     */
+    void onSuccess(int retryCount);
+
+    /**
+     * Called when an action fails with a transient failure after using all retries.
+     *
+     * @param retryCount the number of retries made
+     */
+    void onRetriesExhausted(int retryCount);
+
+    /**
+     * Called when an action fails with a non-transient failure.
+     *
+     * @param retryCount the number of retries made before the failure
+     */
+    void onNonTransientFailure(int retryCount);
+
+    /**
+     * Called after each backoff between attempts.
+     *
+     * @param delayNanos the time waited in nanoseconds
+     */
+    void onBackoff(long delayNanos);
+}
@@ -0,0 +1,42 @@
+package com.github.rbuck.retry;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A registry of named in-memory retry metrics, so that policies created per
+ * transaction can report into long lived metrics, e.g. one per data source.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class RetryMetricsRegistry {
+
+    private final ConcurrentMap<String, InMemoryRetryMetrics> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the metrics registered under the name, creating them if necessary.
+     *
+     * @param name the metrics name
+     * @return the metrics registered under the name
+     */
+    public InMemoryRetryMetrics metrics(String name) {
+        InMemoryRetryMetrics existing = metrics.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        InMemoryRetryMetrics created = new InMemoryRetryMetrics();
+        existing = metrics.putIfAbsent(name, created);
+        return existing != null ? existing : created;
+    }
+
+    /**
+     * Gets all registered metrics by name.
+     *
+     * @return an unmodifiable view of the registered metrics
+     */
+    public Map<String, InMemoryRetryMetrics> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+}
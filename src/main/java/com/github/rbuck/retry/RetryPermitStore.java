@@ -0,0 +1,31 @@
+package com.github.rbuck.retry;
+
+/**
+ * Holds the retry permits shared by all participants of a throttled fleet:
+ * for every time window, the number of permits already handed out. Each
+ * participant draws permits in batches, so the store is consulted once per
+ * batch rather than once per retry, and implementations may be as slow as a
+ * file lock or a network round trip.
+ * <p/>
+ * Implementations must be thread safe. When the shared state cannot be
+ * reached they should grant no permits rather than throw, so that a failing
+ * store throttles retries instead of failing the actions retried.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ * @see ThrottledRetryStrategy
+ * @see InMemoryRetryPermitStore
+ * @see MappedFileRetryPermitStore
+ */
+public interface RetryPermitStore {
+
+    /**
+     * Takes up to the requested number of permits from a window. Permits
+     * handed out for earlier windows do not count against later windows.
+     *
+     * @param window    the index of the current time window
+     * @param requested the number of permits wanted
+     * @param limit     the number of permits available per window to the whole fleet
+     * @return the number of permits granted, between zero and the number requested
+     */
+    int acquire(long window, int requested, int limit);
+}
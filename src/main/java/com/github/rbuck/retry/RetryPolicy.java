@@ -1,8 +1,13 @@
 package com.github.rbuck.retry;
 
-import java.util.LinkedList;
-import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 
 /**
  * A generic retry policy.
@@ -13,6 +18,19 @@ public class RetryPolicy<V> {
 
     private final RetryStrategy retryStrategy;
     private final TransientExceptionDetector transientExceptionDetector;
+    private volatile CircuitBreaker circuitBreaker;
+    private volatile ConcurrencyLimiter concurrencyLimiter;
+    private volatile Bulkhead bulkhead;
+    private volatile ThreadPoolBulkhead threadPoolBulkhead;
+    private volatile RetryMetrics retryMetrics = NoOpRetryMetrics.INSTANCE;
+    private volatile long maxDuration;
+    private volatile long attemptTimeout;
+
+    private static final String CIRCUIT_BREAKER_OPEN = "circuit breaker is open";
+    private static final String ATTEMPT_TIMED_OUT = "attempt timed out";
+    private static final String CONCURRENCY_LIMIT_EXCEEDED = "concurrency limit exceeded";
+    private static final String BULKHEAD_FULL = "bulkhead is full";
+    private static final String BULKHEAD_QUEUE_TIMEOUT = "bulkhead queue timeout";
 
     /**
      * Implements a retry policy using the specified strategy and transient error detection algorithm.
@@ -33,117 +51,756 @@ public class RetryPolicy<V> {
      * @throws Exception inspect cause to determine reason, or interrupt status
      */
     public V action(Callable<V> callable) throws Exception {
-        Exception re;
-        RetryState retryState = retryStrategy.getRetryState();
-        do {
+        return execute(callable, RetryPolicy.<V>callAttempt());
+    }
+
+    /**
+     * Performs a single attempt of a task. Lets policies run their own kind of
+     * task, e.g. SqlCallable, through this policy without wrapping every task
+     * in a Callable; implementations are expected to be allocated once.
+     *
+     * @see #execute(Object, Attempt)
+     */
+    public interface Attempt<T, V> {
+        /**
+         * Performs the task once.
+         *
+         * @param task the task to perform
+         * @return the result of the task
+         * @throws Exception if the attempt failed
+         */
+        V attempt(T task) throws Exception;
+
+        /**
+         * Called on the thread of the first attempt right after it failed,
+         * before any retry; lets an attempt carry state, e.g. a connection,
+         * across the retries of one action without allocating anything for
+         * actions succeeding at once.
+         *
+         * @param task    the task whose first attempt failed
+         * @param failure the failure of the first attempt, as thrown by it,
+         *                or an AttemptTimeoutException suppressing it
+         * @return the task to perform the retries with
+         */
+        default T retrying(T task, Exception failure) {
+            return task;
+        }
+
+        /**
+         * Called once an action whose first attempt failed is complete,
+         * whatever its outcome, with the task returned by retrying. May be
+         * called more than once for a cancelled asynchronous action.
+         */
+        default void completed(T task) {
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static final Attempt CALL = new Attempt<Callable<Object>, Object>() {
+        @Override
+        public Object attempt(Callable<Object> task) throws Exception {
+            return task.call();
+        }
+    };
+
+    @SuppressWarnings("unchecked")
+    private static <V> Attempt<Callable<V>, V> callAttempt() {
+        return CALL;
+    }
+
+    /**
+     * Performs the task under the defined retry semantics, within the
+     * bulkhead if one is set.
+     *
+     * @param task    the task to perform under retry
+     * @param attempt performs single attempts of the task
+     * @return the result of the task
+     * @throws Exception inspect cause to determine reason, or interrupt status
+     */
+    public <T> V execute(T task, Attempt<T, V> attempt) throws Exception {
+        Bulkhead bulkhead = this.bulkhead;
+        if (bulkhead == null) {
+            return perform(task, attempt);
+        }
+        if (!bulkhead.acquirePermission()) {
+            throw new BulkheadFullException(BULKHEAD_FULL);
+        }
+        try {
+            return perform(task, attempt);
+        } finally {
+            bulkhead.releasePermission();
+        }
+    }
+
+    /**
+     * Performs the task under the defined retry semantics. The first attempt
+     * is made without allocating anything; retry state is only created once
+     * the first attempt fails.
+     */
+    private <T> V perform(T task, Attempt<T, V> attempt) throws Exception {
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker != null && !breaker.tryAcquirePermission()) {
+            throw new CircuitBreakerOpenException(CIRCUIT_BREAKER_OPEN, null);
+        }
+        ConcurrencyLimiter limiter = acquireLimit(breaker, null);
+        RetryMetrics metrics = retryMetrics;
+        boolean timed = metrics != NoOpRetryMetrics.INSTANCE;
+        long maxDuration = TimeUnit.MILLISECONDS.toNanos(this.maxDuration);
+        long start = timed || maxDuration > 0 || attemptTimeout > 0 || limiter != null ? System.nanoTime() : 0L;
+        try {
+            V value = attempt(task, attempt, limiter, start, maxDuration);
+            if (timed) {
+                metrics.onAttempt(System.nanoTime() - start);
+            }
+            if (breaker != null) {
+                breaker.onSuccess();
+            }
+            retryStrategy.onSuccess(0);
+            metrics.onSuccess(0);
+            return value;
+        } catch (Exception e) {
+            if (timed) {
+                metrics.onAttempt(System.nanoTime() - start);
+            }
+            T current = attempt.retrying(task, e);
             try {
-                return callable.call();
-            } catch (Exception e) {
-                re = e;
-                if (Thread.interrupted() || isInterruptTransitively(e)) {
-                    re = new InterruptedException(e.getMessage());
-                    break;
-                }
-                if (!transientExceptionDetector.isTransient(e)) {
-                    break;
+                return retry(current, attempt, e, classify(e, limiter), breaker, metrics, start, maxDuration, retryStrategy.getRetryState());
+            } finally {
+                attempt.completed(current);
+            }
+        }
+    }
+
+    private <T> V retry(T task, Attempt<T, V> attempt, Exception failure, boolean isTransient, CircuitBreaker breaker,
+                        RetryMetrics metrics, long started, long maxDuration, RetryState retryState) throws Exception {
+        Exception re = failure;
+        boolean transientFailure = isTransient;
+        boolean timed = metrics != NoOpRetryMetrics.INSTANCE;
+        while (true) {
+            if (Thread.interrupted() || isInterruptTransitively(re)) {
+                if (breaker != null) {
+                    breaker.onIgnored();
                 }
+                throw new InterruptedException(re.getMessage());
+            }
+            if (!record(transientFailure, breaker)) {
+                metrics.onNonTransientFailure(retryState.getRetryCount());
+                throw re;
+            }
+            if (breaker != null && breaker.getState() == CircuitBreaker.State.OPEN) {
+                throw new CircuitBreakerOpenException(CIRCUIT_BREAKER_OPEN, re);
             }
             enqueueRetryEvent(new RetryEvent(this, retryState, re));
-            retryState.delayRetry();
-        } while (retryState.hasRetries());
-        throw re;
+            // sleep for the very delay checked, strategies may draw a new one on every call;
+            // retries, and any budget or permit they take, are granted before sleeping
+            long delay = retryState.getRetryDelay();
+            if (exceedsDeadline(delay, started, maxDuration) || !retryState.hasRetries()) {
+                metrics.onRetriesExhausted(retryState.getRetryCount());
+                throw re;
+            }
+            long delayStart = timed ? System.nanoTime() : 0L;
+            retryState.delayRetry(delay);
+            if (timed) {
+                metrics.onBackoff(System.nanoTime() - delayStart);
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException(re.getMessage());
+            }
+            if (breaker != null && !breaker.tryAcquirePermission()) {
+                throw new CircuitBreakerOpenException(CIRCUIT_BREAKER_OPEN, re);
+            }
+            ConcurrencyLimiter limiter = acquireLimit(breaker, re);
+            long start = timed ? System.nanoTime() : 0L;
+            try {
+                V value = attempt(task, attempt, limiter, started, maxDuration);
+                if (timed) {
+                    metrics.onAttempt(System.nanoTime() - start);
+                }
+                if (breaker != null) {
+                    breaker.onSuccess();
+                }
+                retryStrategy.onSuccess(retryState.getRetryCount());
+                metrics.onSuccess(retryState.getRetryCount());
+                return value;
+            } catch (Exception e) {
+                if (timed) {
+                    metrics.onAttempt(System.nanoTime() - start);
+                }
+                re = e;
+                transientFailure = classify(e, limiter);
+            }
+        }
     }
 
     /**
-     * Special case during shutdown.
+     * Acquires a permit from the concurrency limiter, if any; when rejected
+     * the permission granted by the circuit breaker goes unused.
      *
-     * @param e possible instance of, or has cause for, an InterruptedException
-     * @return true if it is transitively an InterruptedException
+     * @return the limiter the permit was acquired from, or null if none is set
      */
-    private boolean isInterruptTransitively(Throwable e) {
-        do {
-            if (e instanceof InterruptedException) {
-                return true;
+    private ConcurrencyLimiter acquireLimit(CircuitBreaker breaker, Exception previous) throws Exception {
+        ConcurrencyLimiter limiter = concurrencyLimiter;
+        if (limiter != null) {
+            boolean acquired = false;
+            try {
+                acquired = limiter.acquire();
+            } finally {
+                if (!acquired && breaker != null) {
+                    breaker.onIgnored();
+                }
+            }
+            if (!acquired) {
+                throw new ConcurrencyLimitExceededException(CONCURRENCY_LIMIT_EXCEEDED, previous);
             }
-            e = e.getCause();
-        } while (e != null);
-        return false;
+        }
+        return limiter;
     }
 
-    private RetryEventListener[] retryListeners = new RetryEventListener[0];
+    /**
+     * Makes one attempt, releasing the permit of the concurrency limiter, if
+     * any, with the round trip time of a successful attempt; the permit of a
+     * failed attempt is released once the failure is classified.
+     */
+    private <T> V attempt(T task, Attempt<T, V> attempt, ConcurrencyLimiter limiter, long started, long maxDuration) throws Exception {
+        if (limiter == null) {
+            return timeLimitedAttempt(task, attempt, started, maxDuration);
+        }
+        long start = System.nanoTime();
+        boolean released = false;
+        try {
+            V value = timeLimitedAttempt(task, attempt, started, maxDuration);
+            released = true;
+            limiter.onSuccess(System.nanoTime() - start);
+            return value;
+        } catch (Exception e) {
+            released = true;
+            throw e;
+        } finally {
+            if (!released) {
+                limiter.onIgnored();
+            }
+        }
+    }
 
+    /**
+     * Makes one attempt, interrupting it if it overruns the attempt timeout,
+     * or the remaining time of the overall time budget if that is shorter.
+     */
+    private <T> V timeLimitedAttempt(T task, Attempt<T, V> attempt, long started, long maxDuration) throws Exception {
+        long timeout = TimeUnit.MILLISECONDS.toNanos(attemptTimeout);
+        if (timeout <= 0) {
+            return attempt.attempt(task);
+        }
+        if (maxDuration > 0) {
+            timeout = Math.min(timeout, Math.max(1, maxDuration - (System.nanoTime() - started)));
+        }
+        AttemptTimer.Watch watch = AttemptTimer.start(timeout);
+        try {
+            return attempt.attempt(task);
+        } catch (Exception e) {
+            if (watch.stop()) {
+                AttemptTimeoutException timeoutException = new AttemptTimeoutException(ATTEMPT_TIMED_OUT);
+                timeoutException.addSuppressed(e);
+                throw timeoutException;
+            }
+            throw e;
+        } finally {
+            watch.stop();
+        }
+    }
 
     /**
-     * Return this node's preference change listeners.  Even though we're using
-     * a copy-on-write lists, we use synchronized accessors to ensure
-     * information transmission from the writing thread to the reading thread.
+     * Tells whether waiting for the delay would leave no time in the budget
+     * for another attempt.
+     */
+    private static boolean exceedsDeadline(long delay, long started, long maxDuration) {
+        return maxDuration > 0 && TimeUnit.MILLISECONDS.toNanos(delay) >= maxDuration - (System.nanoTime() - started);
+    }
+
+    /**
+     * Perform the specified action under the defined retry semantics on a
+     * thread of its own. On Java 21 and later that is a virtual thread, so
+     * large numbers of actions may wait out retry delays concurrently without
+     * tying up platform threads; on earlier releases it is a pooled daemon
+     * thread. With a thread pool bulkhead set, it is a thread of the bulkhead.
+     * <p/>
+     * Cancelling the returned future interrupts the action, ending any retry
+     * delay and preventing further attempts.
      *
-     * @return the property change listener list
+     * @param callable the action to perform under retry
+     * @return a future completed with the result of the action, or completed
+     * exceptionally with the failure action would have raised
      */
-    private synchronized RetryEventListener[] retryListeners() {
-        return retryListeners;
+    public CompletableFuture<V> actionAsync(Callable<V> callable) {
+        return executeOnThread(callable, RetryPolicy.<V>callAttempt());
     }
 
-    public synchronized void addRetryEventListener(RetryEventListener rel) {
-        if (rel == null) {
-            throw new IllegalArgumentException("Attempt to set null retry event listener");
+    <T> CompletableFuture<V> executeOnThread(T task, Attempt<T, V> attempt) {
+        if (task == null) {
+            throw new IllegalArgumentException("callable must not be null");
         }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        ThreadPoolBulkhead pool = threadPoolBulkhead;
+        ThreadAction<T> action = new ThreadAction<>(task, attempt, future, pool);
+        future.whenComplete(action);
+        try {
+            (pool != null ? pool.executor() : ActionThreads.executor()).execute(action);
+        } catch (RejectedExecutionException e) {
+            if (pool != null) {
+                pool.onRejected();
+                future.completeExceptionally(new BulkheadFullException(BULKHEAD_FULL));
+            } else {
+                future.completeExceptionally(e);
+            }
+        }
+        return future;
+    }
 
-        // Copy-on-write
-        RetryEventListener[] old = retryListeners;
-        retryListeners = new RetryEventListener[old.length + 1];
-        System.arraycopy(old, 0, retryListeners, 0, old.length);
-        retryListeners[old.length] = rel;
+    /**
+     * Runs the blocking retry loop of one action on the thread it is given,
+     * and interrupts that thread should the future be cancelled.
+     */
+    private class ThreadAction<T> implements Runnable, BiConsumer<V, Throwable> {
+
+        private final T task;
+        private final Attempt<T, V> attempt;
+        private final CompletableFuture<V> future;
+        private final ThreadPoolBulkhead pool;
+        private final long queuedAt = System.nanoTime();
+        private Thread runner;
 
-        startEventDispatchThreadIfNecessary();
+        ThreadAction(T task, Attempt<T, V> attempt, CompletableFuture<V> future, ThreadPoolBulkhead pool) {
+            this.task = task;
+            this.attempt = attempt;
+            this.future = future;
+            this.pool = pool;
+        }
+
+        @Override
+        public void run() {
+            if (pool != null && !future.isDone() && pool.isQueueTimedOut(queuedAt)) {
+                future.completeExceptionally(new BulkheadFullException(BULKHEAD_QUEUE_TIMEOUT));
+                return;
+            }
+            synchronized (this) {
+                if (future.isDone()) {
+                    return;
+                }
+                runner = Thread.currentThread();
+            }
+            try {
+                future.complete(execute(task, attempt));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                }
+                // do not leak a cancellation interrupt to the next task of a pooled thread
+                Thread.interrupted();
+            }
+        }
+
+        @Override
+        public void accept(V value, Throwable throwable) {
+            if (future.isCancelled()) {
+                synchronized (this) {
+                    if (runner != null) {
+                        runner.interrupt();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Perform the specified action asynchronously under the defined retry
+     * semantics. Each attempt runs on the given executor; between attempts
+     * no thread is parked, the next attempt is instead scheduled on the
+     * executor after the retry delay computed by the strategy.
+     * <p/>
+     * Cancelling the returned future prevents any further attempts from
+     * being started.
+     *
+     * @param callable the action to perform under retry
+     * @param executor the executor on which attempts are run and scheduled
+     * @return a future completed with the result of the action, or completed
+     * exceptionally with the last failure, or an InterruptedException if the
+     * attempting thread was interrupted
+     */
+    public CompletableFuture<V> actionAsync(Callable<V> callable, ScheduledExecutorService executor) {
+        return executeAsync(callable, RetryPolicy.<V>callAttempt(), executor);
     }
 
-    private static final List<RetryEvent> eventQueue = new LinkedList<>();
+    <T> CompletableFuture<V> executeAsync(T task, Attempt<T, V> attempt, ScheduledExecutorService executor) {
+        if (task == null || executor == null) {
+            throw new IllegalArgumentException("callable and executor must not be null");
+        }
+        CompletableFuture<V> future = new CompletableFuture<>();
+        Bulkhead bulkhead = this.bulkhead;
+        if (bulkhead != null && !bulkhead.tryAcquirePermission()) {
+            future.completeExceptionally(new BulkheadFullException(BULKHEAD_FULL));
+            return future;
+        }
+        AsyncAttempt<T> asyncAttempt = new AsyncAttempt<>(task, attempt, executor, future,
+                TimeUnit.MILLISECONDS.toNanos(maxDuration), bulkhead);
+        future.whenComplete(asyncAttempt);
+        asyncAttempt.schedule(0);
+        return future;
+    }
+
+    /**
+     * A single asynchronous retry loop; each run performs one attempt, and
+     * on a transient failure reschedules itself after the retry delay.
+     */
+    private class AsyncAttempt<T> implements Runnable, BiConsumer<V, Throwable> {
+
+        private volatile T task;
+        private volatile boolean retrying;
+        private final Attempt<T, V> attempt;
+        private final ScheduledExecutorService executor;
+        private final CompletableFuture<V> future;
+        private final long started = System.nanoTime();
+        private final long maxDuration;
+        private final Bulkhead bulkhead;
+        private final AtomicReference<Future<?>> pending = new AtomicReference<>();
+        private Exception lastFailure;
+        // created once the first attempt failed, as on the synchronous path
+        private RetryState retryState;
 
-    private static class EventDispatchThread extends Thread {
+        AsyncAttempt(T task, Attempt<T, V> attempt, ScheduledExecutorService executor, CompletableFuture<V> future,
+                     long maxDuration, Bulkhead bulkhead) {
+            this.task = task;
+            this.attempt = attempt;
+            this.executor = executor;
+            this.future = future;
+            this.maxDuration = maxDuration;
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
         public void run() {
-            while (true) {
-                // Wait on eventQueue till an event is present
-                RetryEvent event;
-                synchronized (eventQueue) {
-                    try {
-                        while (eventQueue.isEmpty()) {
-                            eventQueue.wait();
-                        }
-                        event = eventQueue.remove(0);
-                    } catch (InterruptedException e) {
-                        // never eat interrupts!
-                        Thread.currentThread().interrupt();
-                        break;
+            if (future.isDone()) {
+                return;
+            }
+            CircuitBreaker breaker = circuitBreaker;
+            if (breaker != null && !breaker.tryAcquirePermission()) {
+                future.completeExceptionally(new CircuitBreakerOpenException(CIRCUIT_BREAKER_OPEN, lastFailure));
+                return;
+            }
+            ConcurrencyLimiter limiter;
+            try {
+                limiter = acquireLimit(breaker, lastFailure);
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+                return;
+            }
+            RetryMetrics metrics = retryMetrics;
+            long start = System.nanoTime();
+            try {
+                V value = attempt(task, attempt, limiter, started, maxDuration);
+                metrics.onAttempt(System.nanoTime() - start);
+                if (breaker != null) {
+                    breaker.onSuccess();
+                }
+                int retryCount = retryState != null ? retryState.getRetryCount() : 0;
+                retryStrategy.onSuccess(retryCount);
+                metrics.onSuccess(retryCount);
+                future.complete(value);
+            } catch (Exception e) {
+                metrics.onAttempt(System.nanoTime() - start);
+                if (!retrying) {
+                    task = attempt.retrying(task, e);
+                    retryState = retryStrategy.getRetryState();
+                    retrying = true;
+                    if (future.isDone()) {
+                        // cancelled while the first attempt ran
+                        attempt.completed(task);
+                    }
+                }
+                boolean isTransient = classify(e, limiter);
+                lastFailure = e;
+                // never eat interrupts, the worker thread belongs to the executor
+                if (Thread.currentThread().isInterrupted() || isInterruptTransitively(e)) {
+                    if (breaker != null) {
+                        breaker.onIgnored();
                     }
+                    future.completeExceptionally(new InterruptedException(e.getMessage()));
+                    return;
+                }
+                if (!record(isTransient, breaker)) {
+                    metrics.onNonTransientFailure(retryState.getRetryCount());
+                    future.completeExceptionally(e);
+                    return;
+                }
+                if (breaker != null && breaker.getState() == CircuitBreaker.State.OPEN) {
+                    future.completeExceptionally(new CircuitBreakerOpenException(CIRCUIT_BREAKER_OPEN, e));
+                    return;
+                }
+                enqueueRetryEvent(new RetryEvent(RetryPolicy.this, retryState, e));
+                long delay = retryState.getRetryDelay();
+                if (!exceedsDeadline(delay, started, maxDuration) && retryState.hasRetries()) {
+                    // no thread sleeps here, the backoff is the scheduled delay
+                    metrics.onBackoff(TimeUnit.MILLISECONDS.toNanos(delay));
+                    schedule(delay);
+                } else {
+                    metrics.onRetriesExhausted(retryState.getRetryCount());
+                    future.completeExceptionally(e);
                 }
+            }
+        }
+
+        void schedule(long delay) {
+            try {
+                pending.set(executor.schedule(this, delay, TimeUnit.MILLISECONDS));
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+            }
+            if (future.isDone()) {
+                cancelPending();
+            }
+        }
+
+        /**
+         * Invoked upon completion of the future; cancels any scheduled attempt
+         * so that cancelled futures do not linger in the executor queue, and
+         * leaves the bulkhead.
+         */
+        @Override
+        public void accept(V value, Throwable throwable) {
+            cancelPending();
+            if (bulkhead != null) {
+                bulkhead.releasePermission();
+            }
+            if (retrying) {
+                attempt.completed(task);
+            }
+        }
+
+        private void cancelPending() {
+            Future<?> scheduled = pending.getAndSet(null);
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+    }
 
-                // Now we have event & hold no locks; deliver evt to listeners
-                RetryPolicy src = (RetryPolicy) event.getSource();
-                RetryEventListener[] listeners = src.retryListeners();
-                for (RetryEventListener listener : listeners) {
-                    listener.onRetry(event);
+    /**
+     * Classifies the failure of an attempt, once, and releases the permit of
+     * the concurrency limiter the attempt held, if any, with a congestion
+     * signal if the failure is transient. Timed out attempts are always
+     * transient.
+     */
+    private boolean classify(Exception e, ConcurrencyLimiter limiter) {
+        boolean isTransient = false;
+        try {
+            isTransient = e instanceof AttemptTimeoutException || transientExceptionDetector.isTransient(e);
+        } finally {
+            if (limiter != null) {
+                if (isTransient) {
+                    limiter.onDropped();
+                } else {
+                    limiter.onIgnored();
                 }
             }
         }
+        return isTransient;
     }
 
-    private static Thread eventDispatchThread = null;
+    /**
+     * Records the outcome of a classified failure with the circuit breaker;
+     * non-transient failures mean the resource responded, so they count as
+     * successful calls for the purpose of the breaker.
+     */
+    private static boolean record(boolean isTransient, CircuitBreaker breaker) {
+        if (breaker != null) {
+            if (isTransient) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess();
+            }
+        }
+        return isTransient;
+    }
 
-    private static synchronized void startEventDispatchThreadIfNecessary() {
-        if (eventDispatchThread == null) {
-            eventDispatchThread = new EventDispatchThread();
-            eventDispatchThread.setDaemon(true);
-            eventDispatchThread.start();
+    /**
+     * Sets a circuit breaker consulted before each attempt; when it does not
+     * permit an attempt the action fails fast with a CircuitBreakerOpenException.
+     * A breaker may be shared by many policies.
+     *
+     * @param circuitBreaker the circuit breaker, or null for none
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Sets a bulkhead limiting the number of actions this policy performs at
+     * once, retry delays included; actions it does not admit fail with a
+     * BulkheadFullException. Asynchronous actions performed on an executor
+     * never wait for a turn, they are rejected right away.
+     *
+     * @param bulkhead the bulkhead, or null for none
+     */
+    public void setBulkhead(Bulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
+    /**
+     * Sets a thread pool bulkhead on whose threads actions performed by
+     * actionAsync(Callable) run, instead of threads shared by all policies.
+     *
+     * @param threadPoolBulkhead the thread pool bulkhead, or null for none
+     */
+    public void setThreadPoolBulkhead(ThreadPoolBulkhead threadPoolBulkhead) {
+        this.threadPoolBulkhead = threadPoolBulkhead;
+    }
+
+    /**
+     * Sets a concurrency limiter consulted before each attempt, after the
+     * circuit breaker; when it does not permit an attempt the action fails
+     * with a ConcurrencyLimitExceededException. Transient failures and slow
+     * attempts shrink its limit. A limiter may be shared by many policies.
+     *
+     * @param concurrencyLimiter the concurrency limiter, or null for none
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Sets the metrics receiving attempt latencies and outcomes of this policy.
+     * Unless set, nothing is measured and no timestamps are taken.
+     *
+     * @param retryMetrics the metrics, e.g. an InMemoryRetryMetrics, or null for none
+     */
+    public void setRetryMetrics(RetryMetrics retryMetrics) {
+        this.retryMetrics = retryMetrics != null ? retryMetrics : NoOpRetryMetrics.INSTANCE;
+    }
+
+    /**
+     * Sets the overall time budget of an action, measured from the start of
+     * its first attempt. No retry is started once the budget is spent, and no
+     * retry is delayed past it: when the strategy's delay would not leave time
+     * for another attempt the action fails right away with the last failure.
+     *
+     * @param maxDuration the time budget in milliseconds, or zero for none
+     */
+    public void setMaxDuration(long maxDuration) {
+        if (maxDuration < 0) {
+            throw new IllegalArgumentException("max duration must not be negative");
+        }
+        this.maxDuration = maxDuration;
+    }
+
+    /**
+     * Sets the per-attempt timeout. An attempt overrunning it, or overrunning
+     * the remaining time budget, has its thread interrupted and fails with an
+     * AttemptTimeoutException, which is retried like any transient failure.
+     * The interrupt is cleared once the attempt returns; actions must respond
+     * to interrupts for the timeout to take effect.
+     *
+     * @param attemptTimeout the attempt timeout in milliseconds, or zero for none
+     */
+    public void setAttemptTimeout(long attemptTimeout) {
+        if (attemptTimeout < 0) {
+            throw new IllegalArgumentException("attempt timeout must not be negative");
+        }
+        this.attemptTimeout = attemptTimeout;
+    }
+
+    /**
+     * Special case during shutdown.
+     *
+     * @param e possible instance of, or has cause for, an InterruptedException
+     * @return true if it is transitively an InterruptedException
+     */
+    private static boolean isInterruptTransitively(Throwable e) {
+        return INTERRUPTS.anyMatches(e, TransientExceptionDetectors.DEFAULT_MAX_DEPTH);
+    }
+
+    private static final TransientExceptionDetectors.Chain<Throwable> INTERRUPTS = new TransientExceptionDetectors.Chain<Throwable>() {
+        @Override
+        Throwable next(Throwable t) {
+            return t.getCause();
+        }
+
+        @Override
+        boolean matches(Throwable t) {
+            return t instanceof InterruptedException;
+        }
+    };
+
+    private volatile RetryEventListener[] retryListeners = new RetryEventListener[0];
+    private volatile RetryEventDispatcher retryEventDispatcher;
+
+    /**
+     * Delivers an event to every listener registered at the time of delivery.
+     */
+    private final RetryEventListener multicaster = new RetryEventListener() {
+        @Override
+        public void onRetry(RetryEvent evt) {
+            for (RetryEventListener listener : retryListeners) {
+                listener.onRetry(evt);
+            }
+        }
+    };
+
+    public synchronized void addRetryEventListener(RetryEventListener rel) {
+        if (rel == null) {
+            throw new IllegalArgumentException("Attempt to set null retry event listener");
+        }
+
+        // the dispatcher must be visible before any listener is
+        if (retryEventDispatcher == null) {
+            retryEventDispatcher = defaultEventDispatcher();
+        }
+
+        // Copy-on-write; the volatile write publishes the new array to readers
+        RetryEventListener[] old = retryListeners;
+        RetryEventListener[] listeners = new RetryEventListener[old.length + 1];
+        System.arraycopy(old, 0, listeners, 0, old.length);
+        listeners[old.length] = rel;
+        retryListeners = listeners;
+    }
+
+    /**
+     * Sets the dispatcher used to deliver this policy's retry events. Unless
+     * set, events are delivered by a dispatcher shared by all policies.
+     *
+     * @param retryEventDispatcher the dispatcher to use
+     */
+    public synchronized void setRetryEventDispatcher(RetryEventDispatcher retryEventDispatcher) {
+        if (retryEventDispatcher == null) {
+            throw new IllegalArgumentException("Attempt to set null retry event dispatcher");
+        }
+        this.retryEventDispatcher = retryEventDispatcher;
+    }
+
+    private static RetryEventDispatcher defaultEventDispatcher = null;
+
+    private static synchronized RetryEventDispatcher defaultEventDispatcher() {
+        if (defaultEventDispatcher == null) {
+            defaultEventDispatcher = new RingBufferRetryEventDispatcher();
+        }
+        return defaultEventDispatcher;
+    }
+
+    /**
+     * Stops the dispatch thread shared by all policies having no dispatcher of
+     * their own. Policies already using it discard further events; listeners
+     * added afterwards start a new shared dispatcher.
+     */
+    public static synchronized void shutdownDefaultEventDispatcher() {
+        if (defaultEventDispatcher != null) {
+            defaultEventDispatcher.shutdown();
+            defaultEventDispatcher = null;
         }
     }
 
     private void enqueueRetryEvent(RetryEvent event) {
         if (retryListeners.length != 0) {
-            synchronized (eventQueue) {
-                eventQueue.add(event);
-                eventQueue.notify();
-            }
+            retryEventDispatcher.dispatch(event, multicaster);
         }
     }
 
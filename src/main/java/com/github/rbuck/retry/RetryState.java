@@ -1,5 +1,9 @@
 package com.github.rbuck.retry;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
 /**
  * Internal retry state.
  */
@@ -9,6 +13,17 @@ public interface RetryState {
      */
     void delayRetry();
 
+    /**
+     * Delays retry by an interval previously obtained from getRetryDelay,
+     * letting callers check the interval before it is waited out; states
+     * that delay by other means than addDelay override this too.
+     *
+     * @param delay the retry interval in milliseconds
+     */
+    default void delayRetry(long delay) {
+        RetryStateCommon.addDelay(delay);
+    }
+
     /**
      * Implements the retry policy.
      *
@@ -35,16 +50,49 @@ public interface RetryState {
      */
     public static class RetryStateCommon {
         /**
-         * Delays the current thread the specified number of milliseconds.
+         * Delays the current thread the specified number of milliseconds. The
+         * thread is parked rather than put to sleep, so a virtual thread frees
+         * its carrier while waiting. An interrupt ends the delay early and the
+         * interrupt status is left set for the caller to act upon.
          *
          * @param delay time delay in milliseconds
          */
         public static void addDelay(long delay) {
-            try {
-                Thread.sleep(delay);
-            } catch (InterruptedException e) {
-                Thread.interrupted();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            long remaining;
+            while (!Thread.currentThread().isInterrupted() && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+
+        /**
+         * Computes an exponentially growing delay, base * 2^exponent, truncated
+         * to the cap without overflowing.
+         *
+         * @param base     the base delay in milliseconds
+         * @param exponent the exponent, usually the retry count
+         * @param cap      the maximum delay in milliseconds
+         * @return the truncated exponential delay in milliseconds
+         */
+        public static long exponentialDelay(long base, int exponent, long cap) {
+            int shift = Math.min(exponent, 62);
+            return base > (cap >> shift) ? cap : Math.min(cap, base << shift);
+        }
+
+        /**
+         * Draws a uniformly distributed delay from the calling thread's random
+         * source, so concurrent retries do not contend on a shared seed.
+         *
+         * @param min the minimum delay, inclusive
+         * @param max the maximum delay, inclusive
+         * @return a random delay between min and max, or min if max is not greater
+         */
+        public static long randomDelay(long min, long max) {
+            if (max <= min) {
+                return min;
             }
+            long range = max - min;
+            return min + ThreadLocalRandom.current().nextLong(range == Long.MAX_VALUE ? range : range + 1);
         }
     }
 }
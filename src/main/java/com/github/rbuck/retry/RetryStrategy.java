@@ -12,4 +12,14 @@ public interface RetryStrategy {
      * @return instance of retry state
      */
     RetryState getRetryState();
+
+    /**
+     * Notifies the strategy that an action performed under it succeeded, so
+     * that strategies sharing information across retry states can learn from
+     * it. The default implementation does nothing.
+     *
+     * @param retryCount the number of retries the action needed
+     */
+    default void onSuccess(int retryCount) {
+    }
 }
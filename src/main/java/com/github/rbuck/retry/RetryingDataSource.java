@@ -0,0 +1,525 @@
+package com.github.rbuck.retry;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransactionRollbackException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * A data source adding retry to code written against plain JDBC, e.g. legacy
+ * data access objects or connection pools, without changing that code.
+ * <p/>
+ * Obtaining a connection is retried on transient failures. Statements run in
+ * auto-commit mode are retried as well, on the statement they were issued on:
+ * <ul>
+ * <li>after transient rollbacks, SQLSTATE class 40 or the deadlock and lock
+ * timeout codes of the dialect, as the database rolled the statement back;</li>
+ * <li>after other transient failures, e.g. connection failures, SQLSTATE
+ * class 08 or the connection errors of the dialect, only for queries, i.e.
+ * executeQuery, or any statement on a read-only connection, since whether an
+ * update committed before the connection failed is unknown. The connection is
+ * replaced, the settings made on it and on the statement, including the
+ * parameters of a prepared statement, are applied again, and the query is
+ * replayed.</li>
+ * </ul>
+ * Statements run within a transaction are never retried, nor are batches and
+ * callable statements; retry whole transactions with SqlRetryPolicy instead.
+ * Result sets and metadata come from the underlying driver.
+ * <p/>
+ * Connections and statements are dynamic proxies. Running a statement that
+ * succeeds at once allocates nothing for retry, the retry machinery works on
+ * the statement itself rather than on a callable allocated per call.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class RetryingDataSource implements DataSource {
+
+    private final DataSource dataSource;
+    private final SqlTransactionContext sqlTransactionContext;
+    private final SqlDialectDetector dialectDetector;
+    private final RetryPolicy<Object> readPolicy;
+    private final RetryPolicy<Object> writePolicy;
+
+    /**
+     * Constructs a data source detecting transient errors by the rules of the
+     * dialect of the database.
+     *
+     * @param dataSource    the data source to add retry to
+     * @param retryStrategy the strategy that implements retry
+     * @see SqlDialectDetector
+     */
+    public RetryingDataSource(DataSource dataSource, RetryStrategy retryStrategy) {
+        this(dataSource, retryStrategy, null);
+    }
+
+    /**
+     * Constructs a data source using the specified transient error detection algorithm.
+     *
+     * @param dataSource                 the data source to add retry to
+     * @param retryStrategy              the strategy that implements retry
+     * @param transientExceptionDetector the transient error detection algorithm,
+     *                                   or null to detect by database dialect
+     */
+    public RetryingDataSource(DataSource dataSource, RetryStrategy retryStrategy, TransientExceptionDetector transientExceptionDetector) {
+        if (dataSource == null || retryStrategy == null) {
+            throw new IllegalArgumentException("data source and retry strategy must not be null");
+        }
+        this.dataSource = dataSource;
+        this.sqlTransactionContext = new BasicSqlTransactionContext(dataSource);
+        final TransientExceptionDetector detector = transientExceptionDetector != null
+                ? transientExceptionDetector : new SqlDialectDetector(sqlTransactionContext);
+        this.dialectDetector = SqlDialectDetector.of(detector);
+        this.readPolicy = new RetryPolicy<>(retryStrategy, detector);
+        this.writePolicy = new RetryPolicy<>(retryStrategy, new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return isRollback(e) && detector.isTransient(e);
+            }
+        });
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return open(new ConnectionHandler(null, null));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return open(new ConnectionHandler(username, password));
+    }
+
+    private Connection open(ConnectionHandler handler) throws SQLException {
+        Connection connection = (Connection) execute(readPolicy, handler, CONNECT);
+        try {
+            handler.autoCommit = connection.getAutoCommit();
+            handler.readOnly = connection.isReadOnly();
+        } catch (SQLException | RuntimeException e) {
+            closeQuietly(connection);
+            throw e;
+        }
+        handler.proxy = (Connection) Proxy.newProxyInstance(RetryingDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handler);
+        return handler.proxy;
+    }
+
+    private Connection connect(String username, String password) throws SQLException {
+        if (username != null) {
+            return dataSource.getConnection(username, password);
+        }
+        Connection connection = sqlTransactionContext.getConnection();
+        if (dialectDetector != null && !dialectDetector.isDetected()) {
+            dialectDetector.detect(connection);
+        }
+        return connection;
+    }
+
+    /**
+     * Attempts to obtain the connection of a handler, unless it has one.
+     */
+    private static final RetryPolicy.Attempt<ConnectionHandler, Object> CONNECT = new RetryPolicy.Attempt<ConnectionHandler, Object>() {
+        @Override
+        public Object attempt(ConnectionHandler handler) throws Exception {
+            return handler.current();
+        }
+    };
+
+    /**
+     * Attempts the statement execution pending on a handler.
+     */
+    private static final RetryPolicy.Attempt<StatementHandler, Object> EXECUTE = new RetryPolicy.Attempt<StatementHandler, Object>() {
+        @Override
+        public Object attempt(StatementHandler handler) throws Exception {
+            return handler.executeOnce();
+        }
+    };
+
+    private static <T> Object execute(RetryPolicy<Object> policy, T task, RetryPolicy.Attempt<T, Object> attempt) throws SQLException {
+        try {
+            return policy.execute(task, attempt);
+        } catch (SQLException | RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            // never eat interrupts
+            Thread.currentThread().interrupt();
+            throw new SQLException(e);
+        } catch (Exception e) {
+            throw new SQLException(e);
+        }
+    }
+
+    /**
+     * Determines if the database rolled the failed statement back, so that
+     * an update may be replayed without applying it twice.
+     */
+    private boolean isRollback(Exception e) {
+        if (e instanceof SQLTransactionRollbackException) {
+            return true;
+        }
+        if (!(e instanceof SQLException)) {
+            return false;
+        }
+        SQLException se = (SQLException) e;
+        SqlDialect dialect = dialect();
+        return SqlTransientExceptionDetector.isSqlStateRollbackException(se) || dialect != null && dialect.isRollback(se);
+    }
+
+    /**
+     * Determines if the failure ended the connection, so that it must be
+     * replaced before the next execution.
+     */
+    private boolean isConnectionFailure(Exception e) {
+        if (e instanceof SQLRecoverableException || e instanceof SQLNonTransientConnectionException) {
+            return true;
+        }
+        if (!(e instanceof SQLException)) {
+            return false;
+        }
+        SQLException se = (SQLException) e;
+        SqlDialect dialect = dialect();
+        return SqlTransientExceptionDetector.isSqlStateConnectionException(se) || dialect != null && dialect.isConnectionFailure(se);
+    }
+
+    private SqlDialect dialect() {
+        return dialectDetector != null ? dialectDetector.getDialect() : null;
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Exception {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw failure(e);
+        }
+    }
+
+    private static Exception failure(InvocationTargetException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return cause instanceof Exception ? (Exception) cause : new SQLException(cause);
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+        }
+    }
+
+    /**
+     * Records a call changing the state of a connection or statement, so that
+     * it can be made again on a replacement; later calls replace earlier ones
+     * under the same key.
+     */
+    private static void record(Map<Object, Call> calls, Object key, Method method, Object[] args) {
+        calls.remove(key);
+        calls.put(key, new Call(method, args));
+    }
+
+    private static boolean isSetter(Method method) {
+        return method.getName().startsWith("set") && method.getReturnType() == void.class;
+    }
+
+    private static final class Call {
+
+        private final Method method;
+        private final Object[] args;
+
+        Call(Method method, Object[] args) {
+            this.method = method;
+            this.args = args;
+        }
+    }
+
+    /**
+     * Stands in for a connection of the underlying data source, replacing it
+     * after connection failures of queries retried in auto-commit mode.
+     */
+    private final class ConnectionHandler implements InvocationHandler {
+
+        private final String username;
+        private final String password;
+        private final Map<Object, Call> settings = new LinkedHashMap<>();
+        private volatile Connection physical;
+        private volatile boolean closed;
+        private volatile boolean autoCommit;
+        private volatile boolean readOnly;
+        private Connection proxy;
+
+        ConnectionHandler(String username, String password) {
+            this.username = username;
+            this.password = password;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "RetryingConnection[" + physical + "]";
+                case "isClosed":
+                    Connection connection = physical;
+                    return closed || connection != null && connection.isClosed();
+                case "close":
+                    closed = true;
+                    if (physical != null) {
+                        Connection current = physical;
+                        physical = null;
+                        current.close();
+                    }
+                    return null;
+                case "createStatement":
+                case "prepareStatement":
+                    return statement(method, args);
+            }
+            Object value = RetryingDataSource.invoke(connected(), method, args);
+            if (method.getName().equals("setAutoCommit")) {
+                autoCommit = (Boolean) args[0];
+            } else if (method.getName().equals("setReadOnly")) {
+                readOnly = (Boolean) args[0];
+            }
+            if (isSetter(method)) {
+                record(settings, method.getName().equals("setClientInfo") && args.length == 2
+                        ? "setClientInfo:" + args[0] : method.getName(), method, args);
+            }
+            return value;
+        }
+
+        private Object statement(Method method, Object[] args) throws Exception {
+            Connection connection = connected();
+            Statement statement = (Statement) RetryingDataSource.invoke(connection, method, args);
+            StatementHandler handler = new StatementHandler(this, method, args, statement, connection);
+            return Proxy.newProxyInstance(RetryingDataSource.class.getClassLoader(),
+                    new Class<?>[]{method.getReturnType()}, handler);
+        }
+
+        /**
+         * Gets the connection, replacing a failed one under retry.
+         */
+        private Connection connected() throws SQLException {
+            Connection connection = physical;
+            return connection != null ? connection : (Connection) execute(readPolicy, this, CONNECT);
+        }
+
+        /**
+         * Gets the connection, replacing a failed one once.
+         */
+        Connection current() throws Exception {
+            if (closed) {
+                throw new SQLException("connection is closed", "08003");
+            }
+            Connection connection = physical;
+            if (connection == null) {
+                connection = connect(username, password);
+                try {
+                    for (Call call : settings.values()) {
+                        RetryingDataSource.invoke(connection, call.method, call.args);
+                    }
+                } catch (Exception e) {
+                    closeQuietly(connection);
+                    throw e;
+                }
+                physical = connection;
+            }
+            return connection;
+        }
+
+        /**
+         * Discards the connection after it failed; it is replaced when next used.
+         */
+        void failed(Connection connection) {
+            if (physical == connection) {
+                physical = null;
+                closeQuietly(connection);
+            }
+        }
+    }
+
+    /**
+     * Stands in for a statement, running executions in auto-commit mode
+     * under retry and recreating the statement on a replaced connection.
+     */
+    private final class StatementHandler implements InvocationHandler {
+
+        private final ConnectionHandler connection;
+        private final Method factory;
+        private final Object[] factoryArgs;
+        private final Map<Object, Call> settings = new LinkedHashMap<>();
+        private Statement statement;
+        private Connection owner;
+        private boolean closed;
+        private Method pendingMethod;
+        private Object[] pendingArgs;
+
+        StatementHandler(ConnectionHandler connection, Method factory, Object[] factoryArgs, Statement statement, Connection owner) {
+            this.connection = connection;
+            this.factory = factory;
+            this.factoryArgs = factoryArgs;
+            this.statement = statement;
+            this.owner = owner;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "RetryingStatement[" + statement + "]";
+                case "getConnection":
+                    return connection.proxy;
+                case "isClosed":
+                    return closed || statement.isClosed();
+                case "close":
+                    closed = true;
+                    statement.close();
+                    return null;
+                case "clearParameters":
+                    for (Iterator<Object> keys = settings.keySet().iterator(); keys.hasNext(); ) {
+                        if (keys.next() instanceof Integer) {
+                            keys.remove();
+                        }
+                    }
+                    break;
+                case "executeQuery":
+                case "executeUpdate":
+                case "executeLargeUpdate":
+                case "execute":
+                    if (connection.autoCommit && !closed) {
+                        boolean query = name.equals("executeQuery") || connection.readOnly;
+                        pendingMethod = method;
+                        pendingArgs = args;
+                        try {
+                            return RetryingDataSource.execute(query ? readPolicy : writePolicy, this, EXECUTE);
+                        } finally {
+                            pendingMethod = null;
+                            pendingArgs = null;
+                        }
+                    }
+                    break;
+            }
+            Object value = RetryingDataSource.invoke(statement, method, args);
+            if (isSetter(method)) {
+                // parameters are keyed by index, other settings by name
+                record(settings, args != null && args.length >= 2 && args[0] instanceof Integer ? args[0] : name, method, args);
+            }
+            return value;
+        }
+
+        Object executeOnce() throws Exception {
+            Statement current = current();
+            try {
+                return pendingMethod.invoke(current, pendingArgs);
+            } catch (InvocationTargetException e) {
+                Exception failure = failure(e);
+                if (isConnectionFailure(failure)) {
+                    connection.failed(owner);
+                }
+                throw failure;
+            }
+        }
+
+        /**
+         * Gets the statement, recreating it if its connection was replaced.
+         */
+        private Statement current() throws Exception {
+            Connection physical = connection.current();
+            if (physical != owner) {
+                closeQuietly(statement);
+                Statement recreated = (Statement) RetryingDataSource.invoke(physical, factory, factoryArgs);
+                try {
+                    for (Call call : settings.values()) {
+                        RetryingDataSource.invoke(recreated, call.method, call.args);
+                    }
+                } catch (Exception e) {
+                    closeQuietly(recreated);
+                    throw e;
+                }
+                statement = recreated;
+                owner = physical;
+            }
+            return statement;
+        }
+    }
+
+    /**
+     * Sets a circuit breaker consulted before each attempt.
+     *
+     * @param circuitBreaker the circuit breaker, or null for none
+     * @see RetryPolicy#setCircuitBreaker(CircuitBreaker)
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        readPolicy.setCircuitBreaker(circuitBreaker);
+        writePolicy.setCircuitBreaker(circuitBreaker);
+    }
+
+    /**
+     * Sets the metrics receiving attempt latencies and outcomes.
+     *
+     * @param retryMetrics the metrics, or null for none
+     * @see RetryPolicy#setRetryMetrics(RetryMetrics)
+     */
+    public void setRetryMetrics(RetryMetrics retryMetrics) {
+        readPolicy.setRetryMetrics(retryMetrics);
+        writePolicy.setRetryMetrics(retryMetrics);
+    }
+
+    public void addRetryEventListener(RetryEventListener rel) {
+        readPolicy.addRetryEventListener(rel);
+        writePolicy.addRetryEventListener(rel);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return dataSource.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+    }
+}
@@ -0,0 +1,304 @@
+package com.github.rbuck.retry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers retry events asynchronously from a dedicated daemon thread.
+ * <p/>
+ * Events are handed off through a bounded, lock-free ring buffer, so threads
+ * raising retry events never contend on a monitor. The dispatch thread drains
+ * events in batches and parks when the buffer is empty. When the buffer is
+ * full the configured overflow policy decides what happens to new events.
+ * <p/>
+ * The ring buffer follows the bounded queue design of Dmitry Vyukov; every
+ * slot carries a sequence number that tells producers and the consumer whether
+ * the slot is free or published, so no locks are needed on either side.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class RingBufferRetryEventDispatcher implements RetryEventDispatcher {
+
+    /**
+     * Governs the behavior when events are raised faster than they are delivered.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Discard the oldest undelivered event to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Discard the new event.
+         */
+        DROP_NEWEST,
+        /**
+         * Make the raising thread wait until room is available; interrupting
+         * the waiting thread discards the event and preserves interrupt status.
+         */
+        BLOCK,
+        /**
+         * Once the buffer is half full only one in every sample rate events
+         * is accepted; when the buffer is full new events are discarded.
+         */
+        SAMPLE
+    }
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    public static final int DEFAULT_SAMPLE_RATE = 8;
+
+    private static final long PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final RetryEvent[] events;
+    private final RetryEventListener[] listeners;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    private final OverflowPolicy overflowPolicy;
+    private final int sampleRate;
+    private final AtomicLong sampleCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final RetryEvent[] batchEvents;
+    private final RetryEventListener[] batchListeners;
+    private final Thread dispatchThread;
+    private volatile boolean waiting;
+    private volatile boolean running = true;
+
+    public RingBufferRetryEventDispatcher() {
+        this(DEFAULT_CAPACITY, OverflowPolicy.DROP_OLDEST);
+    }
+
+    public RingBufferRetryEventDispatcher(int capacity, OverflowPolicy overflowPolicy) {
+        this(capacity, overflowPolicy, DEFAULT_BATCH_SIZE, DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * Constructs a dispatcher and starts its dispatch thread.
+     *
+     * @param capacity       the maximum number of undelivered events, rounded up to a power of two
+     * @param overflowPolicy the behavior when the buffer is full
+     * @param batchSize      the maximum number of events drained per batch
+     * @param sampleRate     one in this many events is accepted when sampling
+     */
+    public RingBufferRetryEventDispatcher(int capacity, OverflowPolicy overflowPolicy, int batchSize, int sampleRate) {
+        if (capacity < 2 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity must be between 2 and 2^30");
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("overflow policy must not be null");
+        }
+        if (batchSize < 1 || sampleRate < 1) {
+            throw new IllegalArgumentException("batch size and sample rate must be positive");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.events = new RetryEvent[size];
+        this.listeners = new RetryEventListener[size];
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = sampleRate;
+        this.batchEvents = new RetryEvent[Math.min(batchSize, size)];
+        this.batchListeners = new RetryEventListener[batchEvents.length];
+        this.dispatchThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                dispatchLoop();
+            }
+        }, "retry-event-dispatch");
+        this.dispatchThread.setDaemon(true);
+        this.dispatchThread.start();
+    }
+
+    @Override
+    public void dispatch(RetryEvent evt, RetryEventListener listener) {
+        if (!running) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP_NEWEST:
+                if (!offer(evt, listener)) {
+                    droppedCount.incrementAndGet();
+                    return;
+                }
+                break;
+            case DROP_OLDEST:
+                while (!offer(evt, listener)) {
+                    if (poll(null, null, 0)) {
+                        droppedCount.incrementAndGet();
+                    }
+                }
+                break;
+            case BLOCK:
+                while (!offer(evt, listener)) {
+                    // a listener raising events would otherwise wait on itself
+                    if (!running || Thread.currentThread() == dispatchThread || Thread.currentThread().isInterrupted()) {
+                        droppedCount.incrementAndGet();
+                        return;
+                    }
+                    LockSupport.unpark(dispatchThread);
+                    LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                }
+                break;
+            case SAMPLE:
+                if (size() > mask / 2 && sampleCount.getAndIncrement() % sampleRate != 0) {
+                    droppedCount.incrementAndGet();
+                    return;
+                }
+                if (!offer(evt, listener)) {
+                    droppedCount.incrementAndGet();
+                    return;
+                }
+                break;
+        }
+        if (waiting) {
+            LockSupport.unpark(dispatchThread);
+        }
+    }
+
+    /**
+     * Stops accepting events; the dispatch thread delivers the events already
+     * accepted and then terminates.
+     */
+    @Override
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(dispatchThread);
+    }
+
+    /**
+     * Waits for the dispatch thread to terminate after a shutdown.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit    the unit of the timeout
+     * @return true if the dispatch thread terminated, false if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        dispatchThread.join(Math.max(1, unit.toMillis(timeout)));
+        return !dispatchThread.isAlive();
+    }
+
+    /**
+     * Gets the number of events discarded due to overflow or shutdown.
+     *
+     * @return the number of discarded events
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Gets the approximate number of undelivered events.
+     *
+     * @return the approximate number of undelivered events
+     */
+    public int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    private boolean offer(RetryEvent evt, RetryEventListener listener) {
+        long pos = tail.get();
+        for (; ; ) {
+            int index = (int) (pos & mask);
+            long dif = sequences.get(index) - pos;
+            if (dif == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    events[index] = evt;
+                    listeners[index] = listener;
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (dif < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest event; the dispatch thread is the regular consumer, but
+     * producers also consume when discarding the oldest event on overflow.
+     *
+     * @return true if an event was removed, false if the buffer was empty
+     */
+    private boolean poll(RetryEvent[] toEvents, RetryEventListener[] toListeners, int at) {
+        long pos = head.get();
+        for (; ; ) {
+            int index = (int) (pos & mask);
+            long dif = sequences.get(index) - (pos + 1);
+            if (dif == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    if (toEvents != null) {
+                        toEvents[at] = events[index];
+                        toListeners[at] = listeners[index];
+                    }
+                    events[index] = null;
+                    listeners[index] = null;
+                    sequences.set(index, pos + mask + 1);
+                    return true;
+                }
+                pos = head.get();
+            } else if (dif < 0) {
+                return false;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    private boolean isEmpty() {
+        long pos = head.get();
+        return sequences.get((int) (pos & mask)) - (pos + 1) < 0;
+    }
+
+    private void dispatchLoop() {
+        while (true) {
+            int count = 0;
+            while (count < batchEvents.length && poll(batchEvents, batchListeners, count)) {
+                count++;
+            }
+            if (count > 0) {
+                deliver(count);
+                continue;
+            }
+            if (!running) {
+                break;
+            }
+            waiting = true;
+            if (isEmpty() && running) {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            waiting = false;
+            if (Thread.interrupted()) {
+                running = false;
+            }
+        }
+    }
+
+    private void deliver(int count) {
+        for (int i = 0; i < count; i++) {
+            try {
+                batchListeners[i].onRetry(batchEvents[i]);
+            } catch (RuntimeException e) {
+                // report, but do not let one listener stop delivery to others
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+            batchEvents[i] = null;
+            batchListeners[i] = null;
+        }
+    }
+}
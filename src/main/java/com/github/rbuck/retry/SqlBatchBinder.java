@@ -0,0 +1,24 @@
+package com.github.rbuck.retry;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A SAM type binding the parameters of one operation of a batch to a
+ * prepared statement.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public interface SqlBatchBinder<T> {
+
+    /**
+     * Binds the parameters of the operation; the statement is added to the
+     * batch by the caller.
+     *
+     * @param statement the statement to bind the parameters to
+     * @param operation the operation whose parameters to bind
+     * @throws java.sql.SQLException if a parameter cannot be bound
+     */
+    void bind(PreparedStatement statement, T operation) throws SQLException;
+
+}
@@ -0,0 +1,108 @@
+package com.github.rbuck.retry;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A retry policy for bulk writes. The operations are split into chunks of the
+ * batch size; each chunk is sent as one JDBC batch and committed in its own
+ * transaction under the retry policy, so a transient failure only causes the
+ * failing chunk to be sent again rather than the whole bulk load.
+ * <p/>
+ * Connections must not be in auto-commit mode, so that a failing chunk is
+ * rolled back as a whole before it is retried.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class SqlBatchRetryPolicy<T> {
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    private final SqlRetryPolicy<int[]> retryPolicy;
+    private final int batchSize;
+
+    /**
+     * Implements a batch retry policy using the specified strategy.
+     *
+     * @param retryStrategy         the strategy that implements retry, per chunk
+     * @param sqlTransactionContext the context providing a connection per attempt
+     * @param batchSize             the number of operations per chunk
+     */
+    public SqlBatchRetryPolicy(RetryStrategy retryStrategy, SqlTransactionContext sqlTransactionContext, int batchSize) {
+        this(new SqlRetryPolicy<int[]>(retryStrategy, sqlTransactionContext), batchSize);
+    }
+
+    /**
+     * Implements a batch retry policy performing each chunk under the given
+     * policy, along with its circuit breaker, limiter, bulkhead and metrics.
+     *
+     * @param retryPolicy the policy each chunk is performed under
+     * @param batchSize   the number of operations per chunk
+     */
+    public SqlBatchRetryPolicy(SqlRetryPolicy<int[]> retryPolicy, int batchSize) {
+        if (retryPolicy == null || batchSize < 1) {
+            throw new IllegalArgumentException("retry policy must not be null and batch size must be positive");
+        }
+        this.retryPolicy = retryPolicy;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Performs the operations in batches under the defined retry semantics.
+     *
+     * @param sql        the statement to execute for every operation
+     * @param operations the operations to perform, in order
+     * @param binder     binds the parameters of an operation to the statement
+     * @return the update counts of all operations, in order
+     * @throws BatchUpdateException if a chunk failed; its update counts are those
+     *                              of the operations committed before the failure,
+     *                              and its cause the failure of the chunk
+     * @throws InterruptedException if interrupted
+     */
+    public int[] action(final String sql, List<? extends T> operations, final SqlBatchBinder<? super T> binder) throws Exception {
+        if (sql == null || operations == null || binder == null) {
+            throw new IllegalArgumentException("sql, operations and binder must not be null");
+        }
+        int[] updateCounts = new int[operations.size()];
+        for (int from = 0; from < operations.size(); from += batchSize) {
+            final List<? extends T> chunk = operations.subList(from, Math.min(operations.size(), from + batchSize));
+            int[] chunkCounts;
+            try {
+                chunkCounts = retryPolicy.action(new SqlCallable<int[]>() {
+                    @Override
+                    public int[] call(Connection connection) throws SQLException {
+                        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                            for (T operation : chunk) {
+                                binder.bind(statement, operation);
+                                statement.addBatch();
+                            }
+                            return statement.executeBatch();
+                        }
+                    }
+                });
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                String sqlState = e instanceof SQLException ? ((SQLException) e).getSQLState() : null;
+                int vendorCode = e instanceof SQLException ? ((SQLException) e).getErrorCode() : 0;
+                throw new BatchUpdateException("batch failed after " + from + " of " + operations.size() + " operations were committed",
+                        sqlState, vendorCode, Arrays.copyOf(updateCounts, from), e);
+            }
+            System.arraycopy(chunkCounts, 0, updateCounts, from, Math.min(chunkCounts.length, chunk.size()));
+        }
+        return updateCounts;
+    }
+
+    /**
+     * Gets the policy each chunk is performed under, e.g. to set a circuit breaker.
+     *
+     * @return the per chunk retry policy
+     */
+    public SqlRetryPolicy<int[]> getRetryPolicy() {
+        return retryPolicy;
+    }
+}
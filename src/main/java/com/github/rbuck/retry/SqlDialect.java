@@ -0,0 +1,49 @@
+package com.github.rbuck.retry;
+
+import java.sql.SQLException;
+
+/**
+ * Defines the transient exception rules specific to a database product.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ * @see StandardSqlDialect
+ * @see SqlDialectDetector
+ */
+public interface SqlDialect {
+    /**
+     * Determine if this dialect applies to the database product.
+     *
+     * @param databaseProductName the product name reported by the database metadata
+     * @return true if the dialect applies, false otherwise
+     */
+    boolean isDialectOf(String databaseProductName);
+
+    /**
+     * Add the rules of this dialect to the classifier.
+     *
+     * @param classifier the classifier to add rules to
+     */
+    void addRules(SqlStateClassifier classifier);
+
+    /**
+     * Determine if the database rolled the failed statement back, reporting
+     * it outside SQLSTATE class 40, e.g. by a vendor deadlock code.
+     *
+     * @param se the exception
+     * @return true if the statement was rolled back, false otherwise
+     */
+    default boolean isRollback(SQLException se) {
+        return false;
+    }
+
+    /**
+     * Determine if the failure ended the connection, reporting it outside
+     * SQLSTATE class 08, e.g. an administrator shutting the session down.
+     *
+     * @param se the exception
+     * @return true if the connection is no longer usable, false otherwise
+     */
+    default boolean isConnectionFailure(SQLException se) {
+        return false;
+    }
+}
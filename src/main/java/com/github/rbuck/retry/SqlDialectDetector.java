@@ -0,0 +1,145 @@
+package com.github.rbuck.retry;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Checks if the exception is a transient SQL exception, applying the rules of
+ * the dialect of the database on top of those of SqlTransientExceptionDetector.
+ * <p/>
+ * The dialect is detected from the product name reported by the metadata of
+ * the first connection handed to detect, which SqlRetryPolicy does with the
+ * first connection it obtains, so no connection is opened for the purpose.
+ * Until then, or if no dialect applies, only the generic rules apply. The
+ * product name is cached per transaction context, so detectors of further
+ * policies sharing the context know the dialect from the start.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class SqlDialectDetector implements TransientExceptionDetector {
+
+    private static final Map<SqlTransactionContext, String> PRODUCT_NAMES = Collections.synchronizedMap(new WeakHashMap<SqlTransactionContext, String>());
+
+    private final SqlTransactionContext sqlTransactionContext;
+    private final List<? extends SqlDialect> dialects;
+    private final boolean treatDuplicatesAsTransient;
+
+    private volatile SqlTransientExceptionDetector detector;
+    private volatile boolean detected;
+    private volatile SqlDialect dialect;
+
+    /**
+     * Constructs a detector choosing among the standard dialects.
+     *
+     * @param sqlTransactionContext the context whose database the dialect is detected for
+     */
+    public SqlDialectDetector(SqlTransactionContext sqlTransactionContext) {
+        this(sqlTransactionContext, Arrays.asList(StandardSqlDialect.values()), true);
+    }
+
+    /**
+     * Constructs a detector choosing among the specified dialects, the first
+     * applicable one wins.
+     *
+     * @param sqlTransactionContext      the context whose database the dialect is detected for
+     * @param dialects                   the dialects to choose from
+     * @param treatDuplicatesAsTransient whether duplicate values in unique indexes are transient
+     */
+    public SqlDialectDetector(SqlTransactionContext sqlTransactionContext, List<? extends SqlDialect> dialects,
+                              boolean treatDuplicatesAsTransient) {
+        if (sqlTransactionContext == null || dialects == null) {
+            throw new IllegalArgumentException("transaction context and dialects must not be null");
+        }
+        this.sqlTransactionContext = sqlTransactionContext;
+        this.dialects = dialects;
+        this.treatDuplicatesAsTransient = treatDuplicatesAsTransient;
+        this.detector = new SqlTransientExceptionDetector(treatDuplicatesAsTransient);
+        String productName = PRODUCT_NAMES.get(sqlTransactionContext);
+        if (productName != null) {
+            apply(productName);
+        }
+    }
+
+    @Override
+    public boolean isTransient(Exception e) {
+        return detector.isTransient(e);
+    }
+
+    /**
+     * Detects the dialect from the connection unless already detected. A
+     * failure to read the metadata is ignored, detection is then attempted
+     * again with the next connection.
+     *
+     * @param connection a connection from the transaction context
+     */
+    public void detect(Connection connection) {
+        if (detected) {
+            return;
+        }
+        String productName;
+        try {
+            DatabaseMetaData metaData = connection.getMetaData();
+            productName = metaData == null ? null : metaData.getDatabaseProductName();
+        } catch (SQLException ignored) {
+            return;
+        }
+        // an unknown product is remembered as such, so that detection stops
+        productName = productName == null ? "" : productName;
+        PRODUCT_NAMES.put(sqlTransactionContext, productName);
+        apply(productName);
+    }
+
+    /**
+     * Determines if the dialect was detected, or found not to be known.
+     *
+     * @return true once detected
+     */
+    public boolean isDetected() {
+        return detected;
+    }
+
+    /**
+     * Gets the dialect of the database.
+     *
+     * @return the dialect, or null if not detected yet or none applies
+     */
+    public SqlDialect getDialect() {
+        return dialect;
+    }
+
+    /**
+     * Finds the dialect detector behind a detector, looking through caching
+     * detectors, so that policies can hand it their first connection.
+     *
+     * @param detector the detector a policy was constructed with
+     * @return the dialect detector, or null if the detector is none
+     */
+    static SqlDialectDetector of(TransientExceptionDetector detector) {
+        while (detector instanceof CachingTransientExceptionDetector) {
+            detector = ((CachingTransientExceptionDetector) detector).getDetector();
+        }
+        return detector instanceof SqlDialectDetector ? (SqlDialectDetector) detector : null;
+    }
+
+    private synchronized void apply(String productName) {
+        if (detected) {
+            return;
+        }
+        for (SqlDialect candidate : dialects) {
+            if (candidate.isDialectOf(productName)) {
+                SqlStateClassifier classifier = new SqlStateClassifier(detector.getClassifier());
+                candidate.addRules(classifier);
+                detector = new SqlTransientExceptionDetector(classifier, treatDuplicatesAsTransient);
+                dialect = candidate;
+                break;
+            }
+        }
+        detected = true;
+    }
+}
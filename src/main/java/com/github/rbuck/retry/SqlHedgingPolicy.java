@@ -0,0 +1,263 @@
+package com.github.rbuck.retry;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A hedging policy for idempotent, read-only SQL work.
+ * <p/>
+ * Rather than waiting for a slow attempt to fail before retrying, a further
+ * attempt, on a connection of its own, is started whenever the attempts in
+ * flight have not completed within the hedge delay; a transiently failing
+ * attempt is replaced right away. The first successful result is returned,
+ * and the attempts still running are cancelled: their threads are interrupted
+ * and their connections aborted.
+ * <p/>
+ * The hedge delay is either fixed, or derived from a percentile of the
+ * latencies of past successful attempts, so that only the slowest attempts
+ * are hedged; until enough latencies are known the fixed delay applies.
+ * <p/>
+ * Only use this policy for work that may safely run several times at once.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class SqlHedgingPolicy<V> {
+
+    private static final long MIN_SAMPLES = 100;
+
+    private final int maxAttempts;
+    private final SqlTransactionContext sqlTransactionContext;
+    private final TransientExceptionDetector transientExceptionDetector;
+    private final SqlDialectDetector dialectDetector;
+    private final LatencyHistogram attemptLatency = new LatencyHistogram();
+    private volatile long hedgeDelay;
+    private volatile double hedgePercentile;
+    private volatile Executor executor = ActionThreads.executor();
+
+    /**
+     * Constructs a hedging policy detecting transient errors by the rules of
+     * the dialect of the database.
+     *
+     * @param maxAttempts           the maximum number of attempts, concurrent or not
+     * @param hedgeDelay            the fixed hedge delay in milliseconds
+     * @param sqlTransactionContext the context providing a connection per attempt
+     * @see SqlDialectDetector
+     */
+    public SqlHedgingPolicy(int maxAttempts, long hedgeDelay, SqlTransactionContext sqlTransactionContext) {
+        this(maxAttempts, hedgeDelay, new SqlDialectDetector(sqlTransactionContext), sqlTransactionContext);
+    }
+
+    /**
+     * Constructs a hedging policy.
+     *
+     * @param maxAttempts                the maximum number of attempts, concurrent or not
+     * @param hedgeDelay                 the fixed hedge delay in milliseconds
+     * @param transientExceptionDetector the transient error detection algorithm
+     * @param sqlTransactionContext      the context providing a connection per attempt
+     */
+    public SqlHedgingPolicy(int maxAttempts, long hedgeDelay, TransientExceptionDetector transientExceptionDetector,
+                            SqlTransactionContext sqlTransactionContext) {
+        if (maxAttempts < 1 || hedgeDelay < 0) {
+            throw new IllegalArgumentException("max attempts must be positive and hedge delay not negative");
+        }
+        if (transientExceptionDetector == null || sqlTransactionContext == null) {
+            throw new IllegalArgumentException("detector and transaction context must not be null");
+        }
+        this.maxAttempts = maxAttempts;
+        this.hedgeDelay = hedgeDelay;
+        this.transientExceptionDetector = transientExceptionDetector;
+        this.dialectDetector = SqlDialectDetector.of(transientExceptionDetector);
+        this.sqlTransactionContext = sqlTransactionContext;
+    }
+
+    /**
+     * Performs the read under the hedging semantics.
+     *
+     * @param callable the idempotent read to perform
+     * @return the result of the first successful attempt
+     * @throws Exception the first non-transient failure, or the last transient
+     *                   failure if all attempts failed, or an InterruptedException
+     */
+    public V action(SqlCallable<V> callable) throws Exception {
+        CompletionService<V> completionService = new ExecutorCompletionService<>(executor);
+        List<HedgedAttempt> attempts = new ArrayList<>(maxAttempts);
+        try {
+            start(completionService, attempts, callable);
+            int running = 1;
+            Exception lastFailure = null;
+            while (running > 0) {
+                Future<V> completed = attempts.size() < maxAttempts
+                        ? completionService.poll(currentHedgeDelay(), TimeUnit.NANOSECONDS)
+                        : completionService.take();
+                if (completed == null) {
+                    start(completionService, attempts, callable);
+                    running++;
+                    continue;
+                }
+                running--;
+                try {
+                    return completed.get();
+                } catch (ExecutionException e) {
+                    Exception failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    if (!transientExceptionDetector.isTransient(failure)) {
+                        throw failure;
+                    }
+                    lastFailure = failure;
+                }
+                if (attempts.size() < maxAttempts) {
+                    start(completionService, attempts, callable);
+                    running++;
+                }
+            }
+            throw lastFailure;
+        } finally {
+            for (HedgedAttempt attempt : attempts) {
+                attempt.cancel();
+            }
+        }
+    }
+
+    private void start(CompletionService<V> completionService, List<HedgedAttempt> attempts, SqlCallable<V> callable) {
+        HedgedAttempt attempt = new HedgedAttempt(callable);
+        // only attempts the executor accepted are cancelled
+        attempt.future = completionService.submit(attempt);
+        attempts.add(attempt);
+    }
+
+    private long currentHedgeDelay() {
+        double percentile = hedgePercentile;
+        if (percentile > 0 && attemptLatency.getTotalCount() >= MIN_SAMPLES) {
+            return Math.max(1, attemptLatency.getValueAtPercentile(percentile));
+        }
+        return TimeUnit.MILLISECONDS.toNanos(hedgeDelay);
+    }
+
+    /**
+     * A single attempt on a connection of its own; it may be cancelled from
+     * the calling thread at any time, in which case its connection is aborted.
+     */
+    private class HedgedAttempt implements Callable<V> {
+
+        private final SqlCallable<V> callable;
+        private volatile Connection connection;
+        private volatile boolean cancelled;
+        private Future<V> future;
+
+        HedgedAttempt(SqlCallable<V> callable) {
+            this.callable = callable;
+        }
+
+        @Override
+        public V call() throws Exception {
+            try (Connection c = sqlTransactionContext.getConnection()) {
+                connection = c;
+                if (dialectDetector != null && !dialectDetector.isDetected()) {
+                    dialectDetector.detect(c);
+                }
+                if (cancelled) {
+                    throw new CancellationException();
+                }
+                long start = System.nanoTime();
+                try {
+                    V value = callable.call(c);
+                    c.commit();
+                    attemptLatency.record(System.nanoTime() - start);
+                    return value;
+                } catch (SQLException se) {
+                    if (!cancelled && !SqlTransientExceptionDetector.isSqlStateConnectionException(se)) {
+                        try {
+                            c.rollback();
+                        } catch (SQLException ignored) {
+                        }
+                    }
+                    throw se;
+                }
+            } finally {
+                connection = null;
+            }
+        }
+
+        /**
+         * Cancels the attempt unless it already completed. The connection is
+         * aborted so that a thread blocked in the driver is released even if
+         * the driver ignores interrupts.
+         */
+        void cancel() {
+            if (future.isDone()) {
+                return;
+            }
+            cancelled = true;
+            // read the connection before the interrupt lets the attempt release it
+            Connection c = connection;
+            future.cancel(true);
+            if (c != null) {
+                try {
+                    c.abort(executor);
+                } catch (SQLException | RejectedExecutionException | AbstractMethodError e) {
+                    try {
+                        c.close();
+                    } catch (SQLException ignored) {
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the fixed hedge delay.
+     *
+     * @param hedgeDelay the hedge delay in milliseconds
+     */
+    public void setHedgeDelay(long hedgeDelay) {
+        if (hedgeDelay < 0) {
+            throw new IllegalArgumentException("hedge delay must not be negative");
+        }
+        this.hedgeDelay = hedgeDelay;
+    }
+
+    /**
+     * Derives the hedge delay from the latency of past successful attempts,
+     * e.g. 95 to hedge the slowest five percent of attempts.
+     *
+     * @param hedgePercentile the percentile, between 0 and 100, or zero to always use the fixed delay
+     */
+    public void setHedgePercentile(double hedgePercentile) {
+        if (hedgePercentile < 0 || hedgePercentile > 100) {
+            throw new IllegalArgumentException("hedge percentile must be between 0 and 100");
+        }
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    /**
+     * Sets the executor attempts run on. Unless set, every attempt runs on a
+     * thread of its own, a virtual thread on Java 21 and later.
+     *
+     * @param executor the executor to run attempts on
+     */
+    public void setExecutor(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Gets the histogram of the latencies of successful attempts, in nanoseconds.
+     *
+     * @return the attempt latency histogram
+     */
+    public LatencyHistogram getAttemptLatency() {
+        return attemptLatency;
+    }
+}
@@ -2,7 +2,13 @@ package com.github.rbuck.retry;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.sql.SQLRecoverableException;
 import java.util.concurrent.Callable;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * A retry policy for SQL operations.
@@ -13,14 +19,17 @@ public class SqlRetryPolicy<V> {
 
     private final SqlTransactionContext sqlTransactionContext;
     private final RetryPolicy<V> retryPolicy;
+    private final SqlDialectDetector dialectDetector;
 
     /**
-     * Implements a retry policy using the specified strategy and transient error detection algorithm.
+     * Implements a retry policy using the specified strategy, detecting
+     * transient errors by the rules of the dialect of the database.
      *
      * @param retryStrategy the strategy that implements retry
+     * @see SqlDialectDetector
      */
     public SqlRetryPolicy(RetryStrategy retryStrategy, SqlTransactionContext sqlTransactionContext) {
-        this(retryStrategy, new SqlTransientExceptionDetector(), sqlTransactionContext);
+        this(retryStrategy, new SqlDialectDetector(sqlTransactionContext), sqlTransactionContext);
     }
 
     /**
@@ -32,28 +41,303 @@ public class SqlRetryPolicy<V> {
     public SqlRetryPolicy(RetryStrategy retryStrategy, TransientExceptionDetector transientExceptionDetector, SqlTransactionContext sqlTransactionContext) {
         this.retryPolicy = new RetryPolicy<>(retryStrategy, transientExceptionDetector);
         this.sqlTransactionContext = sqlTransactionContext;
+        this.dialectDetector = SqlDialectDetector.of(transientExceptionDetector);
+    }
+
+    /**
+     * Perform the specified SQL transaction under the defined retry semantics.
+     *
+     * @param callable the transaction to perform under retry
+     * @return the result of the transaction
+     * @throws Exception inspect cause to determine reason, or interrupt status
+     */
+    public V action(SqlCallable<V> callable) throws Exception {
+        return retryPolicy.execute(callable, transaction);
+    }
+
+    /**
+     * Perform the specified SQL transaction asynchronously under the defined
+     * retry semantics; no thread is parked while waiting between attempts.
+     *
+     * @param callable the transaction to perform under retry
+     * @param executor the executor on which attempts are run and scheduled
+     * @return a future completed with the result of the transaction
+     * @see RetryPolicy#actionAsync(Callable, ScheduledExecutorService)
+     */
+    public CompletableFuture<V> actionAsync(SqlCallable<V> callable, ScheduledExecutorService executor) {
+        return retryPolicy.executeAsync(callable, transaction, executor);
+    }
+
+    /**
+     * Performs the transaction under retry on a thread of its own, a virtual
+     * thread on Java 21 and later. Note that JDBC drivers holding monitors
+     * while blocked on I/O pin the virtual thread to its carrier.
+     *
+     * @param callable the transaction to perform under retry
+     * @return a future completed with the result of the transaction
+     * @see RetryPolicy#actionAsync(Callable)
+     */
+    public CompletableFuture<V> actionAsync(SqlCallable<V> callable) {
+        return retryPolicy.executeOnThread(callable, transaction);
+    }
+
+    /**
+     * Sets a circuit breaker consulted before each attempt.
+     *
+     * @param circuitBreaker the circuit breaker, or null for none
+     * @see RetryPolicy#setCircuitBreaker(CircuitBreaker)
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        retryPolicy.setCircuitBreaker(circuitBreaker);
+    }
+
+    /**
+     * Sets a bulkhead limiting the number of transactions performed at once.
+     *
+     * @param bulkhead the bulkhead, or null for none
+     * @see RetryPolicy#setBulkhead(Bulkhead)
+     */
+    public void setBulkhead(Bulkhead bulkhead) {
+        retryPolicy.setBulkhead(bulkhead);
+    }
+
+    /**
+     * Sets a thread pool bulkhead on whose threads transactions performed by
+     * actionAsync(SqlCallable) run.
+     *
+     * @param threadPoolBulkhead the thread pool bulkhead, or null for none
+     * @see RetryPolicy#setThreadPoolBulkhead(ThreadPoolBulkhead)
+     */
+    public void setThreadPoolBulkhead(ThreadPoolBulkhead threadPoolBulkhead) {
+        retryPolicy.setThreadPoolBulkhead(threadPoolBulkhead);
+    }
+
+    /**
+     * Sets a concurrency limiter consulted before each attempt; failures the
+     * detector of this policy finds transient, e.g. the connection failures
+     * and rollbacks of the dialect, and timed out attempts shrink its limit.
+     *
+     * @param concurrencyLimiter the concurrency limiter, or null for none
+     * @see RetryPolicy#setConcurrencyLimiter(ConcurrencyLimiter)
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        retryPolicy.setConcurrencyLimiter(concurrencyLimiter);
+    }
+
+    /**
+     * Sets the metrics receiving attempt latencies and outcomes of this policy.
+     *
+     * @param retryMetrics the metrics, or null for none
+     * @see RetryPolicy#setRetryMetrics(RetryMetrics)
+     */
+    public void setRetryMetrics(RetryMetrics retryMetrics) {
+        retryPolicy.setRetryMetrics(retryMetrics);
+    }
+
+    /**
+     * Sets the overall time budget of an action.
+     *
+     * @param maxDuration the time budget in milliseconds, or zero for none
+     * @see RetryPolicy#setMaxDuration(long)
+     */
+    public void setMaxDuration(long maxDuration) {
+        retryPolicy.setMaxDuration(maxDuration);
+    }
+
+    /**
+     * Sets the per-attempt timeout; JDBC drivers differ in how they respond
+     * to interrupts, so prefer a statement query timeout where it suffices.
+     *
+     * @param attemptTimeout the attempt timeout in milliseconds, or zero for none
+     * @see RetryPolicy#setAttemptTimeout(long)
+     */
+    public void setAttemptTimeout(long attemptTimeout) {
+        retryPolicy.setAttemptTimeout(attemptTimeout);
     }
 
-    public V action(final SqlCallable<V> callable) throws Exception {
-        return retryPolicy.action(new Callable<V>() {
-            @Override
-            public V call() throws Exception {
-                try (Connection connection = sqlTransactionContext.getConnection()) {
-                    try {
-                        V value = callable.call(connection);
-                        connection.commit();
-                        return value;
-                    } catch (SQLException se) {
-                        if (!SqlTransientExceptionDetector.isSqlStateConnectionException(se)) {
-                            try {
-                                connection.rollback();
-                            } catch (SQLException ignored) {
-                            }
-                        }
-                        throw se;
+    public void addRetryEventListener(RetryEventListener rel) {
+        retryPolicy.addRetryEventListener(rel);
+    }
+
+    /**
+     * Connections of first attempts that failed and were rolled back, by
+     * failure, until the retries of their action take them over.
+     */
+    private final Map<Throwable, Connection> handoff = new ConcurrentHashMap<>();
+
+    /**
+     * Performs a single transaction attempt. A connection is kept for the next
+     * attempt of the same action as long as it could be rolled back after a
+     * failure worth retrying on it, e.g. a serialization failure or deadlock,
+     * so that contention does not churn the pool; it is discarded after
+     * connection failures and non-transient failures. One instance serves all
+     * calls, and the task only gets wrapped, to hold on to the connection,
+     * once its first attempt failed.
+     */
+    private final RetryPolicy.Attempt<SqlCallable<V>, V> transaction = new RetryPolicy.Attempt<SqlCallable<V>, V>() {
+        @Override
+        public V attempt(SqlCallable<V> callable) throws Exception {
+            if (callable instanceof Transaction) {
+                Transaction<V> retried = (Transaction<V>) callable;
+                Connection connection = retried.take();
+                if (connection == null) {
+                    connection = connect();
+                }
+                return transact(retried.callable, connection, retried);
+            }
+            return transact(callable, connect(), null);
+        }
+
+        @Override
+        public SqlCallable<V> retrying(SqlCallable<V> callable, Exception failure) {
+            Transaction<V> retried = new Transaction<>(callable);
+            Connection connection = handoff.remove(failure);
+            if (connection == null) {
+                // the failure of a timed out attempt is suppressed
+                for (Throwable suppressed : failure.getSuppressed()) {
+                    if ((connection = handoff.remove(suppressed)) != null) {
+                        break;
                     }
                 }
             }
-        });
+            if (connection != null) {
+                retried.retain(connection);
+            }
+            return retried;
+        }
+
+        @Override
+        public void completed(SqlCallable<V> callable) {
+            ((Transaction<V>) callable).complete();
+        }
+    };
+
+    private Connection connect() throws SQLException {
+        Connection connection = sqlTransactionContext.getConnection();
+        if (dialectDetector != null && !dialectDetector.isDetected()) {
+            dialectDetector.detect(connection);
+        }
+        return connection;
+    }
+
+    /**
+     * Performs the transaction on the connection, then either closes the
+     * connection or, if it was rolled back, retains it for the next attempt.
+     * Failures other than connection failures are always rolled back, so no
+     * partial work is left for the driver to deal with on close.
+     */
+    private V transact(SqlCallable<V> callable, Connection connection, Transaction<V> retried) throws Exception {
+        V value;
+        try {
+            value = callable.call(connection);
+            connection.commit();
+        } catch (SQLException se) {
+            boolean rolledBack = !isConnectionFailure(se) && rollback(connection);
+            if (rolledBack && isReusable(se)) {
+                if (retried != null) {
+                    retried.retain(connection);
+                } else {
+                    handoff.put(se, connection);
+                }
+            } else {
+                close(connection, se);
+            }
+            throw se;
+        } catch (Throwable t) {
+            rollback(connection);
+            close(connection, t);
+            throw t;
+        }
+        connection.close();
+        return value;
+    }
+
+    /**
+     * Determines if the failure ended the connection, by SQLSTATE class 08 or
+     * the connection errors of the detected dialect.
+     */
+    private boolean isConnectionFailure(SQLException se) {
+        if (SqlTransientExceptionDetector.isSqlStateConnectionException(se)) {
+            return true;
+        }
+        SqlDialect dialect = dialectDetector != null ? dialectDetector.getDialect() : null;
+        return dialect != null && dialect.isConnectionFailure(se);
+    }
+
+    /**
+     * Determines if the rolled back connection of a failed attempt may serve
+     * the next one; non-transient failures, e.g. integrity constraint
+     * violations, end the action, so their connection is not kept.
+     */
+    private static boolean isReusable(SQLException se) {
+        return !(se instanceof SQLNonTransientException || se instanceof SQLRecoverableException
+                || SqlTransientExceptionDetector.isSqlStateIntegrityConstraintViolation(se));
+    }
+
+    private static boolean rollback(Connection connection) {
+        try {
+            connection.rollback();
+            return true;
+        } catch (SQLException ignored) {
+            return false;
+        }
+    }
+
+    private static void close(Connection connection, Throwable failure) {
+        try {
+            connection.close();
+        } catch (SQLException se) {
+            failure.addSuppressed(se);
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    /**
+     * The task of an action being retried, holding on to the connection kept
+     * between its attempts. Asynchronous actions may complete while an attempt
+     * is running, hence the synchronization.
+     */
+    private static final class Transaction<V> implements SqlCallable<V> {
+
+        private final SqlCallable<V> callable;
+        private Connection connection;
+        private boolean completed;
+
+        Transaction(SqlCallable<V> callable) {
+            this.callable = callable;
+        }
+
+        @Override
+        public V call(Connection connection) throws SQLException {
+            return callable.call(connection);
+        }
+
+        synchronized Connection take() {
+            Connection taken = connection;
+            connection = null;
+            return taken;
+        }
+
+        synchronized void retain(Connection connection) {
+            if (completed) {
+                closeQuietly(connection);
+            } else {
+                this.connection = connection;
+            }
+        }
+
+        synchronized void complete() {
+            completed = true;
+            Connection retained = take();
+            if (retained != null) {
+                closeQuietly(retained);
+            }
+        }
     }
 }
@@ -0,0 +1,327 @@
+package com.github.rbuck.retry;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Classifies SQL exceptions as transient or not by a configurable set of
+ * rules, compiled into primitive lookup tables so that classifying a failure
+ * takes constant time and allocates nothing.
+ * <p/>
+ * Rules apply to a SQLSTATE class, the first two characters of the SQLSTATE,
+ * to a full five character SQLSTATE, or to a vendor error code as returned by
+ * getErrorCode. For each SQL exception the most specific rule wins: a vendor
+ * error code rule first, then the JDBC 4 exception type chosen by the driver,
+ * then a SQLSTATE rule, then a SQLSTATE class rule.
+ * <p/>
+ * An exception is classified by the first SQL exception with a verdict found
+ * walking its cause chain, and for each SQL exception its chain of next
+ * exceptions, so that SQL exceptions wrapped by other exceptions, or reported
+ * after a batch failure, are classified as well.
+ * <p/>
+ * SQLSTATE characters are digits and upper case letters, so a SQLSTATE is
+ * packed into an int as a five digit base 36 number. Class rules are kept in
+ * a table indexed by the packed class, SQLSTATE and vendor code rules in
+ * open-addressed hash tables. Adding a rule recompiles the tables; classifying
+ * reads them without locking, so rules are best set up front.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class SqlStateClassifier {
+
+    /**
+     * The outcome of a classification.
+     */
+    public enum Classification {
+        TRANSIENT,
+        NON_TRANSIENT,
+        UNKNOWN
+    }
+
+    /**
+     * The maximum number of causes, and of next exceptions per cause, inspected;
+     * bounds the walk over chains that are very long or cyclic.
+     */
+    private static final int MAX_DEPTH = 16;
+
+    private static final int RADIX = 36;
+    private static final int CLASS_DIVISOR = RADIX * RADIX * RADIX;
+
+    private static final byte NONE = 0;
+    private static final byte TRANSIENT = 1;
+    private static final byte NON_TRANSIENT = 2;
+
+    private final Map<String, Boolean> classRules = new LinkedHashMap<>();
+    private final Map<String, Boolean> codeRules = new LinkedHashMap<>();
+    private final Map<Integer, Boolean> vendorCodeRules = new LinkedHashMap<>();
+
+    private volatile Table table = new Table(classRules, codeRules, vendorCodeRules);
+
+    /**
+     * Constructs a classifier without any rules.
+     */
+    public SqlStateClassifier() {
+    }
+
+    /**
+     * Constructs a classifier with the rules of another one.
+     *
+     * @param rules the classifier whose rules to copy
+     */
+    public SqlStateClassifier(SqlStateClassifier rules) {
+        addRules(rules);
+    }
+
+    /**
+     * Adds a rule for a SQLSTATE class, e.g. "08" for connection exceptions.
+     *
+     * @param sqlStateClass the two character SQLSTATE class
+     * @param isTransient   whether exceptions of the class are transient
+     */
+    public synchronized void addClassRule(String sqlStateClass, boolean isTransient) {
+        if (sqlStateClass == null || sqlStateClass.length() != 2 || classIndex(sqlStateClass) < 0) {
+            throw new IllegalArgumentException("invalid SQLSTATE class: " + sqlStateClass);
+        }
+        classRules.put(sqlStateClass.toUpperCase(), isTransient);
+        compile();
+    }
+
+    /**
+     * Adds a rule for a SQLSTATE, e.g. "40001" for serialization failures.
+     *
+     * @param sqlState    the five character SQLSTATE
+     * @param isTransient whether exceptions with the SQLSTATE are transient
+     */
+    public synchronized void addCodeRule(String sqlState, boolean isTransient) {
+        if (pack(sqlState) < 0) {
+            throw new IllegalArgumentException("invalid SQLSTATE: " + sqlState);
+        }
+        codeRules.put(sqlState.toUpperCase(), isTransient);
+        compile();
+    }
+
+    /**
+     * Adds a rule for a vendor error code, e.g. 1213 for MySQL deadlocks.
+     * Vendor error codes are specific to a database, so only add these to
+     * classifiers used with that database.
+     *
+     * @param errorCode   the vendor error code, other than zero
+     * @param isTransient whether exceptions with the error code are transient
+     */
+    public synchronized void addVendorCodeRule(int errorCode, boolean isTransient) {
+        if (errorCode == 0) {
+            throw new IllegalArgumentException("zero denotes the absence of a vendor error code");
+        }
+        vendorCodeRules.put(errorCode, isTransient);
+        compile();
+    }
+
+    /**
+     * Adds all rules of another classifier, replacing rules for the same
+     * classes, SQLSTATEs and vendor error codes.
+     *
+     * @param rules the classifier whose rules to add
+     */
+    public void addRules(SqlStateClassifier rules) {
+        Map<String, Boolean> classes;
+        Map<String, Boolean> codes;
+        Map<Integer, Boolean> vendorCodes;
+        synchronized (rules) {
+            classes = new LinkedHashMap<>(rules.classRules);
+            codes = new LinkedHashMap<>(rules.codeRules);
+            vendorCodes = new LinkedHashMap<>(rules.vendorCodeRules);
+        }
+        synchronized (this) {
+            classRules.putAll(classes);
+            codeRules.putAll(codes);
+            vendorCodeRules.putAll(vendorCodes);
+            compile();
+        }
+    }
+
+    /**
+     * Classifies an exception, inspecting its causes and next exceptions.
+     *
+     * @param t the exception to classify
+     * @return the classification of the first SQL exception with a verdict,
+     * or UNKNOWN if there is none
+     */
+    public Classification classify(Throwable t) {
+        Table rules = table;
+        Throwable cause = t;
+        for (int depth = 0; cause != null && depth < MAX_DEPTH; depth++) {
+            if (cause instanceof SQLException) {
+                SQLException next = (SQLException) cause;
+                for (int count = 0; next != null && count < MAX_DEPTH; count++) {
+                    byte verdict = rules.classify(next);
+                    if (verdict != NONE) {
+                        return verdict == TRANSIENT ? Classification.TRANSIENT : Classification.NON_TRANSIENT;
+                    }
+                    next = next.getNextException();
+                }
+            }
+            Throwable parent = cause;
+            cause = cause.getCause();
+            if (cause == parent) {
+                break;
+            }
+        }
+        return Classification.UNKNOWN;
+    }
+
+    /**
+     * Determines whether an exception is transient.
+     *
+     * @param t the exception to classify
+     * @return true if classified as transient
+     */
+    public boolean isTransient(Throwable t) {
+        return classify(t) == Classification.TRANSIENT;
+    }
+
+    private void compile() {
+        table = new Table(classRules, codeRules, vendorCodeRules);
+    }
+
+    /**
+     * Packs a SQLSTATE into a non-negative int.
+     *
+     * @return the packed SQLSTATE, or -1 if it is not a valid SQLSTATE
+     */
+    static int pack(String sqlState) {
+        if (sqlState == null || sqlState.length() != 5) {
+            return -1;
+        }
+        int packed = 0;
+        for (int i = 0; i < 5; i++) {
+            int digit = digit(sqlState.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            packed = packed * RADIX + digit;
+        }
+        return packed;
+    }
+
+    /**
+     * Packs the class of a SQLSTATE into an index below 36 * 36.
+     *
+     * @return the packed class, or -1 if it is not a valid SQLSTATE class
+     */
+    static int classIndex(String sqlState) {
+        if (sqlState == null || sqlState.length() < 2) {
+            return -1;
+        }
+        int high = digit(sqlState.charAt(0));
+        int low = digit(sqlState.charAt(1));
+        return high < 0 || low < 0 ? -1 : high * RADIX + low;
+    }
+
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+
+    private static byte verdict(boolean isTransient) {
+        return isTransient ? TRANSIENT : NON_TRANSIENT;
+    }
+
+    /**
+     * The compiled rules; immutable once constructed.
+     */
+    private static final class Table {
+
+        private final byte[] classes = new byte[RADIX * RADIX];
+        private final int[] codeKeys;
+        private final byte[] codeValues;
+        private final int[] vendorKeys;
+        private final byte[] vendorValues;
+
+        Table(Map<String, Boolean> classRules, Map<String, Boolean> codeRules, Map<Integer, Boolean> vendorCodeRules) {
+            for (Map.Entry<String, Boolean> rule : classRules.entrySet()) {
+                classes[classIndex(rule.getKey())] = verdict(rule.getValue());
+            }
+            codeKeys = new int[capacity(codeRules.size())];
+            codeValues = new byte[codeKeys.length];
+            for (Map.Entry<String, Boolean> rule : codeRules.entrySet()) {
+                put(codeKeys, codeValues, pack(rule.getKey()), verdict(rule.getValue()));
+            }
+            vendorKeys = new int[capacity(vendorCodeRules.size())];
+            vendorValues = new byte[vendorKeys.length];
+            for (Map.Entry<Integer, Boolean> rule : vendorCodeRules.entrySet()) {
+                put(vendorKeys, vendorValues, rule.getKey(), verdict(rule.getValue()));
+            }
+        }
+
+        byte classify(SQLException se) {
+            int errorCode = se.getErrorCode();
+            if (errorCode != 0) {
+                byte verdict = get(vendorKeys, vendorValues, errorCode);
+                if (verdict != NONE) {
+                    return verdict;
+                }
+            }
+            if (se instanceof SQLTransientException || se instanceof SQLRecoverableException) {
+                return TRANSIENT;
+            }
+            if (se instanceof SQLNonTransientException) {
+                return NON_TRANSIENT;
+            }
+            String sqlState = se.getSQLState();
+            int packed = pack(sqlState);
+            if (packed >= 0) {
+                byte verdict = get(codeKeys, codeValues, packed);
+                return verdict != NONE ? verdict : classes[packed / CLASS_DIVISOR];
+            }
+            int index = classIndex(sqlState);
+            return index < 0 ? NONE : classes[index];
+        }
+
+        /**
+         * Sizes a table to at most half full, so that probing always ends.
+         */
+        private static int capacity(int size) {
+            return Integer.highestOneBit(Math.max(2, size) * 4 - 1);
+        }
+
+        private static int slot(int key, int mask) {
+            int h = key * 0x9E3779B9;
+            return (h ^ (h >>> 16)) & mask;
+        }
+
+        private static void put(int[] keys, byte[] values, int key, byte value) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (values[i] != NONE && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        private static byte get(int[] keys, byte[] values, int key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            byte value;
+            while ((value = values[i]) != NONE) {
+                if (keys[i] == key) {
+                    return value;
+                }
+                i = (i + 1) & mask;
+            }
+            return NONE;
+        }
+    }
+}
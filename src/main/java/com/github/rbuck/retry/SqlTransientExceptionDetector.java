@@ -1,18 +1,21 @@
 package com.github.rbuck.retry;
 
 import java.sql.SQLException;
-import java.sql.SQLNonTransientException;
-import java.sql.SQLRecoverableException;
-import java.sql.SQLTransientException;
 
 /**
- * Checks if the exception is a transient SQL exception.
+ * Checks if the exception is a transient SQL exception. Transient exceptions,
+ * classified by a {@link SqlStateClassifier}, are connection exceptions,
+ * SQLSTATE class 08, rollback exceptions, SQLSTATE class 40, the exceptions
+ * of the transient and recoverable JDBC 4 types, and by default duplicate
+ * values in unique indexes, SQLSTATE 23505. SQL exceptions wrapped by other
+ * exceptions are found through the cause chain.
  *
  * @author Robert Buck (buck.robert.j@gmail.com)
  */
 public class SqlTransientExceptionDetector implements TransientExceptionDetector {
 
     private final boolean treatDuplicatesAsTransient;
+    private final SqlStateClassifier classifier;
 
     public SqlTransientExceptionDetector() {
         this(true);
@@ -20,37 +23,114 @@ public class SqlTransientExceptionDetector implements TransientExceptionDetector
 
     public SqlTransientExceptionDetector(boolean treatDuplicatesAsTransient) {
         this.treatDuplicatesAsTransient = treatDuplicatesAsTransient;
+        this.classifier = new SqlStateClassifier();
+        classifier.addClassRule("08", true);
+        classifier.addClassRule("40", true);
+        if (treatDuplicatesAsTransient) {
+            classifier.addCodeRule("23505", true);
+        }
+    }
+
+    /**
+     * Constructs a detector classifying exceptions by the rules of the
+     * specified classifier only.
+     *
+     * @param classifier the classifier
+     */
+    public SqlTransientExceptionDetector(SqlStateClassifier classifier) {
+        this(classifier, false);
+    }
+
+    /**
+     * Constructs a detector classifying exceptions by the rules of the
+     * specified classifier, optionally falling back to detecting duplicate
+     * values in unique indexes by message.
+     *
+     * @param classifier                 the classifier
+     * @param treatDuplicatesAsTransient whether duplicates reported by message only are transient
+     */
+    public SqlTransientExceptionDetector(SqlStateClassifier classifier, boolean treatDuplicatesAsTransient) {
+        if (classifier == null) {
+            throw new IllegalArgumentException("classifier must not be null");
+        }
+        this.treatDuplicatesAsTransient = treatDuplicatesAsTransient;
+        this.classifier = classifier;
     }
 
     @Override
     public boolean isTransient(Exception e) {
-        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException) {
-            return true;
+        switch (classifier.classify(e)) {
+            case TRANSIENT:
+                return true;
+            case NON_TRANSIENT:
+                return false;
+            default:
+                // some databases report duplicates under other class 23 codes
+                return treatDuplicatesAsTransient && UNIQUE_VIOLATIONS.anyMatches(e, TransientExceptionDetectors.DEFAULT_MAX_DEPTH);
         }
-        if (e instanceof SQLNonTransientException) {
-            return false;
+    }
+
+    private static final TransientExceptionDetectors.Chain<Throwable> UNIQUE_VIOLATIONS = new TransientExceptionDetectors.Chain<Throwable>() {
+        @Override
+        Throwable next(Throwable t) {
+            return t.getCause();
         }
-        if (e instanceof SQLException) {
-            SQLException se = (SQLException) e;
-            if (isSqlStateConnectionException(se) || isSqlStateRollbackException(se)) {
-                return true;
-            }
-            if (isSqlStateDuplicateValueInUniqueIndex(se) && treatDuplicatesAsTransient) {
-                return true;
-            }
+
+        @Override
+        boolean matches(Throwable t) {
+            return t instanceof SQLException && isSqlStateUniqueViolation((SQLException) t);
         }
-        return false;
+    };
+
+    /**
+     * Gets the classifier whose rules this detector applies.
+     *
+     * @return the classifier
+     */
+    public SqlStateClassifier getClassifier() {
+        return classifier;
     }
 
     /**
      * Determines if the SQL exception a duplicate value in unique index.
      *
      * @param se the exception
-     * @return true if it is a code 23505, otherwise false
+     * @return true if it is a code 23505, or has a SQLSTATE and reports a
+     * duplicate value in its message, otherwise false
+     * @see #isSqlStateUniqueViolation(SQLException)
      */
     public static boolean isSqlStateDuplicateValueInUniqueIndex(SQLException se) {
         String sqlState = se.getSQLState();
-        return sqlState != null && (sqlState.equals("23505") || se.getMessage().contains("duplicate value in unique index"));
+        return sqlState != null && (sqlState.equals("23505") || isDuplicateMessage(se));
+    }
+
+    /**
+     * Determines if the SQL exception is a unique constraint violation, only
+     * trusting the message of integrity constraint violations.
+     *
+     * @param se the exception
+     * @return true if it is a code 23505, or a class 23 code reporting a
+     * duplicate value in its message, otherwise false
+     */
+    public static boolean isSqlStateUniqueViolation(SQLException se) {
+        String sqlState = se.getSQLState();
+        return sqlState != null && sqlState.startsWith("23") && (sqlState.equals("23505") || isDuplicateMessage(se));
+    }
+
+    private static boolean isDuplicateMessage(SQLException se) {
+        String message = se.getMessage();
+        return message != null && message.contains("duplicate value in unique index");
+    }
+
+    /**
+     * Determines if the SQL exception is an integrity constraint violation
+     *
+     * @param se the exception
+     * @return true if it is a code 23nnn, otherwise false
+     */
+    public static boolean isSqlStateIntegrityConstraintViolation(SQLException se) {
+        String sqlState = se.getSQLState();
+        return sqlState != null && sqlState.startsWith("23");
     }
 
     /**
@@ -0,0 +1,184 @@
+package com.github.rbuck.retry;
+
+import java.sql.SQLException;
+
+/**
+ * The dialects of common databases, adding the transient conditions these
+ * report under SQLSTATEs outside classes 08 and 40, or only by vendor error
+ * code, to the generic rules, and telling which of these are rollbacks and
+ * which end the connection.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public enum StandardSqlDialect implements SqlDialect {
+
+    /**
+     * PostgreSQL reports deadlocks as 40P01 and serialization failures as
+     * 40001; added are shutdowns, 57P01 to 57P03, lock timeouts, 55P03, and
+     * too many connections, 53300.
+     */
+    POSTGRESQL("PostgreSQL") {
+        @Override
+        public void addRules(SqlStateClassifier classifier) {
+            classifier.addCodeRule("57P01", true);
+            classifier.addCodeRule("57P02", true);
+            classifier.addCodeRule("57P03", true);
+            classifier.addCodeRule("55P03", true);
+            classifier.addCodeRule("53300", true);
+        }
+
+        @Override
+        public boolean isConnectionFailure(SQLException se) {
+            String sqlState = se.getSQLState();
+            return "57P01".equals(sqlState) || "57P02".equals(sqlState) || "57P03".equals(sqlState);
+        }
+    },
+
+    /**
+     * MySQL and MariaDB report most errors under SQLSTATE HY000; added are
+     * deadlocks, 1213, lock wait timeouts, 1205, too many connections, 1040,
+     * and lost connections, 2006 and 2013.
+     */
+    MYSQL("MySQL", "MariaDB") {
+        @Override
+        public void addRules(SqlStateClassifier classifier) {
+            classifier.addVendorCodeRule(1213, true);
+            classifier.addVendorCodeRule(1205, true);
+            classifier.addVendorCodeRule(1040, true);
+            classifier.addVendorCodeRule(2006, true);
+            classifier.addVendorCodeRule(2013, true);
+        }
+
+        @Override
+        public boolean isRollback(SQLException se) {
+            return isVendorCode(se, 1213, 1205);
+        }
+
+        @Override
+        public boolean isConnectionFailure(SQLException se) {
+            return isVendorCode(se, 2006, 2013);
+        }
+    },
+
+    /**
+     * Oracle reports ORA errors under generic SQLSTATEs; added are deadlocks,
+     * ORA-00060, serialization failures, ORA-08177, lock wait timeouts,
+     * ORA-30006, lost connections, ORA-03113 and ORA-03114, instances starting
+     * or shutting down, ORA-01033, ORA-01034 and ORA-01089, and listener
+     * failures, ORA-12514 and ORA-12541.
+     */
+    ORACLE("Oracle") {
+        @Override
+        public void addRules(SqlStateClassifier classifier) {
+            classifier.addVendorCodeRule(60, true);
+            classifier.addVendorCodeRule(8177, true);
+            classifier.addVendorCodeRule(30006, true);
+            classifier.addVendorCodeRule(3113, true);
+            classifier.addVendorCodeRule(3114, true);
+            classifier.addVendorCodeRule(1033, true);
+            classifier.addVendorCodeRule(1034, true);
+            classifier.addVendorCodeRule(1089, true);
+            classifier.addVendorCodeRule(12514, true);
+            classifier.addVendorCodeRule(12541, true);
+        }
+
+        @Override
+        public boolean isRollback(SQLException se) {
+            return isVendorCode(se, 60, 8177, 30006);
+        }
+
+        @Override
+        public boolean isConnectionFailure(SQLException se) {
+            return isVendorCode(se, 3113, 3114, 1033, 1034, 1089, 12514, 12541);
+        }
+    },
+
+    /**
+     * SQL Server; added are deadlock victims, 1205, lock request timeouts,
+     * 1222, databases unavailable, 4060, transport failures, 64, 10053, 10054
+     * and 10060, and the throttling and failover errors of Azure SQL, 40197,
+     * 40501, 40613, 10928, 10929 and 49918 to 49920.
+     */
+    SQL_SERVER("Microsoft SQL Server") {
+        @Override
+        public void addRules(SqlStateClassifier classifier) {
+            int[] codes = {1205, 1222, 4060, 64, 10053, 10054, 10060, 40197, 40501, 40613, 10928, 10929, 49918, 49919, 49920};
+            for (int code : codes) {
+                classifier.addVendorCodeRule(code, true);
+            }
+        }
+
+        @Override
+        public boolean isRollback(SQLException se) {
+            return isVendorCode(se, 1205, 1222);
+        }
+
+        @Override
+        public boolean isConnectionFailure(SQLException se) {
+            return isVendorCode(se, 4060, 64, 10053, 10054, 10060, 40197, 40613);
+        }
+    },
+
+    /**
+     * NuoDB reports transient conditions by JDBC 4 exception type and under
+     * SQLSTATE classes 08 and 40, which the generic rules cover already.
+     */
+    NUODB("NuoDB") {
+        @Override
+        public void addRules(SqlStateClassifier classifier) {
+        }
+    },
+
+    /**
+     * H2 reports its error codes as vendor error codes; added are lock
+     * timeouts, 50200 under SQLSTATE HYT00, concurrent updates, 90131, and
+     * broken connections, 90067.
+     */
+    H2("H2") {
+        @Override
+        public void addRules(SqlStateClassifier classifier) {
+            classifier.addCodeRule("HYT00", true);
+            classifier.addVendorCodeRule(50200, true);
+            classifier.addVendorCodeRule(90131, true);
+            classifier.addVendorCodeRule(90067, true);
+        }
+
+        @Override
+        public boolean isRollback(SQLException se) {
+            return isVendorCode(se, 50200, 90131);
+        }
+
+        @Override
+        public boolean isConnectionFailure(SQLException se) {
+            return isVendorCode(se, 90067);
+        }
+    };
+
+    private final String[] productNames;
+
+    StandardSqlDialect(String... productNames) {
+        this.productNames = productNames;
+    }
+
+    @Override
+    public boolean isDialectOf(String databaseProductName) {
+        if (databaseProductName != null) {
+            for (String productName : productNames) {
+                if (databaseProductName.regionMatches(true, 0, productName, 0, productName.length())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isVendorCode(SQLException se, int... codes) {
+        int errorCode = se.getErrorCode();
+        for (int code : codes) {
+            if (errorCode == code) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
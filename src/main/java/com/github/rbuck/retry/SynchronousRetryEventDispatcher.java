@@ -0,0 +1,22 @@
+package com.github.rbuck.retry;
+
+/**
+ * Delivers retry events in the calling thread, before the retry delay begins.
+ * Listeners therefore add directly to the latency of the action under retry
+ * and must be fast.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class SynchronousRetryEventDispatcher implements RetryEventDispatcher {
+
+    public static final SynchronousRetryEventDispatcher INSTANCE = new SynchronousRetryEventDispatcher();
+
+    @Override
+    public void dispatch(RetryEvent evt, RetryEventListener listener) {
+        listener.onRetry(evt);
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
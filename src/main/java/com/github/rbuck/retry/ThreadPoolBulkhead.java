@@ -0,0 +1,128 @@
+package com.github.rbuck.retry;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread pool bulkhead giving the asynchronous actions of a retry policy
+ * threads of their own, so that actions sleeping out their retry delays only
+ * ever occupy the threads of their bulkhead.
+ * <p/>
+ * Actions exceeding the pool wait in a bounded queue; when the queue is full
+ * they are rejected, and actions that waited in the queue longer than the
+ * queue timeout are rejected when their turn comes.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ * @see RetryPolicy#actionAsync(java.util.concurrent.Callable)
+ */
+public class ThreadPoolBulkhead {
+
+    public static final int DEFAULT_MAX_THREADS = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_QUEUE_CAPACITY = 100;
+    public static final long DEFAULT_QUEUE_TIMEOUT = 0;
+
+    private static final AtomicInteger BULKHEAD_COUNT = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor;
+    private final long queueTimeout;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public ThreadPoolBulkhead() {
+        this(DEFAULT_MAX_THREADS, DEFAULT_QUEUE_CAPACITY, DEFAULT_QUEUE_TIMEOUT);
+    }
+
+    /**
+     * Constructs a thread pool bulkhead.
+     *
+     * @param maxThreads    the number of threads, i.e. of actions performed at once
+     * @param queueCapacity the number of actions permitted to wait for a thread
+     * @param queueTimeout  the time in milliseconds an action may wait for a thread, or zero for no limit
+     */
+    public ThreadPoolBulkhead(int maxThreads, int queueCapacity, long queueTimeout) {
+        if (maxThreads < 1 || queueCapacity < 1 || queueTimeout < 0) {
+            throw new IllegalArgumentException("threads and queue capacity must be positive, queue timeout not negative");
+        }
+        final int bulkhead = BULKHEAD_COUNT.getAndIncrement();
+        this.executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "retry-bulkhead-" + bulkhead + "-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.queueTimeout = TimeUnit.MILLISECONDS.toNanos(queueTimeout);
+    }
+
+    Executor executor() {
+        return executor;
+    }
+
+    /**
+     * Tells whether an action queued at the given time waited too long, and
+     * if so counts it as rejected.
+     */
+    boolean isQueueTimedOut(long queuedAt) {
+        if (queueTimeout > 0 && System.nanoTime() - queuedAt > queueTimeout) {
+            timedOut.increment();
+            return true;
+        }
+        return false;
+    }
+
+    void onRejected() {
+        rejected.increment();
+    }
+
+    public int getMaxThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getRemainingQueueCapacity() {
+        return executor.getQueue().remainingCapacity();
+    }
+
+    /**
+     * Gets the number of actions rejected because the queue was full.
+     *
+     * @return the number of rejected actions
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Gets the number of actions rejected because they waited in the queue
+     * longer than the queue timeout.
+     *
+     * @return the number of timed out actions
+     */
+    public long getQueueTimeoutCount() {
+        return timedOut.sum();
+    }
+
+    /**
+     * Stops the threads of the bulkhead once the actions already accepted completed.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,156 @@
+package com.github.rbuck.retry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decorates any retry strategy so that, in addition to its own limits, each
+ * retry must hold a permit from a store shared by a whole fleet, bounding the
+ * aggregate retry rate against a shared resource however many processes use
+ * it.
+ * <p/>
+ * Permits are handed out per fixed time window and drawn from the store in
+ * batches, which are then spent locally without coordination; once the store
+ * has no permits left for a window, retries are refused locally until the
+ * next window. The store is thus consulted at most once per batch, and once
+ * per window while the fleet is throttled, never on the success path. Permits
+ * cached but not spent when a window ends are lost, so with many processes a
+ * batch well below the limit divided by the number of processes keeps the
+ * shares fair.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ * @see RetryPermitStore
+ */
+public class ThrottledRetryStrategy implements RetryStrategy {
+
+    public static final long DEFAULT_WINDOW = TimeUnit.MILLISECONDS.convert(1, TimeUnit.SECONDS);
+    public static final int DEFAULT_PERMIT_BATCH = 10;
+
+    private static final int PERMIT_BITS = 24;
+    private static final long PERMIT_MASK = (1L << PERMIT_BITS) - 1;
+
+    private final RetryStrategy retryStrategy;
+    private final RetryPermitStore permitStore;
+    private final int retriesPerWindow;
+    private final long windowMillis;
+    private final int permitBatch;
+    private final long epoch;
+
+    /**
+     * The local permits, as the window relative to the epoch in the high bits
+     * and the permits left for it in the low bits.
+     */
+    private final AtomicLong permits = new AtomicLong();
+    private volatile long exhaustedWindow = -1;
+
+    /**
+     * Constructs a throttled retry strategy permitting a number of retries per
+     * second across the fleet.
+     *
+     * @param retryStrategy    the strategy governing retry count and delays
+     * @param permitStore      the store shared by the fleet
+     * @param retriesPerSecond the retries permitted per second to the whole fleet
+     */
+    public ThrottledRetryStrategy(RetryStrategy retryStrategy, RetryPermitStore permitStore, int retriesPerSecond) {
+        this(retryStrategy, permitStore, retriesPerSecond, DEFAULT_WINDOW, DEFAULT_PERMIT_BATCH);
+    }
+
+    /**
+     * Constructs a throttled retry strategy.
+     *
+     * @param retryStrategy    the strategy governing retry count and delays
+     * @param permitStore      the store shared by the fleet
+     * @param retriesPerWindow the retries permitted per window to the whole fleet
+     * @param windowMillis     the length of a window in milliseconds
+     * @param permitBatch      the number of permits drawn from the store at once
+     */
+    public ThrottledRetryStrategy(RetryStrategy retryStrategy, RetryPermitStore permitStore,
+                                  int retriesPerWindow, long windowMillis, int permitBatch) {
+        if (retryStrategy == null || permitStore == null) {
+            throw new IllegalArgumentException("retry strategy and permit store must not be null");
+        }
+        if (retriesPerWindow < 0 || windowMillis < 1 || permitBatch < 1 || permitBatch > PERMIT_MASK) {
+            throw new IllegalArgumentException("retries must not be negative, window and batch must be positive");
+        }
+        this.retryStrategy = retryStrategy;
+        this.permitStore = permitStore;
+        this.retriesPerWindow = retriesPerWindow;
+        this.windowMillis = windowMillis;
+        this.permitBatch = permitBatch;
+        this.epoch = System.currentTimeMillis() / windowMillis;
+    }
+
+    @Override
+    public RetryState getRetryState() {
+        final RetryState retryState = retryStrategy.getRetryState();
+        return new RetryState() {
+
+            @Override
+            public void delayRetry() {
+                retryState.delayRetry();
+            }
+
+            @Override
+            public void delayRetry(long delay) {
+                retryState.delayRetry(delay);
+            }
+
+            @Override
+            public boolean hasRetries() {
+                return retryState.hasRetries() && tryAcquire();
+            }
+
+            @Override
+            public int getRetryCount() {
+                return retryState.getRetryCount();
+            }
+
+            @Override
+            public long getRetryDelay() {
+                return retryState.getRetryDelay();
+            }
+        };
+    }
+
+    @Override
+    public void onSuccess(int retryCount) {
+        retryStrategy.onSuccess(retryCount);
+    }
+
+    /**
+     * Takes a permit for a retry.
+     *
+     * @return true if the retry is permitted, false if it must be refused
+     */
+    private boolean tryAcquire() {
+        long window = Math.max(0, System.currentTimeMillis() / windowMillis - epoch);
+        return takeLocal(window) || (window != exhaustedWindow && refill(window));
+    }
+
+    private boolean takeLocal(long window) {
+        long state;
+        while ((state = permits.get()) >>> PERMIT_BITS == window && (state & PERMIT_MASK) != 0) {
+            if (permits.compareAndSet(state, state - 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized boolean refill(long window) {
+        // another thread may have refilled or found the store exhausted meanwhile
+        if (takeLocal(window)) {
+            return true;
+        }
+        if (window == exhaustedWindow) {
+            return false;
+        }
+        int granted = permitStore.acquire(epoch + window, permitBatch, retriesPerWindow);
+        if (granted <= 0) {
+            exhaustedWindow = window;
+            return false;
+        }
+        permits.set(window << PERMIT_BITS | (granted - 1));
+        return true;
+    }
+}
@@ -0,0 +1,294 @@
+package com.github.rbuck.retry;
+
+import java.sql.SQLException;
+
+/**
+ * Composes transient exception detectors. Detectors are handed the exception
+ * an action failed with, which is often a wrapper, such as the
+ * ExecutionException of a future or the RuntimeException of a data access
+ * layer; the walkers here apply a detector to the exceptions it wraps:
+ * <pre>
+ * TransientExceptionDetector detector = TransientExceptionDetectors.causeChain(
+ *     TransientExceptionDetectors.nextExceptions(new MyDetector()));
+ * </pre>
+ * Walks are bounded in depth and stop at cycles. As everything here runs on
+ * the failure path of every retried action, nothing allocates, except for the
+ * copy Throwable.getSuppressed makes when suppressed exceptions are walked.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public final class TransientExceptionDetectors {
+
+    public static final int DEFAULT_MAX_DEPTH = 16;
+
+    private TransientExceptionDetectors() {
+    }
+
+    /**
+     * Composes detectors finding an exception transient if any of them does.
+     *
+     * @param detectors the detectors, consulted in order
+     * @return the composed detector, finding no exception transient if given no detectors
+     */
+    public static TransientExceptionDetector anyOf(TransientExceptionDetector... detectors) {
+        final TransientExceptionDetector[] all = copy(detectors);
+        return new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                for (TransientExceptionDetector detector : all) {
+                    if (detector.isTransient(e)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Composes detectors finding an exception transient if all of them do.
+     *
+     * @param detectors the detectors, consulted in order
+     * @return the composed detector, finding every exception transient if given no detectors
+     */
+    public static TransientExceptionDetector allOf(TransientExceptionDetector... detectors) {
+        final TransientExceptionDetector[] all = copy(detectors);
+        return new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                for (TransientExceptionDetector detector : all) {
+                    if (!detector.isTransient(e)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Negates a detector, typically to veto with allOf what another finds
+     * transient.
+     *
+     * @param detector the detector to negate
+     * @return a detector finding transient what the detector does not
+     */
+    public static TransientExceptionDetector negate(final TransientExceptionDetector detector) {
+        if (detector == null) {
+            throw new IllegalArgumentException("detector must not be null");
+        }
+        return new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return !detector.isTransient(e);
+            }
+        };
+    }
+
+    /**
+     * Applies a detector to an exception and its causes, up to the default
+     * depth.
+     *
+     * @param detector the detector to apply
+     * @return a detector finding an exception transient if the detector does any exception of its chain
+     * @see #causeChain(TransientExceptionDetector, int, boolean)
+     */
+    public static TransientExceptionDetector causeChain(TransientExceptionDetector detector) {
+        return causeChain(detector, DEFAULT_MAX_DEPTH, false);
+    }
+
+    /**
+     * Applies a detector to an exception and its causes.
+     *
+     * @param detector the detector to apply
+     * @param maxDepth the maximum number of causes to walk, counting the exception itself
+     * @return a detector finding an exception transient if the detector does any exception of its chain
+     * @see #causeChain(TransientExceptionDetector, int, boolean)
+     */
+    public static TransientExceptionDetector causeChain(TransientExceptionDetector detector, int maxDepth) {
+        return causeChain(detector, maxDepth, false);
+    }
+
+    /**
+     * Applies a detector to an exception, its causes and, optionally, the
+     * exceptions they suppressed. Suppressed exceptions are mostly secondary
+     * failures, such as failures to close, and a timed out attempt suppresses
+     * the failure of the interrupted attempt, so walking them may find
+     * failures transient for what went wrong in the clean up; they are best
+     * walked with detectors looking for specific failures only. Causes that
+     * are not exceptions, errors, are walked through but not inspected.
+     *
+     * @param detector   the detector to apply
+     * @param maxDepth   the maximum number of causes to walk, counting the exception itself
+     * @param suppressed whether to apply the detector to suppressed exceptions too
+     * @return a detector finding an exception transient if the detector does any exception of its chain
+     */
+    public static TransientExceptionDetector causeChain(final TransientExceptionDetector detector, final int maxDepth,
+                                                        final boolean suppressed) {
+        if (detector == null) {
+            throw new IllegalArgumentException("detector must not be null");
+        }
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("max depth must be positive");
+        }
+        final Chain<Throwable> causes = new Chain<Throwable>() {
+            @Override
+            Throwable next(Throwable t) {
+                return t.getCause();
+            }
+
+            @Override
+            boolean matches(Throwable t) {
+                if (t instanceof Exception && detector.isTransient((Exception) t)) {
+                    return true;
+                }
+                if (suppressed) {
+                    for (Throwable other : t.getSuppressed()) {
+                        if (other instanceof Exception && detector.isTransient((Exception) other)) {
+                            return true;
+                        }
+                    }
+                }
+                return false;
+            }
+        };
+        return new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return causes.anyMatches(e, maxDepth);
+            }
+        };
+    }
+
+    /**
+     * Applies a detector to a SQL exception and the exceptions chained to it
+     * as next exceptions, up to the default depth.
+     *
+     * @param detector the detector to apply
+     * @return a detector finding a SQL exception transient if the detector does any of its next exceptions
+     * @see #nextExceptions(TransientExceptionDetector, int)
+     */
+    public static TransientExceptionDetector nextExceptions(TransientExceptionDetector detector) {
+        return nextExceptions(detector, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Applies a detector to a SQL exception and the exceptions chained to it
+     * as next exceptions, as batch updates report their failures. The chain
+     * is followed through getNextException, not the iterator of SQLException.
+     * Exceptions other than SQL exceptions are handed to the detector as is.
+     *
+     * @param detector the detector to apply
+     * @param maxDepth the maximum number of exceptions to inspect, counting the exception itself
+     * @return a detector finding a SQL exception transient if the detector does any of its next exceptions
+     */
+    public static TransientExceptionDetector nextExceptions(final TransientExceptionDetector detector, final int maxDepth) {
+        if (detector == null) {
+            throw new IllegalArgumentException("detector must not be null");
+        }
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("max depth must be positive");
+        }
+        final Chain<SQLException> nextExceptions = new Chain<SQLException>() {
+            @Override
+            SQLException next(SQLException t) {
+                return t.getNextException();
+            }
+
+            @Override
+            boolean matches(SQLException t) {
+                return detector.isTransient(t);
+            }
+        };
+        return new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                if (!(e instanceof SQLException)) {
+                    return detector.isTransient(e);
+                }
+                return nextExceptions.anyMatches((SQLException) e, maxDepth);
+            }
+        };
+    }
+
+    /**
+     * Detects exceptions of the specified types as transient.
+     *
+     * @param types the transient exception types
+     * @return a detector finding exceptions of the types, or of their subtypes, transient
+     */
+    @SafeVarargs
+    public static TransientExceptionDetector instanceOf(Class<? extends Exception>... types) {
+        final Class<?>[] all = new Class<?>[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == null) {
+                throw new IllegalArgumentException("types must not be null");
+            }
+            all[i] = types[i];
+        }
+        return new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                for (Class<?> type : all) {
+                    if (type.isInstance(e)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * A chain of exceptions, such as causes or next exceptions, walked up to
+     * a maximum depth; implementations are expected to be allocated once.
+     */
+    abstract static class Chain<T extends Throwable> {
+
+        /**
+         * Gets the exception following one in the chain.
+         *
+         * @return the next exception, or null at the end of the chain
+         */
+        abstract T next(T t);
+
+        abstract boolean matches(T t);
+
+        /**
+         * Tells whether any exception of the chain matches, stopping at
+         * cycles: a second cursor follows at half speed, and the chain has a
+         * cycle if the first one meets it.
+         *
+         * @param first    the first exception of the chain
+         * @param maxDepth the maximum number of exceptions to inspect
+         * @return true if an exception within the depth matches
+         */
+        final boolean anyMatches(T first, int maxDepth) {
+            T slow = first;
+            T t = first;
+            for (int depth = 0; t != null && depth < maxDepth; depth++) {
+                if (matches(t)) {
+                    return true;
+                }
+                t = next(t);
+                if ((depth & 1) == 1) {
+                    slow = next(slow);
+                }
+                if (t == slow) {
+                    break;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static TransientExceptionDetector[] copy(TransientExceptionDetector[] detectors) {
+        TransientExceptionDetector[] all = detectors.clone();
+        for (TransientExceptionDetector detector : all) {
+            if (detector == null) {
+                throw new IllegalArgumentException("detectors must not be null");
+            }
+        }
+        return all;
+    }
+}
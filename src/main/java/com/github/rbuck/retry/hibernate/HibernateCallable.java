@@ -0,0 +1,24 @@
+package com.github.rbuck.retry.hibernate;
+
+import org.hibernate.Session;
+
+/**
+ * A SAM type permitting the use of lambda expressions whose default action is
+ * to perform a unit of work using the given Hibernate session.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public interface HibernateCallable<V> {
+
+    /**
+     * Implementation for the unit of work to perform.
+     *
+     * @param session the session against which to perform the unit of work;
+     *                its transaction is managed by the caller
+     * @return the result of the unit of work
+     * @throws Exception throw with detail related to cause; Hibernate reports
+     *                   failures as unchecked exceptions
+     */
+    V call(Session session) throws Exception;
+
+}
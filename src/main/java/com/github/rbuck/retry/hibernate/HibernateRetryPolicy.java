@@ -0,0 +1,183 @@
+package com.github.rbuck.retry.hibernate;
+
+import com.github.rbuck.retry.Bulkhead;
+import com.github.rbuck.retry.CircuitBreaker;
+import com.github.rbuck.retry.ConcurrencyLimiter;
+import com.github.rbuck.retry.RetryEventListener;
+import com.github.rbuck.retry.RetryMetrics;
+import com.github.rbuck.retry.RetryPolicy;
+import com.github.rbuck.retry.RetryStrategy;
+import com.github.rbuck.retry.TransientExceptionDetector;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+
+/**
+ * A retry policy for Hibernate units of work.
+ * <p/>
+ * Every attempt runs in a session of its own, opened from the session factory,
+ * within a transaction committed once the unit of work completes. On failure
+ * the transaction is rolled back and the persistence context cleared before
+ * the session is closed, so that no entity loaded by a failed attempt is seen,
+ * or kept in memory, by the next one.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class HibernateRetryPolicy<V> {
+
+    private final SessionFactory sessionFactory;
+    private final RetryPolicy<V> retryPolicy;
+
+    /**
+     * Implements a retry policy using the specified strategy, detecting
+     * transient errors with a HibernateTransientExceptionDetector.
+     *
+     * @param retryStrategy  the strategy that implements retry
+     * @param sessionFactory the factory opening a session per attempt
+     */
+    public HibernateRetryPolicy(RetryStrategy retryStrategy, SessionFactory sessionFactory) {
+        this(retryStrategy, new HibernateTransientExceptionDetector(), sessionFactory);
+    }
+
+    /**
+     * Implements a retry policy using the specified strategy and transient error detection algorithm.
+     *
+     * @param retryStrategy              the strategy that implements retry
+     * @param transientExceptionDetector the transient error detection algorithm
+     * @param sessionFactory             the factory opening a session per attempt
+     */
+    public HibernateRetryPolicy(RetryStrategy retryStrategy, TransientExceptionDetector transientExceptionDetector,
+                                SessionFactory sessionFactory) {
+        if (sessionFactory == null) {
+            throw new IllegalArgumentException("session factory must not be null");
+        }
+        this.retryPolicy = new RetryPolicy<>(retryStrategy, transientExceptionDetector);
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Perform the specified unit of work under the defined retry semantics.
+     *
+     * @param callable the unit of work to perform under retry
+     * @return the result of the unit of work
+     * @throws Exception inspect cause to determine reason, or interrupt status
+     */
+    public V action(HibernateCallable<V> callable) throws Exception {
+        return retryPolicy.execute(callable, unitOfWork);
+    }
+
+    /**
+     * Performs a single attempt of a unit of work. One instance serves all
+     * calls, so no wrapper is allocated per call.
+     */
+    private final RetryPolicy.Attempt<HibernateCallable<V>, V> unitOfWork = new RetryPolicy.Attempt<HibernateCallable<V>, V>() {
+        @Override
+        public V attempt(HibernateCallable<V> callable) throws Exception {
+            return transact(callable);
+        }
+    };
+
+    private V transact(HibernateCallable<V> callable) throws Exception {
+        Session session = sessionFactory.openSession();
+        try {
+            Transaction transaction = null;
+            try {
+                transaction = session.beginTransaction();
+                V value = callable.call(session);
+                transaction.commit();
+                return value;
+            } catch (Exception e) {
+                if (transaction != null && transaction.isActive()) {
+                    try {
+                        transaction.rollback();
+                    } catch (RuntimeException re) {
+                        e.addSuppressed(re);
+                    }
+                }
+                try {
+                    session.clear();
+                } catch (RuntimeException re) {
+                    e.addSuppressed(re);
+                }
+                throw e;
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * Sets a circuit breaker consulted before each attempt.
+     *
+     * @param circuitBreaker the circuit breaker, or null for none
+     * @see RetryPolicy#setCircuitBreaker(CircuitBreaker)
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        retryPolicy.setCircuitBreaker(circuitBreaker);
+    }
+
+    /**
+     * Sets a bulkhead limiting the number of units of work performed at once.
+     *
+     * @param bulkhead the bulkhead, or null for none
+     * @see RetryPolicy#setBulkhead(Bulkhead)
+     */
+    public void setBulkhead(Bulkhead bulkhead) {
+        retryPolicy.setBulkhead(bulkhead);
+    }
+
+    /**
+     * Sets a concurrency limiter consulted before each attempt; failures the
+     * detector of this policy finds transient shrink its limit.
+     *
+     * @param concurrencyLimiter the concurrency limiter, or null for none
+     * @see RetryPolicy#setConcurrencyLimiter(ConcurrencyLimiter)
+     */
+    public void setConcurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+        retryPolicy.setConcurrencyLimiter(concurrencyLimiter);
+    }
+
+    /**
+     * Sets the metrics receiving attempt latencies and outcomes of this policy.
+     *
+     * @param retryMetrics the metrics, or null for none
+     * @see RetryPolicy#setRetryMetrics(RetryMetrics)
+     */
+    public void setRetryMetrics(RetryMetrics retryMetrics) {
+        retryPolicy.setRetryMetrics(retryMetrics);
+    }
+
+    /**
+     * Sets the overall time budget of an action.
+     *
+     * @param maxDuration the time budget in milliseconds, or zero for none
+     * @see RetryPolicy#setMaxDuration(long)
+     */
+    public void setMaxDuration(long maxDuration) {
+        retryPolicy.setMaxDuration(maxDuration);
+    }
+
+    /**
+     * Sets the per-attempt timeout; Hibernate and JDBC drivers differ in how
+     * they respond to interrupts, so prefer a query timeout where it suffices.
+     *
+     * @param attemptTimeout the attempt timeout in milliseconds, or zero for none
+     * @see RetryPolicy#setAttemptTimeout(long)
+     */
+    public void setAttemptTimeout(long attemptTimeout) {
+        retryPolicy.setAttemptTimeout(attemptTimeout);
+    }
+
+    public void addRetryEventListener(RetryEventListener rel) {
+        retryPolicy.addRetryEventListener(rel);
+    }
+
+    /**
+     * Gets the underlying retry policy, e.g. to set a retry event dispatcher.
+     *
+     * @return the retry policy
+     */
+    public RetryPolicy<V> getRetryPolicy() {
+        return retryPolicy;
+    }
+}
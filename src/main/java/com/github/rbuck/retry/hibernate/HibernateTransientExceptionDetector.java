@@ -3,7 +3,6 @@ package com.github.rbuck.retry.hibernate;
 import com.github.rbuck.retry.SqlTransientExceptionDetector;
 import org.hibernate.JDBCException;
 import org.hibernate.PessimisticLockException;
-import org.hibernate.exception.GenericJDBCException;
 import org.hibernate.exception.JDBCConnectionException;
 import org.hibernate.exception.LockAcquisitionException;
 
@@ -16,28 +15,47 @@ import org.hibernate.exception.LockAcquisitionException;
  * <li>JDBCConnectionException</li>
  * </ul>
  * <p/>
- * The following types wrap SQLException and delegates detection of transients
+ * The other types wrapping SQLException delegate detection of transients
  * to the super class, SqlTransientExceptionDetector:
  * <ul>
  * <li>GenericJDBCException</li>
+ * <li>any other JDBCException</li>
  * </ul>
+ * <p/>
+ * Hibernate exceptions wrapped by other exceptions, e.g. by a JPA
+ * PersistenceException, are found through the cause chain; SQL exceptions
+ * not wrapped by Hibernate at all are classified by the super class.
  *
  * @author Robert Buck (buck.robert.j@gmail.com)
  */
 public class HibernateTransientExceptionDetector extends SqlTransientExceptionDetector {
 
+    /**
+     * The maximum number of causes inspected; bounds the walk over chains
+     * that are very long or cyclic.
+     */
+    private static final int MAX_DEPTH = 16;
+
     public HibernateTransientExceptionDetector() {
     }
 
     @Override
     public boolean isTransient(Exception e) {
-        if (e instanceof LockAcquisitionException || e instanceof PessimisticLockException || e instanceof JDBCConnectionException) {
-            return true;
-        }
-        if (e instanceof GenericJDBCException) {
-            JDBCException se = (JDBCException) e;
-            return super.isTransient(se.getSQLException());
+        Throwable cause = e;
+        for (int depth = 0; cause != null && depth < MAX_DEPTH; depth++) {
+            if (cause instanceof LockAcquisitionException || cause instanceof PessimisticLockException || cause instanceof JDBCConnectionException) {
+                return true;
+            }
+            if (cause instanceof JDBCException) {
+                JDBCException se = (JDBCException) cause;
+                return se.getSQLException() != null && super.isTransient(se.getSQLException());
+            }
+            Throwable parent = cause;
+            cause = cause.getCause();
+            if (cause == parent) {
+                break;
+            }
         }
-        return false;
+        return super.isTransient(e);
     }
 }
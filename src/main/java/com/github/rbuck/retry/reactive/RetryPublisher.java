@@ -0,0 +1,316 @@
+package com.github.rbuck.retry.reactive;
+
+import com.github.rbuck.retry.RetryEvent;
+import com.github.rbuck.retry.RetryEventDispatcher;
+import com.github.rbuck.retry.RetryEventListener;
+import com.github.rbuck.retry.RetryState;
+import com.github.rbuck.retry.RetryStrategy;
+import com.github.rbuck.retry.SynchronousRetryEventDispatcher;
+import com.github.rbuck.retry.TransientExceptionDetector;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Reactive Streams publisher retrying an upstream publisher: whenever the
+ * upstream signals a transient error, the subscriber is resubscribed to the
+ * upstream after the strategy's delay, until the upstream completes, signals
+ * a non-transient error, or the retries are exhausted.
+ * <p/>
+ * Each subscriber has a retry state of its own. Delays are scheduled on the
+ * executor, no thread blocks while waiting. Demand is preserved across
+ * resubscriptions: a new upstream subscription is asked for the demand the
+ * subscriber signalled but did not receive yet. Like any retry operator, the
+ * subscriber receives again what a cold upstream emitted before it failed.
+ * <p/>
+ * For java.util.concurrent.Flow, on Java 9 and later, adapt with the
+ * FlowAdapters of Reactive Streams:
+ * <pre>
+ * Flow.Publisher&lt;T&gt; retrying = FlowAdapters.toFlowPublisher(new RetryPublisher&lt;&gt;(
+ *     FlowAdapters.toPublisher(flowPublisher), retryStrategy, detector, scheduler));
+ * </pre>
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class RetryPublisher<T> implements Publisher<T> {
+
+    private final Publisher<? extends T> upstream;
+    private final RetryStrategy retryStrategy;
+    private final TransientExceptionDetector transientExceptionDetector;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile RetryEventListener[] retryListeners = new RetryEventListener[0];
+    private volatile RetryEventDispatcher retryEventDispatcher = SynchronousRetryEventDispatcher.INSTANCE;
+
+    /**
+     * Constructs a publisher retrying the upstream publisher.
+     *
+     * @param upstream                   the publisher to retry
+     * @param retryStrategy              the strategy that implements retry
+     * @param transientExceptionDetector the transient error detection algorithm
+     * @param scheduler                  the executor on which resubscriptions are scheduled
+     */
+    public RetryPublisher(Publisher<? extends T> upstream, RetryStrategy retryStrategy,
+                          TransientExceptionDetector transientExceptionDetector, ScheduledExecutorService scheduler) {
+        if (upstream == null || retryStrategy == null || transientExceptionDetector == null || scheduler == null) {
+            throw new IllegalArgumentException("upstream, strategy, detector and scheduler must not be null");
+        }
+        this.upstream = upstream;
+        this.retryStrategy = retryStrategy;
+        this.transientExceptionDetector = transientExceptionDetector;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super T> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber must not be null");
+        }
+        RetrySubscription subscription = new RetrySubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        subscription.run();
+    }
+
+    public synchronized void addRetryEventListener(RetryEventListener rel) {
+        if (rel == null) {
+            throw new IllegalArgumentException("Attempt to set null retry event listener");
+        }
+        RetryEventListener[] old = retryListeners;
+        RetryEventListener[] listeners = new RetryEventListener[old.length + 1];
+        System.arraycopy(old, 0, listeners, 0, old.length);
+        listeners[old.length] = rel;
+        retryListeners = listeners;
+    }
+
+    /**
+     * Sets the dispatcher used to deliver retry events. Unless set, events
+     * are delivered on the thread signalling the upstream error, before the
+     * resubscription is scheduled.
+     *
+     * @param retryEventDispatcher the dispatcher to use
+     */
+    public void setRetryEventDispatcher(RetryEventDispatcher retryEventDispatcher) {
+        if (retryEventDispatcher == null) {
+            throw new IllegalArgumentException("Attempt to set null retry event dispatcher");
+        }
+        this.retryEventDispatcher = retryEventDispatcher;
+    }
+
+    private final RetryEventListener multicaster = new RetryEventListener() {
+        @Override
+        public void onRetry(RetryEvent evt) {
+            for (RetryEventListener listener : retryListeners) {
+                listener.onRetry(evt);
+            }
+        }
+    };
+
+    /**
+     * The subscription of one subscriber, subscribing to the upstream on its
+     * behalf, once at first and again after every transient error. Upstream
+     * signals arrive serially, so only the state shared with request and
+     * cancel, which the subscriber may call from any thread, is guarded. The
+     * error of an invalid request is the one signal originating elsewhere; it
+     * waits for an item in flight, so that signals to the subscriber stay
+     * serial, and only one terminal signal is ever sent.
+     */
+    private final class RetrySubscription implements Subscription, Subscriber<T>, Runnable {
+
+        private final Subscriber<? super T> downstream;
+        private Subscription subscription;
+        private long requested;
+        private ScheduledFuture<?> pending;
+        private volatile boolean cancelled;
+        private boolean emitting;
+        private boolean terminated;
+        private Throwable pendingError;
+        private RetryState retryState;
+
+        RetrySubscription(Subscriber<? super T> downstream) {
+            this.downstream = downstream;
+        }
+
+        /**
+         * Subscribes to the upstream.
+         */
+        @Override
+        public void run() {
+            synchronized (this) {
+                pending = null;
+                if (cancelled) {
+                    return;
+                }
+            }
+            upstream.subscribe(this);
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                if (cancelUpstream()) {
+                    fail(new IllegalArgumentException("non-positive request: " + n));
+                }
+                return;
+            }
+            Subscription current;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+                current = subscription;
+            }
+            // outside the lock, the upstream may emit synchronously
+            if (current != null) {
+                current.request(n);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelUpstream();
+        }
+
+        /**
+         * Cancels the upstream subscription and any pending resubscription.
+         *
+         * @return true if cancelled by this call, false if cancelled before
+         */
+        private boolean cancelUpstream() {
+            Subscription current;
+            ScheduledFuture<?> scheduled;
+            synchronized (this) {
+                if (cancelled) {
+                    return false;
+                }
+                cancelled = true;
+                current = subscription;
+                scheduled = pending;
+                subscription = null;
+                pending = null;
+            }
+            if (current != null) {
+                current.cancel();
+            }
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            return true;
+        }
+
+        /**
+         * Signals the error unless a terminal signal was sent already, once
+         * the item in flight, if any, was delivered.
+         */
+        private void fail(Throwable t) {
+            synchronized (this) {
+                if (terminated) {
+                    return;
+                }
+                terminated = true;
+                if (emitting) {
+                    pendingError = t;
+                    return;
+                }
+            }
+            downstream.onError(t);
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            long demand;
+            synchronized (this) {
+                if (cancelled || subscription != null) {
+                    demand = -1;
+                } else {
+                    subscription = s;
+                    demand = requested;
+                }
+            }
+            if (demand < 0) {
+                s.cancel();
+            } else if (demand > 0) {
+                // demand signalled before, or not met by a failed subscription
+                s.request(demand);
+            }
+        }
+
+        @Override
+        public void onNext(T item) {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                if (requested != Long.MAX_VALUE) {
+                    requested--;
+                }
+                emitting = true;
+            }
+            Throwable error;
+            try {
+                downstream.onNext(item);
+            } finally {
+                synchronized (this) {
+                    emitting = false;
+                    error = pendingError;
+                    pendingError = null;
+                }
+            }
+            if (error != null) {
+                downstream.onError(error);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            synchronized (this) {
+                subscription = null;
+                if (cancelled) {
+                    return;
+                }
+            }
+            if (!(t instanceof Exception) || !transientExceptionDetector.isTransient((Exception) t)) {
+                fail(t);
+                return;
+            }
+            if (retryState == null) {
+                retryState = retryStrategy.getRetryState();
+            }
+            if (retryListeners.length != 0) {
+                retryEventDispatcher.dispatch(new RetryEvent(RetryPublisher.this, retryState, (Exception) t), multicaster);
+            }
+            long delay = retryState.getRetryDelay();
+            if (!retryState.hasRetries()) {
+                fail(t);
+                return;
+            }
+            try {
+                synchronized (this) {
+                    if (!cancelled) {
+                        pending = scheduler.schedule(this, delay, TimeUnit.MILLISECONDS);
+                    }
+                }
+            } catch (RejectedExecutionException e) {
+                t.addSuppressed(e);
+                fail(t);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            synchronized (this) {
+                if (cancelled || terminated) {
+                    return;
+                }
+                terminated = true;
+            }
+            retryStrategy.onSuccess(retryState == null ? 0 : retryState.getRetryCount());
+            downstream.onComplete();
+        }
+    }
+}
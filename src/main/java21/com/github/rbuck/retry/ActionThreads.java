@@ -0,0 +1,25 @@
+package com.github.rbuck.retry;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Supplies the threads actions run on when performed on a thread of their
+ * own. On Java 21 and later every action gets a virtual thread, so retry
+ * delays park the virtual thread rather than holding on to a platform thread.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+final class ActionThreads {
+
+    private static final ExecutorService EXECUTOR =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("retry-action-", 0).factory());
+
+    private ActionThreads() {
+    }
+
+    static Executor executor() {
+        return EXECUTOR;
+    }
+}
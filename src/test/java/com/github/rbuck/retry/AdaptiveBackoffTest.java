@@ -0,0 +1,143 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the AdaptiveBackoff class.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class AdaptiveBackoffTest {
+
+    @Test
+    public void testBounds() {
+        AdaptiveBackoff strategy = new AdaptiveBackoff(10, 5, 1000, 500, 0.5);
+        for (int i = 0; i < 100; i++) {
+            RetryState state = strategy.getRetryState();
+            do {
+                long delay = state.getRetryDelay();
+                Assert.assertTrue("at least min delay", delay >= 5);
+                Assert.assertTrue("at most max delay", delay <= 1000);
+                Assert.assertEquals("stable", delay, state.getRetryDelay());
+            } while (state.hasRetries());
+            Assert.assertEquals("retry count", 10, state.getRetryCount());
+        }
+    }
+
+    @Test
+    public void testIsolatedFailuresRetriedEagerly() {
+        AdaptiveBackoff strategy = new AdaptiveBackoff(10, 5, 30000, 10000, 0.1);
+        for (int i = 0; i < 1000; i++) {
+            strategy.onSuccess(0);
+        }
+        Assert.assertEquals("no failures", 0, strategy.getFailureRate(), 0);
+        RetryState state = strategy.getRetryState();
+        Assert.assertTrue("near min delay", state.getRetryDelay() <= 5 + 0.1 * 10000);
+    }
+
+    @Test
+    public void testOutageSlowsRetries() {
+        AdaptiveBackoff strategy = new AdaptiveBackoff(10, 5, 30000, 10000, 0.1);
+        RetryState state = null;
+        for (int i = 0; i < 100; i++) {
+            state = strategy.getRetryState();
+        }
+        Assert.assertTrue("failure rate", strategy.getFailureRate() > 0.99);
+        Assert.assertTrue("waits for recovery", state.getRetryDelay() >= 10000 / 2);
+        Assert.assertTrue("failures still counted", strategy.getFailureRate() > 0.99);
+        for (int i = 0; i < 100; i++) {
+            strategy.onSuccess(0);
+        }
+        Assert.assertTrue("recovered", strategy.getFailureRate() < 0.01);
+    }
+
+    @Test
+    public void testRecoveryTimeLearned() throws InterruptedException {
+        AdaptiveBackoff strategy = new AdaptiveBackoff(10, 1, 30000, 10000, 1);
+        strategy.getRetryState();
+        Thread.sleep(20);
+        strategy.getRetryState();
+        strategy.onSuccess(1);
+        Assert.assertTrue("recovery time", strategy.getRecoveryTime() >= 20);
+        Assert.assertTrue("recovery time", strategy.getRecoveryTime() < 10000);
+        strategy.onSuccess(0);
+        Assert.assertTrue("outage ended once", strategy.getRecoveryTime() >= 20);
+    }
+
+    @Test
+    public void testAttemptLatencyLearned() throws InterruptedException {
+        AdaptiveBackoff strategy = new AdaptiveBackoff(10, 1, 30000, 0, 1);
+        RetryState state = strategy.getRetryState();
+        long delay = state.getRetryDelay();
+        state.hasRetries();
+        Thread.sleep(delay + 50);
+        state.getRetryDelay();
+        Assert.assertTrue("attempt latency", strategy.getAttemptLatency() >= 40);
+        Assert.assertEquals("sampled once per retry", strategy.getAttemptLatency(), strategy.getAttemptLatency(), 0);
+        RetryState next = strategy.getRetryState();
+        Assert.assertTrue("not faster than an attempt", next.getRetryDelay() >= strategy.getAttemptLatency() / 2);
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws InterruptedException {
+        final AdaptiveBackoff strategy = new AdaptiveBackoff();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            final boolean failing = t % 2 == 0;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        if (failing) {
+                            strategy.getRetryState().getRetryDelay();
+                        } else {
+                            strategy.onSuccess(0);
+                        }
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertTrue("failure rate in range", strategy.getFailureRate() >= 0 && strategy.getFailureRate() <= 1);
+        Assert.assertTrue("recovery time in range", strategy.getRecoveryTime() >= 0);
+    }
+
+    @Test
+    public void testAsyncSuccessesAreNotFailures() throws Exception {
+        AdaptiveBackoff strategy = new AdaptiveBackoff(10, 5, 1000, 500, 0.5);
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(strategy, new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return true;
+            }
+        });
+        Callable<Integer> five = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                return 5;
+            }
+        };
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            for (int i = 0; i < 20; i++) {
+                Assert.assertEquals("result", 5, (int) retryPolicy.actionAsync(five, executor).get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals("failure rate", 0.0, strategy.getFailureRate(), 0.0);
+        Assert.assertEquals("recovery time", 500, strategy.getRecoveryTime(), 0.0);
+    }
+}
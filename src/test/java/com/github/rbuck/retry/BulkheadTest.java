@@ -0,0 +1,158 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the Bulkhead and ThreadPoolBulkhead classes.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class BulkheadTest {
+
+    private static final TransientExceptionDetector DETECTOR = new TransientExceptionDetector() {
+        @Override
+        public boolean isTransient(Exception e) {
+            return e instanceof IllegalArgumentException;
+        }
+    };
+
+    private static Callable<Integer> blocking(final CountDownLatch started, final CountDownLatch finish) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                started.countDown();
+                finish.await();
+                return 1;
+            }
+        };
+    }
+
+    @Test
+    public void testSemaphoreBulkheadQueue() throws Exception {
+        final Bulkhead bulkhead = new Bulkhead(1, 1, 5000);
+        Assert.assertTrue(bulkhead.acquirePermission());
+        Assert.assertEquals(0, bulkhead.getAvailableConcurrentCalls());
+        final CountDownLatch queued = new CountDownLatch(1);
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    queued.countDown();
+                    if (bulkhead.acquirePermission()) {
+                        bulkhead.releasePermission();
+                    }
+                } catch (InterruptedException ignore) {
+                }
+            }
+        });
+        waiter.start();
+        queued.await();
+        while (bulkhead.getQueueDepth() == 0) {
+            Thread.sleep(1);
+        }
+        Assert.assertFalse("queue full", bulkhead.acquirePermission());
+        Assert.assertEquals(1, bulkhead.getRejectedCount());
+        bulkhead.releasePermission();
+        waiter.join();
+        Assert.assertEquals(1, bulkhead.getQueuedCount());
+        Assert.assertEquals(1, bulkhead.getAvailableConcurrentCalls());
+    }
+
+    @Test
+    public void testSemaphoreBulkheadWaitTimeout() throws Exception {
+        Bulkhead bulkhead = new Bulkhead(1, 10, 50);
+        Assert.assertTrue(bulkhead.acquirePermission());
+        long start = System.nanoTime();
+        Assert.assertFalse("timed out", bulkhead.acquirePermission());
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 40);
+        Assert.assertFalse("no wait", bulkhead.tryAcquirePermission());
+        Assert.assertEquals(2, bulkhead.getRejectedCount());
+    }
+
+    @Test
+    public void testRetryPolicyRejectsWhenFull() throws Exception {
+        final RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(3, 0), DETECTOR);
+        Bulkhead bulkhead = new Bulkhead(1, 0, 0);
+        retryPolicy.setBulkhead(bulkhead);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<Integer> first = retryPolicy.actionAsync(blocking(started, finish));
+        started.await();
+        try {
+            retryPolicy.action(blocking(new CountDownLatch(1), new CountDownLatch(0)));
+            Assert.fail("expected rejection");
+        } catch (BulkheadFullException expected) {
+            // saturated
+        }
+        finish.countDown();
+        Assert.assertEquals(1, (int) first.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals("permission released", 1, bulkhead.getAvailableConcurrentCalls());
+    }
+
+    @Test
+    public void testThreadPoolBulkhead() throws Exception {
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(3, 0), DETECTOR);
+        ThreadPoolBulkhead bulkhead = new ThreadPoolBulkhead(1, 1, 0);
+        retryPolicy.setThreadPoolBulkhead(bulkhead);
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch finish = new CountDownLatch(1);
+            CompletableFuture<Integer> running = retryPolicy.actionAsync(blocking(started, finish));
+            started.await();
+            CompletableFuture<Integer> queued = retryPolicy.actionAsync(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    Assert.assertTrue(Thread.currentThread().getName().startsWith("retry-bulkhead-"));
+                    return 2;
+                }
+            });
+            Assert.assertEquals(1, bulkhead.getQueueDepth());
+            CompletableFuture<Integer> rejected = retryPolicy.actionAsync(blocking(new CountDownLatch(1), finish));
+            try {
+                rejected.get(5, TimeUnit.SECONDS);
+                Assert.fail("expected rejection");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof BulkheadFullException);
+            }
+            Assert.assertEquals(1, bulkhead.getRejectedCount());
+            finish.countDown();
+            Assert.assertEquals(1, (int) running.get(5, TimeUnit.SECONDS));
+            Assert.assertEquals(2, (int) queued.get(5, TimeUnit.SECONDS));
+        } finally {
+            bulkhead.shutdown();
+        }
+    }
+
+    @Test
+    public void testThreadPoolBulkheadQueueTimeout() throws Exception {
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(3, 0), DETECTOR);
+        ThreadPoolBulkhead bulkhead = new ThreadPoolBulkhead(1, 10, 50);
+        retryPolicy.setThreadPoolBulkhead(bulkhead);
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch finish = new CountDownLatch(1);
+            CompletableFuture<Integer> running = retryPolicy.actionAsync(blocking(started, finish));
+            started.await();
+            CompletableFuture<Integer> queued = retryPolicy.actionAsync(blocking(new CountDownLatch(1), finish));
+            Thread.sleep(100);
+            finish.countDown();
+            Assert.assertEquals(1, (int) running.get(5, TimeUnit.SECONDS));
+            try {
+                queued.get(5, TimeUnit.SECONDS);
+                Assert.fail("expected queue timeout");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof BulkheadFullException);
+            }
+            Assert.assertEquals(1, bulkhead.getQueueTimeoutCount());
+        } finally {
+            bulkhead.shutdown();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Tests the CachingTransientExceptionDetector class.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class CachingTransientExceptionDetectorTest {
+
+    private static class CountingDetector implements TransientExceptionDetector {
+
+        private final TransientExceptionDetector detector;
+        private int calls;
+
+        CountingDetector(TransientExceptionDetector detector) {
+            this.detector = detector;
+        }
+
+        @Override
+        public boolean isTransient(Exception e) {
+            calls++;
+            return detector.isTransient(e);
+        }
+    }
+
+    @Test
+    public void testSameShapeClassifiedOnce() {
+        CountingDetector counting = new CountingDetector(new SqlTransientExceptionDetector());
+        CachingTransientExceptionDetector detector = new CachingTransientExceptionDetector(counting);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue("rollback", detector.isTransient(new SQLException("deadlock " + i, "40001")));
+            Assert.assertFalse("syntax", detector.isTransient(new SQLException("syntax " + i, "42000", 1064)));
+        }
+        Assert.assertEquals("classifications", 2, counting.calls);
+    }
+
+    @Test
+    public void testShapeIncludesCauseChain() {
+        CountingDetector counting = new CountingDetector(new SqlTransientExceptionDetector());
+        CachingTransientExceptionDetector detector = new CachingTransientExceptionDetector(counting);
+        Assert.assertFalse("plain", detector.isTransient(new RuntimeException("plain")));
+        Assert.assertTrue("wrapped rollback", detector.isTransient(new RuntimeException(new SQLException("deadlock", "40001"))));
+        Assert.assertFalse("wrapped syntax", detector.isTransient(new RuntimeException(new SQLException("syntax", "42000"))));
+        Assert.assertTrue("other vendor code", detector.isTransient(new SQLException("deadlock", "40001", 1)));
+        Assert.assertTrue("other wrapper", detector.isTransient(new ExecutionException(new SQLException("deadlock", "40001"))));
+        Assert.assertEquals("classifications", 5, counting.calls);
+        Assert.assertTrue("wrapped rollback", detector.isTransient(new RuntimeException(new SQLException("deadlock", "40001"))));
+        Assert.assertEquals("cached", 5, counting.calls);
+    }
+
+    @Test
+    public void testUncachedRules() {
+        CountingDetector counting = new CountingDetector(new SqlTransientExceptionDetector());
+        CachingTransientExceptionDetector detector = new CachingTransientExceptionDetector(counting);
+        detector.addUncachedType(IllegalStateException.class);
+        detector.addUncachedSqlState("57P01");
+        for (int i = 0; i < 3; i++) {
+            detector.isTransient(new RuntimeException(new IllegalStateException("by message")));
+            detector.isTransient(new SQLException("admin shutdown", "57P01"));
+        }
+        Assert.assertEquals("classifications", 6, counting.calls);
+    }
+
+    @Test
+    public void testDuplicatesByMessageNotCached() {
+        CachingTransientExceptionDetector detector = new CachingTransientExceptionDetector(new SqlTransientExceptionDetector());
+        Assert.assertTrue("duplicate by message", detector.isTransient(new SQLException("duplicate value in unique index", "23000")));
+        Assert.assertFalse("other constraint", detector.isTransient(new SQLException("foreign key violated", "23000")));
+    }
+
+    @Test
+    public void testNextExceptionsNotCached() {
+        CountingDetector counting = new CountingDetector(new SqlTransientExceptionDetector());
+        CachingTransientExceptionDetector detector = new CachingTransientExceptionDetector(counting);
+        for (int i = 0; i < 3; i++) {
+            SQLException batch = new SQLException("batch failed", "42000");
+            batch.setNextException(new SQLException("deadlock", "40001"));
+            Assert.assertTrue("next exception", detector.isTransient(batch));
+        }
+        Assert.assertEquals("classifications", 3, counting.calls);
+    }
+
+    @Test
+    public void testEviction() {
+        CountingDetector counting = new CountingDetector(new SqlTransientExceptionDetector());
+        CachingTransientExceptionDetector detector = new CachingTransientExceptionDetector(counting, 1);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue("rollback", detector.isTransient(new SQLException("deadlock", "40001")));
+            Assert.assertFalse("syntax", detector.isTransient(new SQLException("syntax", "42000")));
+        }
+        Assert.assertEquals("evicted", 6, counting.calls);
+        detector.clear();
+        Assert.assertTrue("rollback", detector.isTransient(new SQLException("deadlock", "40001")));
+        Assert.assertEquals("cleared", 7, counting.calls);
+    }
+
+    @Test
+    public void testDialectDetectorCachedOnceDetected() throws SQLException {
+        final DatabaseMetaData metaData = (DatabaseMetaData) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{DatabaseMetaData.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("getDatabaseProductName")) {
+                            return "PostgreSQL";
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        final Connection connection = new MockConnection(MockConnection.ExceptionType.Nothing) {
+            @Override
+            public DatabaseMetaData getMetaData() throws SQLException {
+                return metaData;
+            }
+        };
+        SqlDialectDetector dialectDetector = new SqlDialectDetector(new SqlTransactionContext() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return connection;
+            }
+        });
+        CachingTransientExceptionDetector detector = new CachingTransientExceptionDetector(dialectDetector);
+        Assert.assertSame("unwrapped", dialectDetector, SqlDialectDetector.of(detector));
+        SQLException shutdown = new SQLException("terminating connection due to administrator command", "57P01");
+        Assert.assertFalse("generic rules", detector.isTransient(shutdown));
+        dialectDetector.detect(connection);
+        Assert.assertTrue("dialect rules", detector.isTransient(shutdown));
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the CircuitBreaker class.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class CircuitBreakerTest {
+
+    @Test
+    public void testOpensAtFailureRateThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker(50, 10, 4, 60000, 1);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(breaker.tryAcquirePermission());
+            breaker.onFailure();
+        }
+        Assert.assertEquals("too few calls", CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertTrue(breaker.tryAcquirePermission());
+        breaker.onSuccess();
+        Assert.assertEquals("failure rate", 75, breaker.getFailureRate());
+        Assert.assertTrue(breaker.tryAcquirePermission());
+        breaker.onFailure();
+        Assert.assertEquals("opened", CircuitBreaker.State.OPEN, breaker.getState());
+        Assert.assertFalse("fails fast", breaker.tryAcquirePermission());
+    }
+
+    @Test
+    public void testSlidingWindowEvictsOldest() {
+        CircuitBreaker breaker = new CircuitBreaker(60, 4, 4, 60000, 1);
+        breaker.onFailure();
+        breaker.onFailure();
+        for (int i = 0; i < 4; i++) {
+            breaker.onSuccess();
+        }
+        Assert.assertEquals("failures evicted", 0, breaker.getFailureRate());
+        breaker.onFailure();
+        breaker.onFailure();
+        Assert.assertEquals("still closed", CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onFailure();
+        Assert.assertEquals("opened", CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenProbes() throws Exception {
+        final List<String> transitions = new ArrayList<>();
+        CircuitBreaker breaker = new CircuitBreaker(50, 2, 2, 50, 2);
+        breaker.addCircuitBreakerEventListener(new CircuitBreakerEventListener() {
+            @Override
+            public void onStateChange(CircuitBreakerEvent evt) {
+                transitions.add(evt.getFromState() + "->" + evt.getToState());
+            }
+        });
+        breaker.onFailure();
+        breaker.onFailure();
+        Assert.assertFalse(breaker.tryAcquirePermission());
+        Thread.sleep(100);
+        Assert.assertTrue("first probe", breaker.tryAcquirePermission());
+        Assert.assertTrue("second probe", breaker.tryAcquirePermission());
+        Assert.assertFalse("probes limited", breaker.tryAcquirePermission());
+        breaker.onSuccess();
+        Assert.assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onFailure();
+        Assert.assertEquals("probe failure reopens", CircuitBreaker.State.OPEN, breaker.getState());
+        Thread.sleep(100);
+        Assert.assertTrue(breaker.tryAcquirePermission());
+        Assert.assertTrue(breaker.tryAcquirePermission());
+        breaker.onIgnored();
+        Assert.assertTrue("ignored probe released", breaker.tryAcquirePermission());
+        breaker.onSuccess();
+        breaker.onSuccess();
+        Assert.assertEquals("probes succeeded", CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertEquals("[CLOSED->OPEN, OPEN->HALF_OPEN, HALF_OPEN->OPEN, OPEN->HALF_OPEN, HALF_OPEN->CLOSED]", transitions.toString());
+    }
+
+    @Test
+    public void testRetryPolicyFailsFast() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return e instanceof IllegalArgumentException;
+            }
+        };
+        final AtomicInteger attempts = new AtomicInteger();
+        Callable<Integer> failing = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                attempts.incrementAndGet();
+                throw new IllegalArgumentException();
+            }
+        };
+        CircuitBreaker breaker = new CircuitBreaker(50, 10, 3, 60000, 1);
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(10, 0), detector);
+        retryPolicy.setCircuitBreaker(breaker);
+        try {
+            retryPolicy.action(failing);
+            Assert.fail("expected failure");
+        } catch (CircuitBreakerOpenException e) {
+            Assert.assertTrue("cause is last failure", e.getCause() instanceof IllegalArgumentException);
+        }
+        Assert.assertEquals("attempts until open", 3, attempts.get());
+        try {
+            retryPolicy.action(failing);
+            Assert.fail("expected failure");
+        } catch (CircuitBreakerOpenException e) {
+            Assert.assertNull("no attempt made", e.getCause());
+        }
+        Assert.assertEquals("no further attempts", 3, attempts.get());
+    }
+
+    @Test
+    public void testAsyncRetryPolicyFailsFast() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return e instanceof IllegalArgumentException;
+            }
+        };
+        final AtomicInteger attempts = new AtomicInteger();
+        CircuitBreaker breaker = new CircuitBreaker(50, 10, 1, 60000, 1);
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(3, 10000), detector);
+        retryPolicy.setCircuitBreaker(breaker);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            CompletableFuture<Integer> future = retryPolicy.actionAsync(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    attempts.incrementAndGet();
+                    throw new IllegalArgumentException();
+                }
+            }, executor);
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                Assert.fail("expected failure");
+            } catch (ExecutionException e) {
+                Assert.assertTrue("not delayed", e.getCause() instanceof CircuitBreakerOpenException);
+                Assert.assertTrue("cause is last failure", e.getCause().getCause() instanceof IllegalArgumentException);
+            }
+            Assert.assertEquals("attempts until open", 1, attempts.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testNonTransientCountsAsSuccess() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return false;
+            }
+        };
+        CircuitBreaker breaker = new CircuitBreaker(50, 10, 1, 60000, 1);
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(10, 0), detector);
+        retryPolicy.setCircuitBreaker(breaker);
+        for (int i = 0; i < 5; i++) {
+            try {
+                retryPolicy.action(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        throw new IllegalStateException();
+                    }
+                });
+            } catch (IllegalStateException ignore) {
+            }
+        }
+        Assert.assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        Assert.assertEquals(0, breaker.getFailureRate());
+    }
+}
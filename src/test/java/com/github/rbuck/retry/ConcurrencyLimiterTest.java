@@ -0,0 +1,212 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the ConcurrencyLimiter class.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class ConcurrencyLimiterTest {
+
+    @Test
+    public void testLimitsInFlight() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 10, 0.5, 2.0);
+        Assert.assertTrue(limiter.acquire());
+        Assert.assertTrue(limiter.acquire());
+        Assert.assertFalse("limit reached", limiter.acquire());
+        Assert.assertEquals(1, limiter.getRejectedCount());
+        limiter.onIgnored();
+        Assert.assertEquals(1, limiter.getInFlight());
+        Assert.assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testAdditiveIncreaseMultiplicativeDecrease() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1, 10, 0.5, 2.0);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(limiter.acquire());
+        }
+        for (int i = 0; i < 6; i++) {
+            limiter.onSuccess(1000);
+            Assert.assertTrue(limiter.tryAcquire());
+        }
+        Assert.assertEquals("about one per round of calls", 5, limiter.getLimit());
+        for (int i = 0; i < 4; i++) {
+            limiter.onIgnored();
+        }
+        limiter.tryAcquire();
+        limiter.onDropped();
+        Assert.assertEquals("halved", 2, limiter.getLimit());
+        limiter.tryAcquire();
+        limiter.onDropped();
+        limiter.tryAcquire();
+        limiter.onDropped();
+        Assert.assertEquals("never below min", 1, limiter.getLimit());
+    }
+
+    @Test
+    public void testSlowAttemptsShrinkLimit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 1, 10, 0.5, 2.0);
+        limiter.tryAcquire();
+        limiter.onSuccess(1000);
+        Assert.assertEquals("unused limit does not grow", 8, limiter.getLimit());
+        limiter.tryAcquire();
+        limiter.onSuccess(1500);
+        Assert.assertEquals("within tolerance", 8, limiter.getLimit());
+        limiter.tryAcquire();
+        limiter.onSuccess(5000);
+        Assert.assertEquals("congested", 4, limiter.getLimit());
+    }
+
+    @Test
+    public void testRttBaseline() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 0.5, 2.0);
+        Assert.assertEquals("no baseline yet", 0, limiter.getRttBaseline());
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess(1000);
+        }
+        Assert.assertEquals("steady", 1000, limiter.getRttBaseline());
+        limiter.tryAcquire();
+        limiter.onSuccess(1000000);
+        Assert.assertTrue("outlier clipped", limiter.getRttBaseline() < 1010);
+        for (int i = 0; i < 1000; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess(3000);
+        }
+        Assert.assertTrue("permanent change followed", limiter.getRttBaseline() > 1500);
+    }
+
+    @Test
+    public void testWaitsForPermit() throws Exception {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 0.5, 2.0);
+        limiter.setMaxWait(5000);
+        Assert.assertTrue(limiter.acquire());
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignore) {
+                }
+                limiter.onIgnored();
+            }
+        }).start();
+        long start = System.nanoTime();
+        Assert.assertTrue("acquired once released", limiter.acquire());
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        limiter.setMaxWait(50);
+        Assert.assertFalse("timed out", limiter.acquire());
+    }
+
+    @Test
+    public void testRetryPolicyRejectsExcess() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return false;
+            }
+        };
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 0.5, 2.0);
+        final RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(3, 0), detector);
+        retryPolicy.setConcurrencyLimiter(limiter);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        Thread blocker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    retryPolicy.action(new Callable<Integer>() {
+                        @Override
+                        public Integer call() throws Exception {
+                            started.countDown();
+                            finish.await();
+                            return 1;
+                        }
+                    });
+                } catch (Exception ignore) {
+                }
+            }
+        });
+        blocker.start();
+        started.await();
+        try {
+            retryPolicy.action(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return 2;
+                }
+            });
+            Assert.fail("expected rejection");
+        } catch (ConcurrencyLimitExceededException expected) {
+            Assert.assertNull(expected.getCause());
+        }
+        finish.countDown();
+        blocker.join();
+        Assert.assertEquals("permit released", 0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testSqlTransientsShrinkLimit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(16, 1, 16, 0.5, 2.0);
+        SqlRetryPolicy<Integer> retryPolicy = new SqlRetryPolicy<>(new FixedInterval(2, 0), new SqlTransactionContext() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return new MockConnection(MockConnection.ExceptionType.Nothing);
+            }
+        });
+        retryPolicy.setConcurrencyLimiter(limiter);
+        try {
+            retryPolicy.action(new SqlCallable<Integer>() {
+                @Override
+                public Integer call(Connection connection) throws SQLException {
+                    throw new SQLTransactionRollbackException("deadlock", "40001");
+                }
+            });
+            Assert.fail("expected failure");
+        } catch (SQLTransactionRollbackException expected) {
+            // retries exhausted
+        }
+        Assert.assertEquals("halved per transient attempt", 2, limiter.getLimit());
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testFailuresClassifiedOnce() throws Exception {
+        final AtomicInteger classifications = new AtomicInteger();
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                classifications.incrementAndGet();
+                return e instanceof IllegalArgumentException;
+            }
+        };
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(16, 1, 16, 0.5, 2.0);
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(2, 0), detector);
+        retryPolicy.setConcurrencyLimiter(limiter);
+        try {
+            retryPolicy.action(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    throw new IllegalArgumentException();
+                }
+            });
+            Assert.fail("expected failure");
+        } catch (IllegalArgumentException expected) {
+            // retries exhausted
+        }
+        Assert.assertEquals("one classification per attempt", 3, classifications.get());
+        Assert.assertEquals("halved per transient attempt", 2, limiter.getLimit());
+        Assert.assertEquals(0, limiter.getInFlight());
+    }
+}
@@ -0,0 +1,78 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Tests the ExponentialBackoff class.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class ExponentialBackoffTest {
+
+    private static long[] delays(RetryStrategy strategy) {
+        RetryState state = strategy.getRetryState();
+        long[] delays = new long[10];
+        for (int i = 0; state.hasRetries(); i++) {
+            delays[i] = state.getRetryDelay();
+        }
+        return delays;
+    }
+
+    @Test
+    public void testSeededIsReproducible() {
+        long[] first = delays(new ExponentialBackoff(10, 0, Long.MAX_VALUE, 1, 42L));
+        long[] second = delays(new ExponentialBackoff(10, 0, Long.MAX_VALUE, 1, 42L));
+        Assert.assertArrayEquals("same seed, same delays", first, second);
+    }
+
+    @Test
+    public void testUnseededIsNotDeterministic() {
+        long[] first = delays(new ExponentialBackoff(10, 0, Long.MAX_VALUE, 1));
+        long[] second = delays(new ExponentialBackoff(10, 0, Long.MAX_VALUE, 1));
+        Assert.assertFalse("distinct delays: " + Arrays.toString(first), Arrays.equals(first, second));
+    }
+
+    @Test
+    public void testDelayBounds() {
+        RetryState state = new ExponentialBackoff(10, 100, 5000, 10).getRetryState();
+        Assert.assertEquals("no delay before first retry", 0, state.getRetryDelay());
+        while (state.hasRetries()) {
+            long delay = state.getRetryDelay();
+            Assert.assertTrue("at least min backoff", delay >= 100);
+            Assert.assertTrue("at most max backoff", delay <= 5000);
+            Assert.assertTrue("within contention window", delay < 100 + (2L << Math.min(state.getRetryCount(), 9)) * 10);
+        }
+    }
+
+    @Test
+    public void testConcurrentStates() throws Exception {
+        final ExponentialBackoff strategy = new ExponentialBackoff(10, 0, Long.MAX_VALUE, 1);
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < 10000; i++) {
+                            RetryState state = strategy.getRetryState();
+                            while (state.hasRetries()) {
+                                Assert.assertTrue(state.getRetryDelay() >= 0);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertNull("no failures", failure[0]);
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the InMemoryRetryMetrics class.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class InMemoryRetryMetricsTest {
+
+    private static final TransientExceptionDetector DETECTOR = new TransientExceptionDetector() {
+        @Override
+        public boolean isTransient(Exception e) {
+            return e instanceof IllegalArgumentException;
+        }
+    };
+
+    private static Callable<Integer> failing(final int failures, final Exception failure) {
+        final AtomicInteger attempts = new AtomicInteger();
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                if (attempts.incrementAndGet() <= failures) {
+                    throw failure;
+                }
+                return attempts.get();
+            }
+        };
+    }
+
+    @Test
+    public void testOutcomes() throws Exception {
+        InMemoryRetryMetrics metrics = new InMemoryRetryMetrics();
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(2, 5), DETECTOR);
+        retryPolicy.setRetryMetrics(metrics);
+
+        Assert.assertEquals(Integer.valueOf(1), retryPolicy.action(failing(0, null)));
+        Assert.assertEquals(Integer.valueOf(3), retryPolicy.action(failing(2, new IllegalArgumentException())));
+        try {
+            retryPolicy.action(failing(3, new IllegalArgumentException()));
+            Assert.fail("expected exhausted retries");
+        } catch (IllegalArgumentException ignore) {
+        }
+        try {
+            retryPolicy.action(failing(1, new IllegalStateException()));
+            Assert.fail("expected non-transient failure");
+        } catch (IllegalStateException ignore) {
+        }
+
+        Assert.assertEquals("attempts", 1 + 3 + 3 + 1, metrics.getAttempts());
+        Assert.assertEquals("successes", 2, metrics.getSuccesses());
+        Assert.assertEquals("first try successes", 1, metrics.getFirstTrySuccesses());
+        Assert.assertEquals("retried successes", 1, metrics.getRetriedSuccesses());
+        Assert.assertEquals("retries exhausted", 1, metrics.getRetriesExhausted());
+        Assert.assertEquals("non-transient failures", 1, metrics.getNonTransientFailures());
+        Assert.assertEquals("latencies recorded", 8, metrics.getAttemptLatency().getTotalCount());
+        Assert.assertTrue("backoff measured", metrics.getBackoffTime(TimeUnit.MILLISECONDS) >= 4 * 5);
+    }
+
+    @Test
+    public void testSqlRetryPolicyDelegates() throws Exception {
+        InMemoryRetryMetrics metrics = new RetryMetricsRegistry().metrics("test");
+        SqlRetryPolicy<Integer> retryPolicy = new SqlRetryPolicy<>(new FixedInterval(2, 0), new SqlTransactionContext() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return new MockConnection(MockConnection.ExceptionType.Nothing);
+            }
+        });
+        retryPolicy.setRetryMetrics(metrics);
+        retryPolicy.action(new SqlCallable<Integer>() {
+            @Override
+            public Integer call(Connection connection) throws SQLException {
+                return 1;
+            }
+        });
+        Assert.assertEquals(1, metrics.getFirstTrySuccesses());
+    }
+
+    @Test
+    public void testRegistryReturnsSameMetrics() {
+        RetryMetricsRegistry registry = new RetryMetricsRegistry();
+        Assert.assertSame(registry.metrics("a"), registry.metrics("a"));
+        Assert.assertNotSame(registry.metrics("a"), registry.metrics("b"));
+        Assert.assertEquals(2, registry.getMetrics().size());
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+        for (long i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000);
+        }
+        Assert.assertEquals(10000, histogram.getTotalCount());
+        Assert.assertEquals(10000000, histogram.getMax());
+        Assert.assertEquals(5000500, histogram.getMean(), 0.001);
+        assertWithinPrecision(5000000, histogram.getValueAtPercentile(50));
+        assertWithinPrecision(9900000, histogram.getValueAtPercentile(99));
+        Assert.assertEquals(10000000, histogram.getValueAtPercentile(100));
+        histogram.record(Long.MAX_VALUE);
+        Assert.assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(100));
+        histogram.record(7);
+        Assert.assertEquals(7, histogram.getValueAtPercentile(0));
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        Assert.assertTrue("expected " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 32);
+    }
+}
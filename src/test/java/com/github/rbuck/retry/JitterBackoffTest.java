@@ -0,0 +1,77 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Tests the FullJitter, EqualJitter and DecorrelatedJitter classes.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class JitterBackoffTest {
+
+    @Test
+    public void testFullJitterBounds() {
+        for (int i = 0; i < 1000; i++) {
+            RetryState state = new FullJitter(10, 5, 10, 1000).getRetryState();
+            do {
+                long ceiling = Math.min(1000, 10L << state.getRetryCount());
+                long delay = state.getRetryDelay();
+                Assert.assertTrue("at least min delay", delay >= 5);
+                Assert.assertTrue("at most ceiling", delay <= ceiling);
+                Assert.assertEquals("stable", delay, state.getRetryDelay());
+            } while (state.hasRetries());
+            Assert.assertEquals("retry count", 10, state.getRetryCount());
+        }
+    }
+
+    @Test
+    public void testEqualJitterBounds() {
+        for (int i = 0; i < 1000; i++) {
+            RetryState state = new EqualJitter(10, 10, 1000).getRetryState();
+            do {
+                long ceiling = Math.min(1000, 10L << state.getRetryCount());
+                long delay = state.getRetryDelay();
+                Assert.assertTrue("at least half ceiling", delay >= ceiling / 2);
+                Assert.assertTrue("at most ceiling", delay <= ceiling);
+            } while (state.hasRetries());
+        }
+    }
+
+    @Test
+    public void testDecorrelatedJitterBounds() {
+        for (int i = 0; i < 1000; i++) {
+            RetryState state = new DecorrelatedJitter(10, 10, 1000).getRetryState();
+            long previous = 10;
+            do {
+                long delay = state.getRetryDelay();
+                Assert.assertTrue("at least base delay", delay >= 10);
+                Assert.assertTrue("at most three times previous", delay <= previous * 3);
+                Assert.assertTrue("at most max delay", delay <= 1000);
+                previous = delay;
+            } while (state.hasRetries());
+        }
+    }
+
+    @Test
+    public void testJitterSpreadsDelays() {
+        Set<Long> delays = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            RetryState state = new FullJitter(10, 100, 100000).getRetryState();
+            state.hasRetries();
+            state.hasRetries();
+            delays.add(state.getRetryDelay());
+        }
+        Assert.assertTrue("delays are spread", delays.size() > 10);
+    }
+
+    @Test
+    public void testExponentialDelayOverflow() {
+        Assert.assertEquals("truncated", Long.MAX_VALUE, RetryState.RetryStateCommon.exponentialDelay(Long.MAX_VALUE / 2, 100, Long.MAX_VALUE));
+        Assert.assertEquals("truncated", 1000, RetryState.RetryStateCommon.exponentialDelay(10, 40, 1000));
+        Assert.assertEquals("exponential", 80, RetryState.RetryStateCommon.exponentialDelay(10, 3, 1000));
+    }
+}
@@ -19,7 +19,9 @@ public class MockConnection implements Connection {
         ConnectionLost,
         StaleConnection,
         Interrupted,
-        Rollback
+        Rollback,
+        IntegrityViolation,
+        AdminShutdown
     }
 
     public MockConnection(ExceptionType exceptionType) throws SQLException {
@@ -71,6 +73,12 @@ public class MockConnection implements Connection {
         if (exceptionType == ExceptionType.StaleConnection) {
             throw new SQLException("stale connection", "08nnn");
         }
+        if (exceptionType == ExceptionType.IntegrityViolation) {
+            throw new SQLException("integrity constraint violation", "23503");
+        }
+        if (exceptionType == ExceptionType.AdminShutdown) {
+            throw new SQLException("terminating connection due to administrator command", "57P01");
+        }
     }
 
     @Override
@@ -0,0 +1,140 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the RetryBudget and BudgetedRetryStrategy classes.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class RetryBudgetTest {
+
+    @Test
+    public void testInitialTokens() {
+        RetryBudget budget = new RetryBudget(10, 3, 100);
+        Assert.assertEquals(3, budget.getAvailableRetries());
+        Assert.assertTrue(budget.tryWithdraw());
+        Assert.assertTrue(budget.tryWithdraw());
+        Assert.assertTrue(budget.tryWithdraw());
+        Assert.assertFalse("budget exhausted", budget.tryWithdraw());
+    }
+
+    @Test
+    public void testRetryPercent() {
+        RetryBudget budget = new RetryBudget(20, 0, 100);
+        for (int i = 0; i < 50; i++) {
+            budget.deposit();
+        }
+        int retries = 0;
+        while (budget.tryWithdraw()) {
+            retries++;
+        }
+        Assert.assertEquals("20% of 50 calls", 10, retries);
+    }
+
+    @Test
+    public void testMaxTokens() {
+        RetryBudget budget = new RetryBudget(100, 0, 5);
+        for (int i = 0; i < 1000; i++) {
+            budget.deposit();
+        }
+        Assert.assertEquals("capped", 5, budget.getAvailableRetries());
+    }
+
+    @Test
+    public void testConcurrentDepositsAndWithdrawals() throws Exception {
+        final RetryBudget budget = new RetryBudget(50, 0, 1000000);
+        final AtomicInteger withdrawn = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        budget.deposit();
+                        budget.deposit();
+                        if (budget.tryWithdraw()) {
+                            withdrawn.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals("tokens conserved", 80000, withdrawn.get() + budget.getAvailableRetries());
+    }
+
+    @Test
+    public void testBudgetedRetryStrategy() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return true;
+            }
+        };
+        RetryBudget budget = new RetryBudget(50, 2, 100);
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new BudgetedRetryStrategy(new FixedInterval(10, 0), budget), detector);
+        final AtomicInteger attempts = new AtomicInteger();
+        Callable<Integer> failing = new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                attempts.incrementAndGet();
+                throw new IllegalArgumentException();
+            }
+        };
+        try {
+            retryPolicy.action(failing);
+            Assert.fail("expected failure");
+        } catch (IllegalArgumentException ignore) {
+        }
+        Assert.assertEquals("initial budget spent", 3, attempts.get());
+        for (int i = 0; i < 4; i++) {
+            Assert.assertEquals(5, (int) retryPolicy.action(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return 5;
+                }
+            }));
+        }
+        attempts.set(0);
+        try {
+            retryPolicy.action(failing);
+            Assert.fail("expected failure");
+        } catch (IllegalArgumentException ignore) {
+        }
+        Assert.assertEquals("successes earned two retries", 3, attempts.get());
+    }
+
+    @Test
+    public void testRefusedRetryNotDelayed() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return true;
+            }
+        };
+        RetryBudget budget = new RetryBudget(10, 0, 100);
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new BudgetedRetryStrategy(new FixedInterval(3, 10000), budget), detector);
+        long start = System.nanoTime();
+        try {
+            retryPolicy.action(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    throw new IllegalArgumentException();
+                }
+            });
+            Assert.fail("expected failure");
+        } catch (IllegalArgumentException ignore) {
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertTrue("failed without waiting out the delay: " + elapsed, elapsed < 5000);
+    }
+}
@@ -8,7 +8,17 @@ import org.junit.rules.TestRule;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Tests the RetryPolicy class.
@@ -17,6 +27,21 @@ import java.util.concurrent.Callable;
  */
 public class RetryPolicyTest {
 
+    /**
+     * Delivers events on the retrying thread, so listeners see each event
+     * before the next attempt.
+     */
+    private static final RetryEventDispatcher DIRECT = new RetryEventDispatcher() {
+        @Override
+        public void dispatch(RetryEvent evt, RetryEventListener listener) {
+            listener.onRetry(evt);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    };
+
     private int retryCount = 0;
     private int eventCount = 0;
 
@@ -60,6 +85,7 @@ public class RetryPolicyTest {
             }
         };
         RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new ExponentialBackoff(3), detector);
+        retryPolicy.setRetryEventDispatcher(DIRECT);
         retryPolicy.addRetryEventListener(retryEventListener);
         boolean thrown = false;
         try {
@@ -94,6 +120,7 @@ public class RetryPolicyTest {
             }
         };
         RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new Incremental(3, 0, 100), detector);
+        retryPolicy.setRetryEventDispatcher(DIRECT);
         retryPolicy.addRetryEventListener(retryEventListener);
         boolean thrown = false;
         try {
@@ -127,6 +154,7 @@ public class RetryPolicyTest {
             }
         };
         RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(3, 100), detector);
+        retryPolicy.setRetryEventDispatcher(DIRECT);
         retryPolicy.addRetryEventListener(retryEventListener);
         boolean thrown = false;
         try {
@@ -165,6 +193,7 @@ public class RetryPolicyTest {
             }
         };
         RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(1, 10), detector);
+        retryPolicy.setRetryEventDispatcher(DIRECT);
         retryPolicy.addRetryEventListener(retryEventListener);
         boolean thrown = false;
         try {
@@ -199,6 +228,7 @@ public class RetryPolicyTest {
             }
         };
         RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(2, 10), detector);
+        retryPolicy.setRetryEventDispatcher(DIRECT);
         retryPolicy.addRetryEventListener(retryEventListener);
         boolean thrown = false;
         int result = 0;
@@ -239,6 +269,7 @@ public class RetryPolicyTest {
             }
         };
         RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(3, 100), detector);
+        retryPolicy.setRetryEventDispatcher(DIRECT);
         retryPolicy.addRetryEventListener(retryEventListener);
 
         for (int i = 0; i < 10; i++) {
@@ -255,4 +286,388 @@ public class RetryPolicyTest {
         Assert.assertEquals("event count", 40, eventCount);
         Assert.assertEquals("retry count", 3, retryCount);
     }
+
+    @Test
+    public void testAsyncTransientExceptionAndReturn() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return e instanceof IllegalArgumentException;
+            }
+        };
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final AtomicInteger attempts = new AtomicInteger();
+            RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(3, 10), detector);
+            CompletableFuture<Integer> future = retryPolicy.actionAsync(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    if (attempts.incrementAndGet() < 3) {
+                        throw new IllegalArgumentException();
+                    }
+                    return 5;
+                }
+            }, executor);
+            Assert.assertEquals("retry result", 5, (int) future.get(5, TimeUnit.SECONDS));
+            Assert.assertEquals("attempts", 3, attempts.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsyncRetriesExhausted() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return e instanceof IllegalArgumentException;
+            }
+        };
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final AtomicInteger attempts = new AtomicInteger();
+            RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(3, 10), detector);
+            CompletableFuture<Integer> future = retryPolicy.actionAsync(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    attempts.incrementAndGet();
+                    throw new IllegalArgumentException();
+                }
+            }, executor);
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                Assert.fail("expected failure");
+            } catch (ExecutionException e) {
+                Assert.assertTrue("cause is illegal argument", e.getCause() instanceof IllegalArgumentException);
+            }
+            Assert.assertEquals("attempts", 4, attempts.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsyncNonTransientException() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return false;
+            }
+        };
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final AtomicInteger attempts = new AtomicInteger();
+            RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(3, 10), detector);
+            CompletableFuture<Integer> future = retryPolicy.actionAsync(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    attempts.incrementAndGet();
+                    throw new IllegalStateException();
+                }
+            }, executor);
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                Assert.fail("expected failure");
+            } catch (ExecutionException e) {
+                Assert.assertTrue("cause is illegal state", e.getCause() instanceof IllegalStateException);
+            }
+            Assert.assertEquals("attempts", 1, attempts.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsyncCancelStopsRetries() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return true;
+            }
+        };
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            final AtomicInteger attempts = new AtomicInteger();
+            RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(10, 200), detector);
+            CompletableFuture<Integer> future = retryPolicy.actionAsync(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    attempts.incrementAndGet();
+                    throw new IllegalArgumentException();
+                }
+            }, executor);
+            Thread.sleep(50);
+            future.cancel(false);
+            Thread.sleep(500);
+            Assert.assertTrue("cancelled", future.isCancelled());
+            Assert.assertEquals("attempts", 1, attempts.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRetryStateCreatedOnlyOnFailure() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return true;
+            }
+        };
+        final AtomicInteger states = new AtomicInteger();
+        final RetryStrategy fixedInterval = new FixedInterval(3, 0);
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new RetryStrategy() {
+            @Override
+            public RetryState getRetryState() {
+                states.incrementAndGet();
+                return fixedInterval.getRetryState();
+            }
+        }, detector);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(5, (int) retryPolicy.action(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return 5;
+                }
+            }));
+        }
+        Assert.assertEquals("no state on success", 0, states.get());
+        final AtomicInteger attempts = new AtomicInteger();
+        Assert.assertEquals(5, (int) retryPolicy.action(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new IllegalArgumentException();
+                }
+                return 5;
+            }
+        }));
+        Assert.assertEquals("one state per failing action", 1, states.get());
+        Assert.assertEquals("attempts", 3, attempts.get());
+    }
+
+    @Test
+    public void testMaxDurationBoundsRetries() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return e instanceof IllegalArgumentException;
+            }
+        };
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(100, 100), detector);
+        retryPolicy.setMaxDuration(350);
+        final AtomicInteger attempts = new AtomicInteger();
+        long start = System.nanoTime();
+        try {
+            retryPolicy.action(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    attempts.incrementAndGet();
+                    throw new IllegalArgumentException();
+                }
+            });
+            Assert.fail("expected failure");
+        } catch (IllegalArgumentException expected) {
+            // the last failure is raised once the budget is spent
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertEquals("attempts within budget", 4, attempts.get());
+        Assert.assertTrue("no delay past the deadline: " + elapsed, elapsed < 350);
+    }
+
+    @Test
+    public void testMaxDurationDelaysThroughRetryState() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return true;
+            }
+        };
+        final RetryStrategy fixedInterval = new FixedInterval(2, 10);
+        final List<Long> delays = new ArrayList<>();
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new RetryStrategy() {
+            @Override
+            public RetryState getRetryState() {
+                final RetryState retryState = fixedInterval.getRetryState();
+                return new RetryState() {
+                    @Override
+                    public void delayRetry() {
+                        Assert.fail("delay checked against the budget first");
+                    }
+
+                    @Override
+                    public void delayRetry(long delay) {
+                        delays.add(delay);
+                    }
+
+                    @Override
+                    public boolean hasRetries() {
+                        return retryState.hasRetries();
+                    }
+
+                    @Override
+                    public int getRetryCount() {
+                        return retryState.getRetryCount();
+                    }
+
+                    @Override
+                    public long getRetryDelay() {
+                        return retryState.getRetryDelay();
+                    }
+                };
+            }
+        }, detector);
+        retryPolicy.setMaxDuration(10000);
+        final AtomicInteger attempts = new AtomicInteger();
+        Assert.assertEquals(5, (int) retryPolicy.action(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new IllegalArgumentException();
+                }
+                return 5;
+            }
+        }));
+        Assert.assertEquals("delayed by the state", Arrays.asList(10L, 10L), delays);
+    }
+
+    @Test
+    public void testAttemptTimeoutInterruptsAttempt() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return false;
+            }
+        };
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(3, 0), detector);
+        retryPolicy.setAttemptTimeout(50);
+        final AtomicInteger attempts = new AtomicInteger();
+        Integer result = retryPolicy.action(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                if (attempts.incrementAndGet() < 3) {
+                    Thread.sleep(10000);
+                }
+                return 5;
+            }
+        });
+        Assert.assertEquals("timed out attempts retried", 5, (int) result);
+        Assert.assertEquals(3, attempts.get());
+        Assert.assertFalse("interrupt cleared", Thread.currentThread().isInterrupted());
+
+        try {
+            retryPolicy.action(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    Thread.sleep(10000);
+                    return 5;
+                }
+            });
+            Assert.fail("expected timeout");
+        } catch (AttemptTimeoutException e) {
+            Assert.assertTrue("interrupted failure suppressed", e.getSuppressed()[0] instanceof InterruptedException);
+        }
+        Assert.assertFalse("interrupt cleared", Thread.currentThread().isInterrupted());
+    }
+
+    @Test
+    public void testAsyncMaxDurationBoundsRetries() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return e instanceof IllegalArgumentException;
+            }
+        };
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(100, 100), detector);
+            retryPolicy.setMaxDuration(350);
+            final AtomicInteger attempts = new AtomicInteger();
+            CompletableFuture<Integer> future = retryPolicy.actionAsync(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    attempts.incrementAndGet();
+                    throw new IllegalArgumentException();
+                }
+            }, executor);
+            try {
+                future.get(5, TimeUnit.SECONDS);
+                Assert.fail("expected failure");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalArgumentException);
+            }
+            Assert.assertEquals("attempts within budget", 4, attempts.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDelayPreservesInterrupt() {
+        Thread.currentThread().interrupt();
+        long start = System.nanoTime();
+        RetryState.RetryStateCommon.addDelay(10000);
+        Assert.assertTrue("delay ended early", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        Assert.assertTrue("interrupt preserved", Thread.interrupted());
+    }
+
+    @Test
+    public void testThreadActionAsync() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return e instanceof IllegalArgumentException;
+            }
+        };
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(3, 10), detector);
+        final AtomicInteger attempts = new AtomicInteger();
+        final Thread caller = Thread.currentThread();
+        CompletableFuture<Integer> future = retryPolicy.actionAsync(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                Assert.assertNotSame("own thread", caller, Thread.currentThread());
+                if (attempts.incrementAndGet() < 3) {
+                    throw new IllegalArgumentException();
+                }
+                return 5;
+            }
+        });
+        Assert.assertEquals(5, (int) future.get(5, TimeUnit.SECONDS));
+        Assert.assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testThreadActionAsyncCancelInterrupts() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return e instanceof IllegalArgumentException;
+            }
+        };
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(3, 60000), detector);
+        InMemoryRetryMetrics metrics = new InMemoryRetryMetrics();
+        retryPolicy.setRetryMetrics(metrics);
+        final AtomicInteger attempts = new AtomicInteger();
+        final CompletableFuture<Integer> retried = new CompletableFuture<>();
+        CompletableFuture<Integer> future = retryPolicy.actionAsync(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                if (attempts.incrementAndGet() > 1) {
+                    retried.complete(attempts.get());
+                }
+                throw new IllegalArgumentException();
+            }
+        });
+        Thread.sleep(100);
+        Assert.assertTrue(future.cancel(true));
+        try {
+            retried.get(500, TimeUnit.MILLISECONDS);
+            Assert.fail("retried after cancel");
+        } catch (TimeoutException expected) {
+            // no further attempt was made
+        }
+        Assert.assertEquals(1, attempts.get());
+        Assert.assertTrue("delay interrupted", metrics.getBackoffTime(TimeUnit.MILLISECONDS) < 5000);
+        Assert.assertTrue("delay ended", metrics.getBackoffTime(TimeUnit.NANOSECONDS) > 0);
+    }
 }
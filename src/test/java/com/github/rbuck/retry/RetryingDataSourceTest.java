@@ -0,0 +1,279 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Tests the RetryingDataSource class.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class RetryingDataSourceTest {
+
+    /**
+     * A database failing connection attempts and executions as scripted, and
+     * logging executions as "connection:parameter".
+     */
+    private static class FakeDatabase {
+
+        private final Deque<SQLException> connectFailures = new ArrayDeque<>();
+        private final Deque<SQLException> failures = new ArrayDeque<>();
+        private final List<String> executed = new ArrayList<>();
+        private final List<FakeConnection> connections = new ArrayList<>();
+        private String productName;
+        private int executions;
+
+        DataSource dataSource() {
+            return (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DataSource.class},
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if (method.getName().equals("getConnection")) {
+                                if (!connectFailures.isEmpty()) {
+                                    throw connectFailures.poll();
+                                }
+                                FakeConnection connection = new FakeConnection(FakeDatabase.this, connections.size() + 1);
+                                connections.add(connection);
+                                return connection;
+                            }
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+
+    private static class FakeConnection extends MockConnection {
+
+        private final FakeDatabase database;
+        private final int id;
+        private boolean autoCommit = true;
+        private boolean readOnly;
+        private boolean closed;
+
+        FakeConnection(FakeDatabase database, int id) throws SQLException {
+            super(ExceptionType.Nothing);
+            this.database = database;
+            this.id = id;
+        }
+
+        @Override
+        public boolean getAutoCommit() throws SQLException {
+            return autoCommit;
+        }
+
+        @Override
+        public void setAutoCommit(boolean autoCommit) throws SQLException {
+            this.autoCommit = autoCommit;
+        }
+
+        @Override
+        public boolean isReadOnly() throws SQLException {
+            return readOnly;
+        }
+
+        @Override
+        public void setReadOnly(boolean readOnly) throws SQLException {
+            this.readOnly = readOnly;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            closed = true;
+        }
+
+        @Override
+        public DatabaseMetaData getMetaData() throws SQLException {
+            if (database.productName == null) {
+                return null;
+            }
+            return (DatabaseMetaData) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DatabaseMetaData.class},
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if (method.getName().equals("getDatabaseProductName")) {
+                                return database.productName;
+                            }
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        @Override
+        public Statement createStatement() throws SQLException {
+            return statement(Statement.class);
+        }
+
+        @Override
+        public PreparedStatement prepareStatement(String sql) throws SQLException {
+            return (PreparedStatement) statement(PreparedStatement.class);
+        }
+
+        private Statement statement(Class<? extends Statement> type) {
+            final Object[] parameter = new Object[1];
+            return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type},
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            switch (method.getName()) {
+                                case "setInt":
+                                    parameter[0] = args[1];
+                                    return null;
+                                case "executeQuery":
+                                case "executeUpdate":
+                                case "execute":
+                                    database.executions++;
+                                    if (!database.failures.isEmpty()) {
+                                        throw database.failures.poll();
+                                    }
+                                    database.executed.add(id + ":" + parameter[0]);
+                                    return method.getName().equals("executeUpdate") ? 1
+                                            : method.getName().equals("execute") ? Boolean.TRUE : null;
+                                case "close":
+                                    return null;
+                                default:
+                                    throw new UnsupportedOperationException(method.getName());
+                            }
+                        }
+                    });
+        }
+    }
+
+    private static RetryingDataSource retrying(FakeDatabase database) {
+        return new RetryingDataSource(database.dataSource(), new FixedInterval(3, 1));
+    }
+
+    @Test
+    public void testConnectionAcquisitionRetried() throws SQLException {
+        FakeDatabase database = new FakeDatabase();
+        database.connectFailures.add(new SQLTransientConnectionException("refused", "08001"));
+        database.connectFailures.add(new SQLTransientConnectionException("refused", "08001"));
+        try (Connection connection = retrying(database).getConnection()) {
+            Assert.assertFalse("open", connection.isClosed());
+        }
+        Assert.assertEquals("connections", 1, database.connections.size());
+        Assert.assertTrue("closed", database.connections.get(0).closed);
+    }
+
+    @Test
+    public void testQueryReplayedOnNewConnection() throws SQLException {
+        FakeDatabase database = new FakeDatabase();
+        try (Connection connection = retrying(database).getConnection()) {
+            PreparedStatement statement = connection.prepareStatement("SELECT name FROM users WHERE id = ?");
+            statement.setInt(1, 42);
+            database.failures.add(new SQLException("connection lost", "08006"));
+            statement.executeQuery();
+            Assert.assertSame("statement connection", connection, statement.getConnection());
+        }
+        Assert.assertEquals("replayed with parameters on a new connection", "[2:42]", database.executed.toString());
+        Assert.assertTrue("failed connection closed", database.connections.get(0).closed);
+    }
+
+    @Test
+    public void testUpdateRetriedAfterRollback() throws SQLException {
+        FakeDatabase database = new FakeDatabase();
+        try (Connection connection = retrying(database).getConnection()) {
+            PreparedStatement statement = connection.prepareStatement("UPDATE users SET visits = visits + 1 WHERE id = ?");
+            statement.setInt(1, 7);
+            database.failures.add(new SQLException("deadlock", "40001"));
+            Assert.assertEquals("update count", 1, statement.executeUpdate());
+        }
+        Assert.assertEquals("executions", 2, database.executions);
+        Assert.assertEquals("same connection", "[1:7]", database.executed.toString());
+    }
+
+    @Test
+    public void testUpdateNotReplayedAfterConnectionFailure() throws SQLException {
+        FakeDatabase database = new FakeDatabase();
+        try (Connection connection = retrying(database).getConnection()) {
+            PreparedStatement statement = connection.prepareStatement("UPDATE users SET visits = visits + 1 WHERE id = ?");
+            statement.setInt(1, 7);
+            database.failures.add(new SQLException("connection lost", "08006"));
+            try {
+                statement.executeUpdate();
+                Assert.fail("update should fail");
+            } catch (SQLException e) {
+                Assert.assertEquals("SQLSTATE", "08006", e.getSQLState());
+            }
+        }
+        Assert.assertEquals("executions", 1, database.executions);
+    }
+
+    @Test
+    public void testUpdateNotReplayedAfterTransientFailure() throws SQLException {
+        FakeDatabase database = new FakeDatabase();
+        try (Connection connection = retrying(database).getConnection()) {
+            PreparedStatement statement = connection.prepareStatement("UPDATE users SET visits = visits + 1 WHERE id = ?");
+            statement.setInt(1, 7);
+            database.failures.add(new SQLTimeoutException("timeout", "HYT00"));
+            try {
+                statement.executeUpdate();
+                Assert.fail("update should fail");
+            } catch (SQLTimeoutException expected) {
+            }
+            database.failures.add(new SQLTimeoutException("timeout", "HYT00"));
+            statement.executeQuery();
+        }
+        Assert.assertEquals("executions", 3, database.executions);
+        Assert.assertEquals("query replayed on the same connection", "[1:7]", database.executed.toString());
+    }
+
+    @Test
+    public void testDialectConnectionFailureDiscardsConnection() throws SQLException {
+        FakeDatabase database = new FakeDatabase();
+        database.productName = "PostgreSQL";
+        try (Connection connection = retrying(database).getConnection()) {
+            PreparedStatement statement = connection.prepareStatement("SELECT name FROM users WHERE id = ?");
+            statement.setInt(1, 42);
+            database.failures.add(new SQLException("terminating connection due to administrator command", "57P01"));
+            statement.executeQuery();
+        }
+        Assert.assertEquals("replayed on a new connection", "[2:42]", database.executed.toString());
+        Assert.assertTrue("failed connection closed", database.connections.get(0).closed);
+    }
+
+    @Test
+    public void testTransactionNotRetried() throws SQLException {
+        FakeDatabase database = new FakeDatabase();
+        try (Connection connection = retrying(database).getConnection()) {
+            connection.setAutoCommit(false);
+            PreparedStatement statement = connection.prepareStatement("UPDATE users SET visits = visits + 1 WHERE id = ?");
+            database.failures.add(new SQLException("deadlock", "40001"));
+            try {
+                statement.executeUpdate();
+                Assert.fail("update should fail");
+            } catch (SQLException e) {
+                Assert.assertEquals("SQLSTATE", "40001", e.getSQLState());
+            }
+        }
+        Assert.assertEquals("executions", 1, database.executions);
+    }
+
+    @Test
+    public void testReadOnlyConnectionSettingsReplayed() throws SQLException {
+        FakeDatabase database = new FakeDatabase();
+        try (Connection connection = retrying(database).getConnection()) {
+            connection.setReadOnly(true);
+            Statement statement = connection.createStatement();
+            database.failures.add(new SQLException("connection lost", "08006"));
+            Assert.assertTrue("result", statement.execute("SELECT 1"));
+        }
+        Assert.assertEquals("connections", 2, database.connections.size());
+        Assert.assertTrue("read-only replayed", database.connections.get(1).readOnly);
+    }
+}
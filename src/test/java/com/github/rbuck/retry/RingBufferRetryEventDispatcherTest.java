@@ -0,0 +1,188 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the RetryEventDispatcher implementations.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class RingBufferRetryEventDispatcherTest {
+
+    private static RetryEvent newEvent(int retryCount) {
+        final RetryState state = new FixedInterval(retryCount, 0).getRetryState();
+        for (int i = 0; i < retryCount; i++) {
+            state.hasRetries();
+        }
+        return new RetryEvent(new Object(), state, new IllegalArgumentException());
+    }
+
+    @Test
+    public void testDeliveryOrder() throws Exception {
+        final List<Integer> delivered = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(100);
+        RingBufferRetryEventDispatcher dispatcher = new RingBufferRetryEventDispatcher(128, RingBufferRetryEventDispatcher.OverflowPolicy.DROP_NEWEST);
+        RetryEventListener listener = new RetryEventListener() {
+            @Override
+            public void onRetry(RetryEvent evt) {
+                delivered.add(evt.getRetryCount());
+                latch.countDown();
+            }
+        };
+        for (int i = 0; i < 100; i++) {
+            dispatcher.dispatch(newEvent(i), listener);
+        }
+        Assert.assertTrue("all delivered", latch.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals("in order", i, (int) delivered.get(i));
+        }
+        dispatcher.shutdown();
+        Assert.assertTrue("terminated", dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals("nothing dropped", 0, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void testDropNewest() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> delivered = new ArrayList<>();
+        RingBufferRetryEventDispatcher dispatcher = new RingBufferRetryEventDispatcher(4, RingBufferRetryEventDispatcher.OverflowPolicy.DROP_NEWEST, 1, 1);
+        RetryEventListener listener = new RetryEventListener() {
+            @Override
+            public void onRetry(RetryEvent evt) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignore) {
+                }
+                delivered.add(evt.getRetryCount());
+            }
+        };
+        dispatcher.dispatch(newEvent(0), listener);
+        Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 10; i++) {
+            dispatcher.dispatch(newEvent(i), listener);
+        }
+        Assert.assertEquals("dropped", 6, dispatcher.getDroppedCount());
+        release.countDown();
+        dispatcher.shutdown();
+        Assert.assertTrue("terminated", dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals("oldest kept", "[0, 1, 2, 3, 4]", delivered.toString());
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> delivered = new ArrayList<>();
+        RingBufferRetryEventDispatcher dispatcher = new RingBufferRetryEventDispatcher(4, RingBufferRetryEventDispatcher.OverflowPolicy.DROP_OLDEST, 1, 1);
+        RetryEventListener listener = new RetryEventListener() {
+            @Override
+            public void onRetry(RetryEvent evt) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ignore) {
+                }
+                delivered.add(evt.getRetryCount());
+            }
+        };
+        dispatcher.dispatch(newEvent(0), listener);
+        Assert.assertTrue(blocked.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= 10; i++) {
+            dispatcher.dispatch(newEvent(i), listener);
+        }
+        Assert.assertEquals("dropped", 6, dispatcher.getDroppedCount());
+        release.countDown();
+        dispatcher.shutdown();
+        Assert.assertTrue("terminated", dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals("newest kept", "[0, 7, 8, 9, 10]", delivered.toString());
+    }
+
+    @Test
+    public void testBlockingProducers() throws Exception {
+        final AtomicInteger delivered = new AtomicInteger();
+        final RingBufferRetryEventDispatcher dispatcher = new RingBufferRetryEventDispatcher(8, RingBufferRetryEventDispatcher.OverflowPolicy.BLOCK);
+        final RetryEventListener listener = new RetryEventListener() {
+            @Override
+            public void onRetry(RetryEvent evt) {
+                delivered.incrementAndGet();
+            }
+        };
+        Thread[] producers = new Thread[4];
+        for (int t = 0; t < producers.length; t++) {
+            producers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        dispatcher.dispatch(newEvent(1), listener);
+                    }
+                }
+            });
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        dispatcher.shutdown();
+        Assert.assertTrue("terminated", dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals("nothing dropped", 0, dispatcher.getDroppedCount());
+        Assert.assertEquals("all delivered", 40000, delivered.get());
+    }
+
+    @Test
+    public void testDispatchAfterShutdown() throws Exception {
+        final AtomicInteger delivered = new AtomicInteger();
+        RingBufferRetryEventDispatcher dispatcher = new RingBufferRetryEventDispatcher();
+        dispatcher.shutdown();
+        Assert.assertTrue("terminated", dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+        dispatcher.dispatch(newEvent(1), new RetryEventListener() {
+            @Override
+            public void onRetry(RetryEvent evt) {
+                delivered.incrementAndGet();
+            }
+        });
+        Assert.assertEquals("dropped", 1, dispatcher.getDroppedCount());
+        Assert.assertEquals("not delivered", 0, delivered.get());
+    }
+
+    @Test
+    public void testSynchronousDispatch() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return e instanceof IllegalArgumentException;
+            }
+        };
+        final Thread caller = Thread.currentThread();
+        final AtomicInteger eventCount = new AtomicInteger();
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(new FixedInterval(3, 0), detector);
+        retryPolicy.setRetryEventDispatcher(SynchronousRetryEventDispatcher.INSTANCE);
+        retryPolicy.addRetryEventListener(new RetryEventListener() {
+            @Override
+            public void onRetry(RetryEvent evt) {
+                Assert.assertSame("delivered in caller", caller, Thread.currentThread());
+                eventCount.incrementAndGet();
+            }
+        });
+        try {
+            retryPolicy.action(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    throw new IllegalArgumentException();
+                }
+            });
+            Assert.fail("expected failure");
+        } catch (IllegalArgumentException ignore) {
+        }
+        Assert.assertEquals("event count", 4, eventCount.get());
+    }
+}
@@ -0,0 +1,130 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the SqlBatchRetryPolicy class.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class SqlBatchRetryPolicyTest {
+
+    private final List<Integer> sent = new ArrayList<>();
+    private final AtomicInteger batches = new AtomicInteger();
+    private final AtomicInteger commits = new AtomicInteger();
+
+    /**
+     * A transaction context whose statements fail the given batches, counting
+     * from one, with a serialization failure.
+     */
+    private SqlTransactionContext failing(final Integer... failingBatches) {
+        return new SqlTransactionContext() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return new MockConnection(MockConnection.ExceptionType.Nothing) {
+                    @Override
+                    public PreparedStatement prepareStatement(String sql) throws SQLException {
+                        return statement(Arrays.asList(failingBatches));
+                    }
+
+                    @Override
+                    public void commit() throws SQLException {
+                        commits.incrementAndGet();
+                    }
+                };
+            }
+        };
+    }
+
+    private PreparedStatement statement(final List<Integer> failingBatches) {
+        final List<Integer> batch = new ArrayList<>();
+        final int[] parameter = new int[1];
+        return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        switch (method.getName()) {
+                            case "setInt":
+                                parameter[0] = (Integer) args[1];
+                                return null;
+                            case "addBatch":
+                                batch.add(parameter[0]);
+                                return null;
+                            case "executeBatch":
+                                sent.addAll(batch);
+                                if (failingBatches.contains(batches.incrementAndGet())) {
+                                    throw new BatchUpdateException("serialization failure", "40001", new int[0]);
+                                }
+                                int[] counts = new int[batch.size()];
+                                Arrays.fill(counts, 1);
+                                return counts;
+                            default:
+                                return null;
+                        }
+                    }
+                });
+    }
+
+    private static final SqlBatchBinder<Integer> BINDER = new SqlBatchBinder<Integer>() {
+        @Override
+        public void bind(PreparedStatement statement, Integer operation) throws SQLException {
+            statement.setInt(1, operation);
+        }
+    };
+
+    private static List<Integer> operations(int count) {
+        List<Integer> operations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            operations.add(i);
+        }
+        return operations;
+    }
+
+    @Test
+    public void testRetriesOnlyFailedChunk() throws Exception {
+        SqlBatchRetryPolicy<Integer> policy = new SqlBatchRetryPolicy<>(new FixedInterval(3, 0), failing(2), 3);
+        int[] updateCounts = policy.action("insert into t values (?)", operations(10), BINDER);
+        Assert.assertEquals(10, updateCounts.length);
+        for (int count : updateCounts) {
+            Assert.assertEquals(1, count);
+        }
+        Assert.assertEquals("chunks sent, the failed one twice", 5, batches.get());
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 3, 4, 5, 6, 7, 8, 9), sent);
+        Assert.assertEquals("one commit per chunk", 4, commits.get());
+    }
+
+    @Test
+    public void testFailedChunkReportsCommittedOperations() throws Exception {
+        SqlBatchRetryPolicy<Integer> policy = new SqlBatchRetryPolicy<>(new FixedInterval(1, 0), failing(3, 4), 3);
+        try {
+            policy.action("insert into t values (?)", operations(10), BINDER);
+            Assert.fail("expected failure");
+        } catch (BatchUpdateException e) {
+            Assert.assertEquals("operations committed", 6, e.getUpdateCounts().length);
+            Assert.assertEquals("40001", e.getSQLState());
+            Assert.assertTrue(e.getCause() instanceof BatchUpdateException);
+        }
+        Assert.assertEquals("later chunks not sent", 4, batches.get());
+        Assert.assertEquals(2, commits.get());
+    }
+
+    @Test
+    public void testEmptyOperations() throws Exception {
+        SqlBatchRetryPolicy<Integer> policy = new SqlBatchRetryPolicy<>(new FixedInterval(1, 0), failing(), 3);
+        Assert.assertEquals(0, policy.action("insert into t values (?)", new ArrayList<Integer>(), BINDER).length);
+        Assert.assertEquals(0, batches.get());
+    }
+}
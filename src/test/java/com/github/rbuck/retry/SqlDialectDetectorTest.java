@@ -0,0 +1,165 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the SqlDialectDetector class.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class SqlDialectDetectorTest {
+
+    /**
+     * A context handing out connections of the named database product.
+     */
+    private static class ProductContext implements SqlTransactionContext {
+
+        private final String productName;
+
+        ProductContext(String productName) {
+            this.productName = productName;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            final DatabaseMetaData metaData = (DatabaseMetaData) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{DatabaseMetaData.class}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if (method.getName().equals("getDatabaseProductName")) {
+                                return productName;
+                            }
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+            return new MockConnection(MockConnection.ExceptionType.Nothing) {
+                @Override
+                public DatabaseMetaData getMetaData() throws SQLException {
+                    return metaData;
+                }
+            };
+        }
+    }
+
+    private static SqlDialectDetector detect(String productName) throws SQLException {
+        ProductContext context = new ProductContext(productName);
+        SqlDialectDetector detector = new SqlDialectDetector(context);
+        detector.detect(context.getConnection());
+        return detector;
+    }
+
+    private static void assertDialect(String productName, StandardSqlDialect dialect, SQLException transientException) throws SQLException {
+        Assert.assertFalse("generic rules", new SqlTransientExceptionDetector().isTransient(transientException));
+        SqlDialectDetector detector = detect(productName);
+        Assert.assertTrue("detected", detector.isDetected());
+        Assert.assertEquals("dialect", dialect, detector.getDialect());
+        Assert.assertTrue("dialect rules", detector.isTransient(transientException));
+        Assert.assertTrue("generic rules kept", detector.isTransient(new SQLException("rollback", "40001")));
+        Assert.assertFalse("non-transient", detector.isTransient(new SQLException("syntax", "42000", 1064)));
+    }
+
+    @Test
+    public void testPostgreSql() throws SQLException {
+        assertDialect("PostgreSQL", StandardSqlDialect.POSTGRESQL, new SQLException("terminating connection due to administrator command", "57P01"));
+    }
+
+    @Test
+    public void testMySql() throws SQLException {
+        assertDialect("MySQL", StandardSqlDialect.MYSQL, new SQLException("Lock wait timeout exceeded", "HY000", 1205));
+        Assert.assertEquals("MariaDB", StandardSqlDialect.MYSQL, detect("MariaDB").getDialect());
+    }
+
+    @Test
+    public void testOracle() throws SQLException {
+        assertDialect("Oracle", StandardSqlDialect.ORACLE, new SQLException("ORA-08177: can't serialize access for this transaction", "72000", 8177));
+    }
+
+    @Test
+    public void testSqlServer() throws SQLException {
+        assertDialect("Microsoft SQL Server", StandardSqlDialect.SQL_SERVER, new SQLException("deadlock victim", "S0001", 1205));
+    }
+
+    @Test
+    public void testH2() throws SQLException {
+        assertDialect("H2", StandardSqlDialect.H2, new SQLException("Timeout trying to lock table", "HYT00", 50200));
+    }
+
+    @Test
+    public void testNuoDb() throws SQLException {
+        SqlDialectDetector detector = detect("NuoDB");
+        Assert.assertEquals("dialect", StandardSqlDialect.NUODB, detector.getDialect());
+        Assert.assertTrue("legacy dupe index", detector.isTransient(new SQLException("duplicate value in unique index", "23000")));
+        Assert.assertTrue("connection", detector.isTransient(new SQLException("connection lost", "08000")));
+    }
+
+    @Test
+    public void testVendorCodesAreDialectSpecific() throws SQLException {
+        SQLException lockTimeout = new SQLException("ORA-30006: resource busy", "HY000", 30006);
+        Assert.assertFalse("not MySQL", detect("MySQL").isTransient(lockTimeout));
+        Assert.assertTrue("Oracle", detect("Oracle").isTransient(lockTimeout));
+    }
+
+    @Test
+    public void testUnknownProduct() throws SQLException {
+        SqlDialectDetector detector = detect("Unknown DB");
+        Assert.assertTrue("detected", detector.isDetected());
+        Assert.assertNull("no dialect", detector.getDialect());
+        Assert.assertTrue("generic rules", detector.isTransient(new SQLException("connection lost", "08006")));
+
+        SqlDialectDetector noMetaData = new SqlDialectDetector(new ProductContext(null));
+        noMetaData.detect(new MockConnection(MockConnection.ExceptionType.Nothing));
+        Assert.assertTrue("detected without metadata", noMetaData.isDetected());
+    }
+
+    @Test
+    public void testCachedPerContext() throws SQLException {
+        ProductContext context = new ProductContext("PostgreSQL");
+        SqlDialectDetector first = new SqlDialectDetector(context);
+        Assert.assertFalse("not detected", first.isDetected());
+        first.detect(context.getConnection());
+        SqlDialectDetector second = new SqlDialectDetector(context);
+        Assert.assertTrue("detected from cache", second.isDetected());
+        Assert.assertEquals("dialect", StandardSqlDialect.POSTGRESQL, second.getDialect());
+        Assert.assertFalse("other context", new SqlDialectDetector(new ProductContext("PostgreSQL")).isDetected());
+    }
+
+    @Test
+    public void testRetryPolicyDetectsDialect() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        SqlRetryPolicy<Integer> sqlRetryPolicy = new SqlRetryPolicy<>(new FixedInterval(3, 1), new ProductContext("MySQL"));
+        int result = sqlRetryPolicy.action(new SqlCallable<Integer>() {
+            @Override
+            public Integer call(Connection connection) throws SQLException {
+                if (calls.incrementAndGet() < 3) {
+                    throw new SQLException("Deadlock found when trying to get lock", "HY000", 1213);
+                }
+                return 5;
+            }
+        });
+        Assert.assertEquals("result", 5, result);
+        Assert.assertEquals("calls", 3, calls.get());
+    }
+
+    @Test
+    public void testRollbacksAndConnectionFailures() {
+        SQLException deadlock = new SQLException("Deadlock found when trying to get lock", "HY000", 1213);
+        SQLException lost = new SQLException("MySQL server has gone away", "HY000", 2006);
+        SQLException shutdown = new SQLException("terminating connection due to administrator command", "57P01");
+        Assert.assertTrue("mysql deadlock", StandardSqlDialect.MYSQL.isRollback(deadlock));
+        Assert.assertFalse("mysql deadlock", StandardSqlDialect.MYSQL.isConnectionFailure(deadlock));
+        Assert.assertTrue("mysql gone away", StandardSqlDialect.MYSQL.isConnectionFailure(lost));
+        Assert.assertFalse("mysql gone away", StandardSqlDialect.MYSQL.isRollback(lost));
+        Assert.assertTrue("postgresql shutdown", StandardSqlDialect.POSTGRESQL.isConnectionFailure(shutdown));
+        Assert.assertFalse("postgresql shutdown", StandardSqlDialect.POSTGRESQL.isRollback(shutdown));
+        Assert.assertFalse("nuodb", StandardSqlDialect.NUODB.isConnectionFailure(shutdown));
+    }
+}
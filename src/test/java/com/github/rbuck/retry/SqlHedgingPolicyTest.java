@@ -0,0 +1,216 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the SqlHedgingPolicy class.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class SqlHedgingPolicyTest {
+
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger aborted = new AtomicInteger();
+
+    private final SqlTransactionContext sqlTransactionContext = new SqlTransactionContext() {
+        @Override
+        public Connection getConnection() throws SQLException {
+            connections.incrementAndGet();
+            return new MockConnection(MockConnection.ExceptionType.Nothing) {
+                @Override
+                public void abort(Executor executor) throws SQLException {
+                    aborted.incrementAndGet();
+                }
+            };
+        }
+    };
+
+    @Test
+    public void testSlowAttemptIsHedged() throws Exception {
+        SqlHedgingPolicy<Integer> policy = new SqlHedgingPolicy<>(3, 50, sqlTransactionContext);
+        final AtomicInteger attempts = new AtomicInteger();
+        long start = System.nanoTime();
+        Integer result = policy.action(new SqlCallable<Integer>() {
+            @Override
+            public Integer call(Connection connection) throws SQLException {
+                int attempt = attempts.incrementAndGet();
+                if (attempt == 1) {
+                    try {
+                        Thread.sleep(10000);
+                    } catch (InterruptedException e) {
+                        throw new SQLException(e);
+                    }
+                }
+                return attempt;
+            }
+        });
+        Assert.assertEquals("hedge wins", 2, (int) result);
+        Assert.assertTrue("did not wait for slow attempt", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+        Assert.assertEquals("two connections", 2, connections.get());
+        Assert.assertEquals("loser aborted", 1, aborted.get());
+        Assert.assertEquals(1, policy.getAttemptLatency().getTotalCount());
+    }
+
+    @Test
+    public void testFastAttemptIsNotHedged() throws Exception {
+        SqlHedgingPolicy<Integer> policy = new SqlHedgingPolicy<>(3, 5000, sqlTransactionContext);
+        Assert.assertEquals(5, (int) policy.action(new SqlCallable<Integer>() {
+            @Override
+            public Integer call(Connection connection) throws SQLException {
+                return 5;
+            }
+        }));
+        Assert.assertEquals(1, connections.get());
+        Assert.assertEquals(0, aborted.get());
+    }
+
+    @Test
+    public void testTransientFailureReplacedImmediately() throws Exception {
+        SqlHedgingPolicy<Integer> policy = new SqlHedgingPolicy<>(3, 60000, sqlTransactionContext);
+        final AtomicInteger attempts = new AtomicInteger();
+        Integer result = policy.action(new SqlCallable<Integer>() {
+            @Override
+            public Integer call(Connection connection) throws SQLException {
+                if (attempts.incrementAndGet() < 3) {
+                    throw new SQLTransientConnectionException("lost", "08006");
+                }
+                return 5;
+            }
+        });
+        Assert.assertEquals(5, (int) result);
+        Assert.assertEquals(3, attempts.get());
+    }
+
+    @Test
+    public void testAllAttemptsFail() throws Exception {
+        SqlHedgingPolicy<Integer> policy = new SqlHedgingPolicy<>(2, 0, sqlTransactionContext);
+        try {
+            policy.action(new SqlCallable<Integer>() {
+                @Override
+                public Integer call(Connection connection) throws SQLException {
+                    throw new SQLTransientConnectionException("lost", "08006");
+                }
+            });
+            Assert.fail("expected failure");
+        } catch (SQLTransientConnectionException expected) {
+            // last transient failure
+        }
+        Assert.assertEquals(2, connections.get());
+    }
+
+    @Test
+    public void testNonTransientFailsFast() throws Exception {
+        SqlHedgingPolicy<Integer> policy = new SqlHedgingPolicy<>(3, 60000, sqlTransactionContext);
+        try {
+            policy.action(new SqlCallable<Integer>() {
+                @Override
+                public Integer call(Connection connection) throws SQLException {
+                    throw new SQLNonTransientException("syntax", "42000");
+                }
+            });
+            Assert.fail("expected failure");
+        } catch (SQLNonTransientException expected) {
+            // not hedged
+        }
+        Assert.assertEquals(1, connections.get());
+    }
+
+    @Test
+    public void testCustomDetector() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return e instanceof SQLNonTransientException;
+            }
+        };
+        SqlHedgingPolicy<Integer> policy = new SqlHedgingPolicy<>(2, 60000, detector, sqlTransactionContext);
+        try {
+            policy.action(new SqlCallable<Integer>() {
+                @Override
+                public Integer call(Connection connection) throws SQLException {
+                    throw new SQLNonTransientException("syntax", "42000");
+                }
+            });
+            Assert.fail("expected failure");
+        } catch (SQLNonTransientException expected) {
+            // transient by the detector, so replaced
+        }
+        Assert.assertEquals(2, connections.get());
+    }
+
+    @Test
+    public void testPercentileHedgeDelay() throws Exception {
+        SqlHedgingPolicy<Integer> policy = new SqlHedgingPolicy<>(2, 60000, sqlTransactionContext);
+        policy.setHedgePercentile(90);
+        SqlCallable<Integer> fast = new SqlCallable<Integer>() {
+            @Override
+            public Integer call(Connection connection) throws SQLException {
+                return 1;
+            }
+        };
+        for (int i = 0; i < 100; i++) {
+            policy.action(fast);
+        }
+        final AtomicInteger attempts = new AtomicInteger();
+        long start = System.nanoTime();
+        Integer result = policy.action(new SqlCallable<Integer>() {
+            @Override
+            public Integer call(Connection connection) throws SQLException {
+                int attempt = attempts.incrementAndGet();
+                if (attempt == 1) {
+                    try {
+                        Thread.sleep(10000);
+                    } catch (InterruptedException e) {
+                        throw new SQLException(e);
+                    }
+                }
+                return attempt;
+            }
+        });
+        Assert.assertEquals("hedged at the percentile, not the fixed delay", 2, (int) result);
+        Assert.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000);
+    }
+
+    @Test
+    public void testRejectedHedgeSurfaces() throws Exception {
+        SqlHedgingPolicy<Integer> policy = new SqlHedgingPolicy<>(3, 50, sqlTransactionContext);
+        final AtomicInteger submitted = new AtomicInteger();
+        policy.setExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                if (submitted.incrementAndGet() > 1) {
+                    throw new RejectedExecutionException("saturated");
+                }
+                new Thread(command).start();
+            }
+        });
+        try {
+            policy.action(new SqlCallable<Integer>() {
+                @Override
+                public Integer call(Connection connection) throws SQLException {
+                    try {
+                        Thread.sleep(10000);
+                    } catch (InterruptedException e) {
+                        throw new SQLException(e);
+                    }
+                    return 5;
+                }
+            });
+            Assert.fail("hedge should be rejected");
+        } catch (RejectedExecutionException expected) {
+            Assert.assertEquals("saturated", expected.getMessage());
+        }
+        Assert.assertEquals("submitted", 2, submitted.get());
+        Assert.assertEquals("slow attempt aborted", 1, aborted.get());
+    }
+}
@@ -7,9 +7,18 @@ import org.junit.rules.TestRule;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransactionRollbackException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Tests the SqlRetryPolicy class.
@@ -102,4 +111,189 @@ public class SqlRetryPolicyTest {
     public void testInterruptedException() {
         internalTest(MockConnection.ExceptionType.Interrupted);
     }
+
+    @Test
+    public void testAsyncNoException() throws Exception {
+        SqlTransactionContext sqlTransactionContext = new SqlTransactionContext() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return new MockConnection(MockConnection.ExceptionType.Nothing);
+            }
+        };
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            SqlRetryPolicy<Integer> sqlRetryPolicy = new SqlRetryPolicy<>(new FixedInterval(1, 100), sqlTransactionContext);
+            int result = sqlRetryPolicy.actionAsync(new SqlCallable<Integer>() {
+                @Override
+                public Integer call(Connection connection) throws SQLException {
+                    return 5;
+                }
+            }, executor).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals("no exception", 5, result);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A context counting the connections it hands out and those closed.
+     */
+    private static class CountingContext implements SqlTransactionContext {
+
+        private final MockConnection.ExceptionType exceptionType;
+        private final int failures;
+        private final AtomicInteger opened = new AtomicInteger();
+        private final AtomicInteger closed = new AtomicInteger();
+        private final AtomicInteger commits = new AtomicInteger();
+        private String productName;
+        private MockConnection last;
+
+        CountingContext(MockConnection.ExceptionType exceptionType, int failures) {
+            this.exceptionType = exceptionType;
+            this.failures = failures;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            opened.incrementAndGet();
+            last = new MockConnection(exceptionType) {
+                @Override
+                public void commit() throws SQLException {
+                    if (commits.getAndIncrement() < failures) {
+                        super.commit();
+                    }
+                }
+
+                @Override
+                public void close() throws SQLException {
+                    closed.incrementAndGet();
+                }
+
+                @Override
+                public DatabaseMetaData getMetaData() throws SQLException {
+                    if (productName == null) {
+                        return null;
+                    }
+                    return (DatabaseMetaData) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{DatabaseMetaData.class},
+                            new InvocationHandler() {
+                                @Override
+                                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                                    if (method.getName().equals("getDatabaseProductName")) {
+                                        return productName;
+                                    }
+                                    throw new UnsupportedOperationException(method.getName());
+                                }
+                            });
+                }
+            };
+            return last;
+        }
+    }
+
+    private static final SqlCallable<Integer> FIVE = new SqlCallable<Integer>() {
+        @Override
+        public Integer call(Connection connection) throws SQLException {
+            return 5;
+        }
+    };
+
+    @Test
+    public void testRollbackReusesConnection() throws Exception {
+        CountingContext context = new CountingContext(MockConnection.ExceptionType.Rollback, 2);
+        SqlRetryPolicy<Integer> sqlRetryPolicy = new SqlRetryPolicy<>(new FixedInterval(3, 1), context);
+        Assert.assertEquals("result", 5, (int) sqlRetryPolicy.action(FIVE));
+        Assert.assertEquals("connections opened", 1, context.opened.get());
+        Assert.assertEquals("connections closed", 1, context.closed.get());
+        Assert.assertTrue("rollback", context.last.isRollbackCalled());
+    }
+
+    @Test
+    public void testRetainedConnectionClosedWhenRetriesExhausted() throws Exception {
+        CountingContext context = new CountingContext(MockConnection.ExceptionType.Rollback, Integer.MAX_VALUE);
+        SqlRetryPolicy<Integer> sqlRetryPolicy = new SqlRetryPolicy<>(new FixedInterval(3, 1), context);
+        try {
+            sqlRetryPolicy.action(FIVE);
+            Assert.fail("retries should be exhausted");
+        } catch (SQLTransactionRollbackException expected) {
+        }
+        Assert.assertEquals("connections opened", 1, context.opened.get());
+        Assert.assertEquals("connections closed", 1, context.closed.get());
+    }
+
+    @Test
+    public void testTimedOutAttemptHandsOverConnection() throws Exception {
+        CountingContext context = new CountingContext(MockConnection.ExceptionType.Rollback, 1);
+        SqlRetryPolicy<Integer> sqlRetryPolicy = new SqlRetryPolicy<>(new FixedInterval(3, 1), context);
+        sqlRetryPolicy.setAttemptTimeout(50);
+        final AtomicInteger calls = new AtomicInteger();
+        int result = sqlRetryPolicy.action(new SqlCallable<Integer>() {
+            @Override
+            public Integer call(Connection connection) throws SQLException {
+                if (calls.incrementAndGet() == 1) {
+                    try {
+                        Thread.sleep(5000);
+                    } catch (InterruptedException ignored) {
+                        // timed out, the commit fails and is rolled back
+                    }
+                }
+                return 5;
+            }
+        });
+        Assert.assertEquals("result", 5, result);
+        Assert.assertEquals("calls", 2, calls.get());
+        Assert.assertEquals("connections opened", 1, context.opened.get());
+        Assert.assertEquals("connections closed", 1, context.closed.get());
+    }
+
+    @Test
+    public void testConnectionFailureDiscardsConnection() throws Exception {
+        CountingContext context = new CountingContext(MockConnection.ExceptionType.StaleConnection, 2);
+        SqlRetryPolicy<Integer> sqlRetryPolicy = new SqlRetryPolicy<>(new FixedInterval(3, 1), context);
+        Assert.assertEquals("result", 5, (int) sqlRetryPolicy.action(FIVE));
+        Assert.assertEquals("connections opened", 3, context.opened.get());
+        Assert.assertEquals("connections closed", 3, context.closed.get());
+    }
+
+    @Test
+    public void testIntegrityViolationDiscardsConnection() throws Exception {
+        CountingContext context = new CountingContext(MockConnection.ExceptionType.IntegrityViolation, 1);
+        SqlRetryPolicy<Integer> sqlRetryPolicy = new SqlRetryPolicy<>(new FixedInterval(3, 1), context);
+        try {
+            sqlRetryPolicy.action(FIVE);
+            Assert.fail("integrity violations are not retried");
+        } catch (SQLException expected) {
+            Assert.assertEquals("sql state", "23503", expected.getSQLState());
+        }
+        Assert.assertEquals("connections opened", 1, context.opened.get());
+        Assert.assertEquals("connections closed", 1, context.closed.get());
+        Assert.assertTrue("rollback", context.last.isRollbackCalled());
+        // nothing is handed over to the next action on this thread
+        Assert.assertEquals("result", 5, (int) sqlRetryPolicy.action(FIVE));
+        Assert.assertEquals("connections opened", 2, context.opened.get());
+    }
+
+    @Test
+    public void testDialectConnectionFailureDiscardsConnection() throws Exception {
+        CountingContext context = new CountingContext(MockConnection.ExceptionType.AdminShutdown, 2);
+        context.productName = "PostgreSQL";
+        SqlRetryPolicy<Integer> sqlRetryPolicy = new SqlRetryPolicy<>(new FixedInterval(3, 1), context);
+        Assert.assertEquals("result", 5, (int) sqlRetryPolicy.action(FIVE));
+        Assert.assertEquals("connections opened", 3, context.opened.get());
+        Assert.assertEquals("connections closed", 3, context.closed.get());
+    }
+
+    @Test
+    public void testAsyncRollbackReusesConnection() throws Exception {
+        CountingContext context = new CountingContext(MockConnection.ExceptionType.Rollback, 2);
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            SqlRetryPolicy<Integer> sqlRetryPolicy = new SqlRetryPolicy<>(new FixedInterval(3, 1), context);
+            int result = sqlRetryPolicy.actionAsync(FIVE, executor).get(5, TimeUnit.SECONDS);
+            Assert.assertEquals("result", 5, result);
+            Assert.assertEquals("connections opened", 1, context.opened.get());
+            Assert.assertEquals("connections closed", 1, context.closed.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -0,0 +1,111 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientException;
+import java.sql.SQLTransientException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Tests the SqlStateClassifier class.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class SqlStateClassifierTest {
+
+    @Test
+    public void testPack() {
+        Assert.assertEquals("zero", 0, SqlStateClassifier.pack("00000"));
+        Assert.assertEquals("case insensitive", SqlStateClassifier.pack("40P01"), SqlStateClassifier.pack("40p01"));
+        Assert.assertNotEquals("distinct", SqlStateClassifier.pack("40001"), SqlStateClassifier.pack("40010"));
+        Assert.assertEquals("too short", -1, SqlStateClassifier.pack("4000"));
+        Assert.assertEquals("invalid character", -1, SqlStateClassifier.pack("40-01"));
+        Assert.assertEquals("null", -1, SqlStateClassifier.pack(null));
+    }
+
+    @Test
+    public void testRulePrecedence() {
+        SqlStateClassifier classifier = new SqlStateClassifier();
+        classifier.addClassRule("40", true);
+        classifier.addCodeRule("40002", false);
+        classifier.addVendorCodeRule(1205, true);
+        Assert.assertEquals("class rule", SqlStateClassifier.Classification.TRANSIENT,
+                classifier.classify(new SQLException("rollback", "40001")));
+        Assert.assertEquals("code rule overrides class rule", SqlStateClassifier.Classification.NON_TRANSIENT,
+                classifier.classify(new SQLException("integrity constraint", "40002")));
+        Assert.assertEquals("vendor rule overrides type", SqlStateClassifier.Classification.TRANSIENT,
+                classifier.classify(new SQLNonTransientException("deadlock", "HY000", 1205)));
+        Assert.assertEquals("type", SqlStateClassifier.Classification.TRANSIENT,
+                classifier.classify(new SQLTransientException("busy", "HY000")));
+        Assert.assertEquals("no rule", SqlStateClassifier.Classification.UNKNOWN,
+                classifier.classify(new SQLException("syntax", "42000")));
+        Assert.assertEquals("no SQLSTATE", SqlStateClassifier.Classification.UNKNOWN,
+                classifier.classify(new SQLException("unknown")));
+    }
+
+    @Test
+    public void testNonStandardSqlState() {
+        SqlStateClassifier classifier = new SqlStateClassifier();
+        classifier.addClassRule("08", true);
+        Assert.assertTrue("class of a short SQLSTATE", classifier.isTransient(new SQLException("lost", "08S1")));
+    }
+
+    @Test
+    public void testManyRules() {
+        SqlStateClassifier classifier = new SqlStateClassifier();
+        for (int i = 1; i <= 1000; i++) {
+            classifier.addVendorCodeRule(i, i % 2 == 0);
+        }
+        for (int i = 1; i <= 1000; i++) {
+            Assert.assertEquals("vendor code " + i, i % 2 == 0, classifier.isTransient(new SQLException("failed", "HY000", i)));
+        }
+        Assert.assertEquals("absent vendor code", SqlStateClassifier.Classification.UNKNOWN,
+                classifier.classify(new SQLException("failed", "HY000", 1001)));
+    }
+
+    @Test
+    public void testCauseChain() {
+        SqlStateClassifier classifier = new SqlStateClassifier();
+        classifier.addClassRule("40", true);
+        Exception wrapped = new ExecutionException(new RuntimeException(new SQLException("rollback", "40001")));
+        Assert.assertTrue("wrapped", classifier.isTransient(wrapped));
+        Assert.assertFalse("not a SQL exception", classifier.isTransient(new RuntimeException()));
+    }
+
+    @Test
+    public void testNextException() {
+        SqlStateClassifier classifier = new SqlStateClassifier();
+        classifier.addClassRule("40", true);
+        BatchUpdateException batch = new BatchUpdateException("batch failed", "HY000", new int[0]);
+        batch.setNextException(new SQLException("deadlock", "40P01"));
+        Assert.assertTrue("next exception", classifier.isTransient(batch));
+    }
+
+    @Test
+    public void testCyclicChain() {
+        SqlStateClassifier classifier = new SqlStateClassifier();
+        SQLException first = new SQLException("first", "HY000");
+        SQLException second = new SQLException("second", "HY000", first);
+        first.initCause(second);
+        Assert.assertEquals("terminates", SqlStateClassifier.Classification.UNKNOWN, classifier.classify(first));
+    }
+
+    @Test
+    public void testCopyRules() {
+        SqlStateClassifier base = new SqlStateClassifier();
+        base.addClassRule("08", true);
+        SqlStateClassifier classifier = new SqlStateClassifier(base);
+        classifier.addClassRule("08", false);
+        Assert.assertTrue("base unchanged", base.isTransient(new SQLException("lost", "08006")));
+        Assert.assertEquals("replaced", SqlStateClassifier.Classification.NON_TRANSIENT,
+                classifier.classify(new SQLException("lost", "08006")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRule() {
+        new SqlStateClassifier().addCodeRule("4001", true);
+    }
+}
@@ -70,4 +70,45 @@ public class SqlTransientExceptionDetectorTest {
         SqlTransientExceptionDetector detector = new SqlTransientExceptionDetector();
         Assert.assertTrue("legacy dupe index test", detector.isTransient(new SQLException("duplicate", "23505")));
     }
+
+    @Test
+    public void testWrappedLegacyDupeIndex() {
+        SqlTransientExceptionDetector detector = new SqlTransientExceptionDetector();
+        Assert.assertTrue("wrapped dupe index test", detector.isTransient(
+                new RuntimeException(new SQLException("duplicate value in unique index", "23nnn"))));
+        Assert.assertFalse("dupe message outside class 23", detector.isTransient(
+                new RuntimeException(new SQLException("duplicate value in unique index", "42nnn"))));
+    }
+
+    @Test
+    public void testDupeIndexChecks() {
+        SQLException outsideClass = new SQLException("duplicate value in unique index", "42nnn");
+        Assert.assertTrue("message of any class", SqlTransientExceptionDetector.isSqlStateDuplicateValueInUniqueIndex(outsideClass));
+        Assert.assertFalse("message of class 23 only", SqlTransientExceptionDetector.isSqlStateUniqueViolation(outsideClass));
+        Assert.assertTrue("by message", SqlTransientExceptionDetector.isSqlStateUniqueViolation(
+                new SQLException("duplicate value in unique index", "23nnn")));
+        Assert.assertTrue("by code", SqlTransientExceptionDetector.isSqlStateUniqueViolation(new SQLException("duplicate", "23505")));
+        Assert.assertFalse("no message", SqlTransientExceptionDetector.isSqlStateDuplicateValueInUniqueIndex(new SQLException(null, "23000")));
+    }
+
+    @Test
+    public void testWrappedRollback() {
+        SqlTransientExceptionDetector detector = new SqlTransientExceptionDetector();
+        Assert.assertTrue("wrapped rollback test", detector.isTransient(new RuntimeException(new SQLException("rollback", "40001"))));
+    }
+
+    @Test
+    public void testDupeIndexNotTransient() {
+        SqlTransientExceptionDetector detector = new SqlTransientExceptionDetector(false);
+        Assert.assertFalse("dupe index test", detector.isTransient(new SQLException("duplicate", "23505")));
+    }
+
+    @Test
+    public void testCustomClassifier() {
+        SqlStateClassifier classifier = new SqlStateClassifier();
+        classifier.addCodeRule("57P01", true);
+        SqlTransientExceptionDetector detector = new SqlTransientExceptionDetector(classifier);
+        Assert.assertTrue("custom rule", detector.isTransient(new SQLException("admin shutdown", "57P01")));
+        Assert.assertFalse("no default rules", detector.isTransient(new SQLException("rollback", "40001")));
+    }
 }
@@ -0,0 +1,163 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the ThrottledRetryStrategy class and the retry permit stores.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class ThrottledRetryStrategyTest {
+
+    /**
+     * A window long enough for a test never to see the next one.
+     */
+    private static final long FOREVER = Long.MAX_VALUE / 2;
+
+    private static class CountingStore implements RetryPermitStore {
+
+        private final RetryPermitStore store;
+        private int calls;
+
+        CountingStore(RetryPermitStore store) {
+            this.store = store;
+        }
+
+        @Override
+        public int acquire(long window, int requested, int limit) {
+            calls++;
+            return store.acquire(window, requested, limit);
+        }
+    }
+
+    private static int retries(RetryStrategy strategy) {
+        RetryState state = strategy.getRetryState();
+        int retries = 0;
+        while (state.hasRetries()) {
+            retries++;
+        }
+        return retries;
+    }
+
+    @Test
+    public void testFleetLimit() {
+        RetryPermitStore store = new InMemoryRetryPermitStore();
+        RetryStrategy first = new ThrottledRetryStrategy(new FixedInterval(100, 0), store, 5, FOREVER, 2);
+        RetryStrategy second = new ThrottledRetryStrategy(new FixedInterval(100, 0), store, 5, FOREVER, 2);
+        int permitted = 0;
+        for (int i = 0; i < 10; i++) {
+            RetryState state = (i % 2 == 0 ? first : second).getRetryState();
+            if (state.hasRetries()) {
+                permitted++;
+            }
+        }
+        Assert.assertEquals("retries across strategies", 5, permitted);
+    }
+
+    @Test
+    public void testPermitsCachedLocally() {
+        CountingStore store = new CountingStore(new InMemoryRetryPermitStore());
+        RetryStrategy strategy = new ThrottledRetryStrategy(new FixedInterval(10, 0), store, 100, FOREVER, 5);
+        Assert.assertEquals("retries", 10, retries(strategy));
+        Assert.assertEquals("store calls", 2, store.calls);
+    }
+
+    @Test
+    public void testExhaustedStoreNotConsultedAgain() {
+        CountingStore store = new CountingStore(new InMemoryRetryPermitStore());
+        RetryStrategy strategy = new ThrottledRetryStrategy(new FixedInterval(10, 0), store, 3, FOREVER, 2);
+        Assert.assertEquals("retries", 3, retries(strategy));
+        Assert.assertEquals("retries", 0, retries(strategy));
+        Assert.assertEquals("store calls", 3, store.calls);
+    }
+
+    @Test
+    public void testStrategyLimitsFirst() {
+        CountingStore store = new CountingStore(new InMemoryRetryPermitStore());
+        RetryStrategy strategy = new ThrottledRetryStrategy(new FixedInterval(0, 0), store, 100, FOREVER, 5);
+        Assert.assertEquals("retries", 0, retries(strategy));
+        Assert.assertEquals("store calls", 0, store.calls);
+    }
+
+    @Test
+    public void testRefusedRetryNotDelayed() throws Exception {
+        TransientExceptionDetector detector = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                return true;
+            }
+        };
+        RetryStrategy strategy = new ThrottledRetryStrategy(new FixedInterval(3, 10000), new InMemoryRetryPermitStore(), 0, FOREVER, 1);
+        RetryPolicy<Integer> retryPolicy = new RetryPolicy<>(strategy, detector);
+        long start = System.nanoTime();
+        try {
+            retryPolicy.action(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    throw new IllegalArgumentException();
+                }
+            });
+            Assert.fail("expected failure");
+        } catch (IllegalArgumentException ignore) {
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assert.assertTrue("failed without waiting out the delay: " + elapsed, elapsed < 5000);
+    }
+
+    @Test
+    public void testInMemoryStoreWindows() {
+        RetryPermitStore store = new InMemoryRetryPermitStore();
+        Assert.assertEquals("granted", 3, store.acquire(1, 3, 4));
+        Assert.assertEquals("rest of the window", 1, store.acquire(1, 3, 4));
+        Assert.assertEquals("window used up", 0, store.acquire(1, 3, 4));
+        Assert.assertEquals("new window", 3, store.acquire(2, 3, 4));
+        Assert.assertEquals("stale window", 1, store.acquire(1, 3, 4));
+    }
+
+    @Test
+    public void testMappedFileStoreShared() throws IOException {
+        File file = File.createTempFile("retry-permits", ".dat");
+        file.deleteOnExit();
+        try (MappedFileRetryPermitStore first = new MappedFileRetryPermitStore(file);
+             MappedFileRetryPermitStore second = new MappedFileRetryPermitStore(file)) {
+            Assert.assertEquals("granted", 3, first.acquire(1, 3, 4));
+            Assert.assertEquals("shared", 1, second.acquire(1, 3, 4));
+            Assert.assertEquals("window used up", 0, first.acquire(1, 3, 4));
+            Assert.assertEquals("new window", 3, second.acquire(2, 3, 4));
+        }
+        try (MappedFileRetryPermitStore reopened = new MappedFileRetryPermitStore(file)) {
+            Assert.assertEquals("persisted", 1, reopened.acquire(2, 3, 4));
+        }
+    }
+
+    @Test
+    public void testClosedMappedFileStoreGrantsNothing() throws IOException {
+        File file = File.createTempFile("retry-permits", ".dat");
+        file.deleteOnExit();
+        MappedFileRetryPermitStore store = new MappedFileRetryPermitStore(file);
+        store.close();
+        Assert.assertEquals("nothing granted", 0, store.acquire(1, 3, 4));
+    }
+
+    @Test
+    public void testMappedFileStoreSurvivesInterrupt() throws IOException {
+        File file = File.createTempFile("retry-permits", ".dat");
+        file.deleteOnExit();
+        try (MappedFileRetryPermitStore store = new MappedFileRetryPermitStore(file)) {
+            Thread.currentThread().interrupt();
+            try {
+                Assert.assertEquals("nothing granted while interrupted", 0, store.acquire(1, 3, 4));
+            } finally {
+                Assert.assertTrue("interrupt status kept", Thread.interrupted());
+            }
+            Assert.assertEquals("granted after the interrupt", 3, store.acquire(1, 3, 4));
+            Assert.assertEquals("window state kept", 1, store.acquire(1, 3, 4));
+        }
+    }
+}
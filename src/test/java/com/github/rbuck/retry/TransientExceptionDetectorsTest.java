@@ -0,0 +1,123 @@
+package com.github.rbuck.retry;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutionException;
+
+import static com.github.rbuck.retry.TransientExceptionDetectors.allOf;
+import static com.github.rbuck.retry.TransientExceptionDetectors.anyOf;
+import static com.github.rbuck.retry.TransientExceptionDetectors.causeChain;
+import static com.github.rbuck.retry.TransientExceptionDetectors.instanceOf;
+import static com.github.rbuck.retry.TransientExceptionDetectors.negate;
+import static com.github.rbuck.retry.TransientExceptionDetectors.nextExceptions;
+
+/**
+ * Tests the TransientExceptionDetectors class.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class TransientExceptionDetectorsTest {
+
+    /**
+     * Detects rollbacks by the SQLSTATE of the exception itself only.
+     */
+    private static final TransientExceptionDetector ROLLBACK = new TransientExceptionDetector() {
+        @Override
+        public boolean isTransient(Exception e) {
+            return e instanceof SQLException && SqlTransientExceptionDetector.isSqlStateRollbackException((SQLException) e);
+        }
+    };
+
+    /**
+     * An exception whose cause can be set to form any cycle.
+     */
+    private static class CyclicException extends Exception {
+
+        private Throwable cause;
+
+        @Override
+        public synchronized Throwable getCause() {
+            return cause;
+        }
+    }
+
+    @Test
+    public void testCombinators() {
+        TransientExceptionDetector timeout = instanceOf(AttemptTimeoutException.class);
+        SQLException rollback = new SQLException("deadlock", "40001");
+        Exception timedOut = new AttemptTimeoutException("timed out");
+        Assert.assertTrue("any of", anyOf(ROLLBACK, timeout).isTransient(rollback));
+        Assert.assertTrue("any of", anyOf(ROLLBACK, timeout).isTransient(timedOut));
+        Assert.assertFalse("any of", anyOf(ROLLBACK, timeout).isTransient(new SQLException("syntax", "42000")));
+        Assert.assertFalse("none of", anyOf().isTransient(rollback));
+        Assert.assertTrue("all of", allOf(ROLLBACK, negate(timeout)).isTransient(rollback));
+        Assert.assertFalse("all of", allOf(ROLLBACK, negate(ROLLBACK)).isTransient(rollback));
+        Assert.assertTrue("vacuous", allOf().isTransient(rollback));
+    }
+
+    @Test
+    public void testCauseChain() {
+        TransientExceptionDetector detector = causeChain(ROLLBACK);
+        Assert.assertFalse("top level only", ROLLBACK.isTransient(new RuntimeException(new SQLException("deadlock", "40001"))));
+        Assert.assertTrue("wrapped", detector.isTransient(new RuntimeException(new SQLException("deadlock", "40001"))));
+        Assert.assertTrue("doubly wrapped", detector.isTransient(
+                new ExecutionException(new RuntimeException(new SQLException("deadlock", "40001")))));
+        Assert.assertTrue("through errors", detector.isTransient(
+                new RuntimeException(new AssertionError(new SQLException("deadlock", "40001")))));
+        Assert.assertFalse("other", detector.isTransient(new RuntimeException(new SQLException("syntax", "42000"))));
+    }
+
+    @Test
+    public void testSuppressed() {
+        RuntimeException failure = new RuntimeException("update failed");
+        failure.addSuppressed(new SQLException("deadlock", "40001"));
+        Assert.assertFalse("causes only", causeChain(ROLLBACK).isTransient(new ExecutionException(failure)));
+        Assert.assertTrue("suppressed", causeChain(ROLLBACK, TransientExceptionDetectors.DEFAULT_MAX_DEPTH, true)
+                .isTransient(new ExecutionException(failure)));
+    }
+
+    @Test
+    public void testDepthLimit() {
+        Exception e = new SQLException("deadlock", "40001");
+        for (int i = 0; i < 4; i++) {
+            e = new RuntimeException(e);
+        }
+        Assert.assertTrue("within depth", causeChain(ROLLBACK, 5).isTransient(e));
+        Assert.assertFalse("beyond depth", causeChain(ROLLBACK, 4).isTransient(e));
+    }
+
+    @Test
+    public void testCauseCycle() {
+        CyclicException first = new CyclicException();
+        CyclicException second = new CyclicException();
+        CyclicException third = new CyclicException();
+        first.cause = second;
+        second.cause = third;
+        third.cause = first;
+        final int[] calls = new int[1];
+        TransientExceptionDetector counting = new TransientExceptionDetector() {
+            @Override
+            public boolean isTransient(Exception e) {
+                calls[0]++;
+                return false;
+            }
+        };
+        Assert.assertFalse("cycle", causeChain(counting, Integer.MAX_VALUE).isTransient(first));
+        Assert.assertTrue("stopped early", calls[0] <= 6);
+    }
+
+    @Test
+    public void testNextExceptions() {
+        BatchUpdateException batch = new BatchUpdateException("batch failed", "42000", new int[0]);
+        batch.setNextException(new SQLException("constraint", "23000"));
+        batch.setNextException(new SQLException("deadlock", "40001"));
+        Assert.assertFalse("top level only", ROLLBACK.isTransient(batch));
+        Assert.assertTrue("next exceptions", nextExceptions(ROLLBACK).isTransient(batch));
+        Assert.assertFalse("beyond depth", nextExceptions(ROLLBACK, 2).isTransient(batch));
+        Assert.assertTrue("wrapped batch", causeChain(nextExceptions(ROLLBACK)).isTransient(new RuntimeException(batch)));
+        Assert.assertFalse("not sql", nextExceptions(ROLLBACK).isTransient(new RuntimeException("other")));
+    }
+}
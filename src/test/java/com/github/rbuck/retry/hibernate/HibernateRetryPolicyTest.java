@@ -0,0 +1,177 @@
+package com.github.rbuck.retry.hibernate;
+
+import com.github.rbuck.retry.Bulkhead;
+import com.github.rbuck.retry.BulkheadFullException;
+import com.github.rbuck.retry.FixedInterval;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.exception.DataException;
+import org.hibernate.exception.LockAcquisitionException;
+import org.hibernate.exception.SQLGrammarException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the HibernateRetryPolicy class.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class HibernateRetryPolicyTest {
+
+    /**
+     * A session factory logging the calls made on its sessions and their
+     * transactions, as "session:method".
+     */
+    private static class FakeSessionFactory {
+
+        private final List<String> calls = new ArrayList<>();
+        private int sessions;
+
+        SessionFactory sessionFactory() {
+            return (SessionFactory) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{SessionFactory.class},
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            if (method.getName().equals("openSession")) {
+                                return session(++sessions);
+                            }
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        private Session session(final int id) {
+            final Transaction transaction = (Transaction) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{Transaction.class}, new InvocationHandler() {
+                        private boolean active = true;
+
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            switch (method.getName()) {
+                                case "isActive":
+                                    return active;
+                                case "commit":
+                                case "rollback":
+                                    active = false;
+                                    calls.add(id + ":" + method.getName());
+                                    return null;
+                                default:
+                                    throw new UnsupportedOperationException(method.getName());
+                            }
+                        }
+                    });
+            return (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Session.class},
+                    new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            switch (method.getName()) {
+                                case "beginTransaction":
+                                    return transaction;
+                                case "clear":
+                                case "close":
+                                    calls.add(id + ":" + method.getName());
+                                    return null;
+                                default:
+                                    throw new UnsupportedOperationException(method.getName());
+                            }
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void testSuccess() throws Exception {
+        FakeSessionFactory factory = new FakeSessionFactory();
+        HibernateRetryPolicy<Integer> policy = new HibernateRetryPolicy<>(new FixedInterval(3, 1), factory.sessionFactory());
+        int result = policy.action(new HibernateCallable<Integer>() {
+            @Override
+            public Integer call(Session session) throws Exception {
+                return 5;
+            }
+        });
+        Assert.assertEquals("result", 5, result);
+        Assert.assertEquals("calls", "[1:commit, 1:close]", factory.calls.toString());
+    }
+
+    @Test
+    public void testSessionPerAttempt() throws Exception {
+        FakeSessionFactory factory = new FakeSessionFactory();
+        HibernateRetryPolicy<Integer> policy = new HibernateRetryPolicy<>(new FixedInterval(3, 1), factory.sessionFactory());
+        final List<Session> sessions = new ArrayList<>();
+        int result = policy.action(new HibernateCallable<Integer>() {
+            @Override
+            public Integer call(Session session) throws Exception {
+                sessions.add(session);
+                if (sessions.size() == 1) {
+                    throw new LockAcquisitionException("deadlock", new SQLException("deadlock", "40P01"));
+                }
+                return 5;
+            }
+        });
+        Assert.assertEquals("result", 5, result);
+        Assert.assertNotSame("new session", sessions.get(0), sessions.get(1));
+        Assert.assertEquals("calls", "[1:rollback, 1:clear, 1:close, 2:commit, 2:close]", factory.calls.toString());
+    }
+
+    @Test
+    public void testBulkhead() throws Exception {
+        FakeSessionFactory factory = new FakeSessionFactory();
+        final HibernateRetryPolicy<Integer> policy = new HibernateRetryPolicy<>(new FixedInterval(3, 1), factory.sessionFactory());
+        policy.setBulkhead(new Bulkhead(1, 0, 0));
+        int result = policy.action(new HibernateCallable<Integer>() {
+            @Override
+            public Integer call(Session session) throws Exception {
+                try {
+                    policy.action(new HibernateCallable<Integer>() {
+                        @Override
+                        public Integer call(Session session) throws Exception {
+                            return 6;
+                        }
+                    });
+                    Assert.fail("bulkhead should be full");
+                } catch (BulkheadFullException expected) {
+                }
+                return 5;
+            }
+        });
+        Assert.assertEquals("result", 5, result);
+        Assert.assertEquals("sessions", 1, factory.sessions);
+    }
+
+    @Test
+    public void testNonTransientFailure() throws Exception {
+        FakeSessionFactory factory = new FakeSessionFactory();
+        HibernateRetryPolicy<Integer> policy = new HibernateRetryPolicy<>(new FixedInterval(3, 1), factory.sessionFactory());
+        try {
+            policy.action(new HibernateCallable<Integer>() {
+                @Override
+                public Integer call(Session session) throws Exception {
+                    throw new SQLGrammarException("syntax", new SQLException("syntax", "42000"));
+                }
+            });
+            Assert.fail("should fail");
+        } catch (SQLGrammarException expected) {
+        }
+        Assert.assertEquals("sessions", 1, factory.sessions);
+    }
+
+    @Test
+    public void testNestedJdbcException() {
+        HibernateTransientExceptionDetector detector = new HibernateTransientExceptionDetector();
+        Assert.assertTrue("wrapped lock acquisition", detector.isTransient(
+                new RuntimeException(new LockAcquisitionException("deadlock", new SQLException("deadlock", "40P01")))));
+        Assert.assertTrue("other jdbc exception", detector.isTransient(
+                new DataException("serialization", new SQLException("serialization", "40001"))));
+        Assert.assertFalse("grammar", detector.isTransient(
+                new RuntimeException(new SQLGrammarException("syntax", new SQLException("syntax", "42000")))));
+        Assert.assertTrue("plain sql exception", detector.isTransient(new SQLException("connection lost", "08006")));
+    }
+}
@@ -0,0 +1,259 @@
+package com.github.rbuck.retry.reactive;
+
+import com.github.rbuck.retry.FixedInterval;
+import com.github.rbuck.retry.RetryEvent;
+import com.github.rbuck.retry.RetryEventListener;
+import com.github.rbuck.retry.TransientExceptionDetector;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tests the RetryPublisher class.
+ *
+ * @author Robert Buck (buck.robert.j@gmail.com)
+ */
+public class RetryPublisherTest {
+
+    private static final TransientExceptionDetector DETECTOR = new TransientExceptionDetector() {
+        @Override
+        public boolean isTransient(Exception e) {
+            return e instanceof IllegalStateException;
+        }
+    };
+
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * A cold publisher of the integers from one to count, honouring demand;
+     * the first failing subscriptions fail after emitting failAfter items.
+     */
+    private static class FlakyPublisher implements Publisher<Integer> {
+
+        private final int count;
+        private final int failAfter;
+        private final int failing;
+        private final Exception failure;
+        private final AtomicInteger subscriptions = new AtomicInteger();
+        private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+
+        FlakyPublisher(int count, int failAfter, int failing, Exception failure) {
+            this.count = count;
+            this.failAfter = failAfter;
+            this.failing = failing;
+            this.failure = failure;
+        }
+
+        @Override
+        public void subscribe(final Subscriber<? super Integer> subscriber) {
+            final int id = subscriptions.incrementAndGet();
+            subscriber.onSubscribe(new Subscription() {
+                private int emitted;
+                private boolean done;
+
+                @Override
+                public void request(long n) {
+                    requests.add(id + ":" + n);
+                    for (long i = 0; i < n && !done && emitted < count; i++) {
+                        if (id <= failing && emitted == failAfter) {
+                            done = true;
+                            subscriber.onError(failure);
+                            return;
+                        }
+                        subscriber.onNext(++emitted);
+                    }
+                    if (!done && emitted == count) {
+                        done = true;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    done = true;
+                }
+            });
+        }
+    }
+
+    private static class CollectingSubscriber implements Subscriber<Integer> {
+
+        private final long initialRequest;
+        private final List<Integer> items = Collections.synchronizedList(new ArrayList<Integer>());
+        private final CountDownLatch terminated = new CountDownLatch(1);
+        private volatile Subscription subscription;
+        private volatile Throwable error;
+
+        CollectingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            subscription = s;
+            s.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(Integer item) {
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            error = t;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            terminated.countDown();
+        }
+
+        void await() throws InterruptedException {
+            Assert.assertTrue("terminated", terminated.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testRetriesTransientFailure() throws InterruptedException {
+        FlakyPublisher upstream = new FlakyPublisher(3, 1, 2, new IllegalStateException("flaky"));
+        RetryPublisher<Integer> publisher = new RetryPublisher<>(upstream, new FixedInterval(3, 1), DETECTOR, scheduler);
+        final AtomicInteger events = new AtomicInteger();
+        publisher.addRetryEventListener(new RetryEventListener() {
+            @Override
+            public void onRetry(RetryEvent evt) {
+                events.incrementAndGet();
+            }
+        });
+        CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+        subscriber.await();
+        Assert.assertNull("no error", subscriber.error);
+        Assert.assertEquals("items", "[1, 1, 1, 2, 3]", subscriber.items.toString());
+        Assert.assertEquals("subscriptions", 3, upstream.subscriptions.get());
+        Assert.assertEquals("events", 2, events.get());
+    }
+
+    @Test
+    public void testNonTransientFailure() throws InterruptedException {
+        FlakyPublisher upstream = new FlakyPublisher(3, 1, 1, new IllegalArgumentException("broken"));
+        RetryPublisher<Integer> publisher = new RetryPublisher<>(upstream, new FixedInterval(3, 1), DETECTOR, scheduler);
+        CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+        subscriber.await();
+        Assert.assertTrue("error", subscriber.error instanceof IllegalArgumentException);
+        Assert.assertEquals("subscriptions", 1, upstream.subscriptions.get());
+    }
+
+    @Test
+    public void testRetriesExhausted() throws InterruptedException {
+        FlakyPublisher upstream = new FlakyPublisher(3, 0, Integer.MAX_VALUE, new IllegalStateException("down"));
+        RetryPublisher<Integer> publisher = new RetryPublisher<>(upstream, new FixedInterval(2, 1), DETECTOR, scheduler);
+        CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+        subscriber.await();
+        Assert.assertTrue("error", subscriber.error instanceof IllegalStateException);
+        Assert.assertEquals("subscriptions", 3, upstream.subscriptions.get());
+    }
+
+    @Test
+    public void testDemandPreserved() throws InterruptedException {
+        FlakyPublisher upstream = new FlakyPublisher(3, 1, 1, new IllegalStateException("flaky"));
+        RetryPublisher<Integer> publisher = new RetryPublisher<>(upstream, new FixedInterval(3, 1), DETECTOR, scheduler);
+        CollectingSubscriber subscriber = new CollectingSubscriber(2);
+        publisher.subscribe(subscriber);
+        while (upstream.requests.size() < 2) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals("items", "[1, 1]", subscriber.items.toString());
+        Assert.assertEquals("remaining demand requested", "[1:2, 2:1]", upstream.requests.toString());
+        subscriber.subscription.request(2);
+        subscriber.await();
+        Assert.assertEquals("items", "[1, 1, 2, 3]", subscriber.items.toString());
+    }
+
+    @Test
+    public void testCancelDuringBackoff() throws InterruptedException {
+        FlakyPublisher upstream = new FlakyPublisher(3, 0, 1, new IllegalStateException("flaky"));
+        RetryPublisher<Integer> publisher = new RetryPublisher<>(upstream, new FixedInterval(3, 200), DETECTOR, scheduler);
+        CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+        subscriber.subscription.cancel();
+        Thread.sleep(400);
+        Assert.assertEquals("subscriptions", 1, upstream.subscriptions.get());
+        Assert.assertEquals("not terminated", 1, subscriber.terminated.getCount());
+    }
+
+    @Test
+    public void testInvalidRequestWaitsForItemInFlight() throws InterruptedException {
+        FlakyPublisher upstream = new FlakyPublisher(3, 0, 0, null);
+        RetryPublisher<Integer> publisher = new RetryPublisher<>(upstream, new FixedInterval(3, 1), DETECTOR, scheduler);
+        final CountDownLatch delivering = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger overlapping = new AtomicInteger();
+        final CollectingSubscriber subscriber = new CollectingSubscriber(1) {
+            private volatile boolean inOnNext;
+
+            @Override
+            public void onNext(Integer item) {
+                inOnNext = true;
+                delivering.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onNext(item);
+                inOnNext = false;
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                if (inOnNext) {
+                    overlapping.incrementAndGet();
+                }
+                super.onError(t);
+            }
+        };
+        Thread emitter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                publisher.subscribe(subscriber);
+            }
+        });
+        emitter.start();
+        Assert.assertTrue("delivering", delivering.await(5, TimeUnit.SECONDS));
+        subscriber.subscription.request(0);
+        Assert.assertEquals("error waits for the item in flight", 1, subscriber.terminated.getCount());
+        release.countDown();
+        subscriber.await();
+        emitter.join(5000);
+        Assert.assertEquals("overlapping signals", 0, overlapping.get());
+        Assert.assertEquals("items", "[1]", subscriber.items.toString());
+        Assert.assertTrue("error", subscriber.error instanceof IllegalArgumentException);
+    }
+}